@@ -0,0 +1,195 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A block store kept in memory as a growable table of fixed-size arrays ("chunks"). Getting a
+ * block is two array lookups, adding and removing the last block take constant time, and growing
+ * the store never copies blocks, only the (much smaller) table of chunks. Each block costs one
+ * array slot rather than a list node.
+ *
+ * Views share the chunks with the store. Adding a block after the end of every view writes in
+ * place; adding one over a slot a view can still see (after a removal) first copies that chunk,
+ * so views never change.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class ArrayBlockStore implements BlockStore {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The base-2 log of the number of blocks in a chunk.
+   */
+  static final int CHUNK_BITS = 10;
+
+  /**
+   * The number of blocks in a chunk.
+   */
+  static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  /**
+   * Picks out a block's position within its chunk.
+   */
+  static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  /**
+   * The number of chunk slots we start with.
+   */
+  static final int INITIAL_CHUNKS = 4;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The chunks. Chunks past the last block may be allocated but empty.
+   */
+  Block[][] chunks;
+
+  /**
+   * The number of blocks in the store.
+   */
+  int size;
+
+  /**
+   * The largest size of any view we have handed out. Slots below it may be visible to a view.
+   */
+  int published;
+
+  /**
+   * The chunk we have copied since the last view, so that views cannot see it, or -1.
+   */
+  int copied;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty store.
+   */
+  public ArrayBlockStore() {
+    this.chunks = new Block[INITIAL_CHUNKS][];
+    this.size = 0;
+    this.published = 0;
+    this.copied = -1;
+  } // ArrayBlockStore()
+
+  /**
+   * Create a store that shares the given chunks. Used for views.
+   *
+   * @param chunksInput The chunks.
+   * @param sizeInput The number of blocks.
+   */
+  ArrayBlockStore(Block[][] chunksInput, int sizeInput) {
+    this.chunks = chunksInput;
+    this.size = sizeInput;
+    this.published = Integer.MAX_VALUE;
+    this.copied = -1;
+  } // ArrayBlockStore(Block[][], int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of blocks in the store.
+   *
+   * @return the number of blocks.
+   */
+  @Override
+  public int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Get the block at a given height.
+   *
+   * @param height The height of the block, between 0 (inclusive) and size() (exclusive).
+   *
+   * @return the block.
+   *
+   * @throws IndexOutOfBoundsException if height is out of range.
+   */
+  @Override
+  public Block get(int height) {
+    Objects.checkIndex(height, this.size);
+    return this.chunks[height >>> CHUNK_BITS][height & CHUNK_MASK];
+  } // get(int)
+
+  /**
+   * Add a block after the current last block.
+   *
+   * @param block The block to add.
+   */
+  @Override
+  public void add(Block block) {
+    int chunk = this.size >>> CHUNK_BITS;
+    if (chunk == this.chunks.length) {
+      this.chunks = Arrays.copyOf(this.chunks, 2 * this.chunks.length);
+    } // if
+    if (this.chunks[chunk] == null) {
+      this.chunks[chunk] = new Block[CHUNK_SIZE];
+    } else if (this.size < this.published && chunk != this.copied) {
+      this.chunks = this.chunks.clone();
+      this.chunks[chunk] = this.chunks[chunk].clone();
+      this.copied = chunk;
+    } // if/else
+    this.chunks[chunk][this.size & CHUNK_MASK] = block;
+    ++this.size;
+  } // add(Block)
+
+  /**
+   * Remove the last block. We keep its chunk, even if it is now empty, so that a chain that
+   * shrinks and grows by a block at a chunk boundary doesn't allocate every time.
+   *
+   * @return the block removed.
+   *
+   * @throws NoSuchElementException if the store is empty.
+   */
+  @Override
+  public Block removeLast() {
+    if (this.size == 0) {
+      throw new NoSuchElementException("The store is empty.");
+    } // if
+    --this.size;
+    Block[] chunk = this.chunks[this.size >>> CHUNK_BITS];
+    Block removed = chunk[this.size & CHUNK_MASK];
+    if (this.size >= this.published) {
+      chunk[this.size & CHUNK_MASK] = null;
+    } // if
+    return removed;
+  } // removeLast()
+
+  /**
+   * Get a read-only view of the blocks as they are now.
+   *
+   * @return the view.
+   */
+  @Override
+  public BlockStore view() {
+    this.published = Math.max(this.published, this.size);
+    this.copied = -1;
+    return new ArrayBlockStore(this.chunks, this.size) {
+      @Override
+      public void add(Block block) {
+        throw new UnsupportedOperationException("Views are read-only.");
+      } // add(Block)
+
+      @Override
+      public Block removeLast() {
+        throw new UnsupportedOperationException("Views are read-only.");
+      } // removeLast()
+
+      @Override
+      public BlockStore view() {
+        return this;
+      } // view()
+    };
+  } // view()
+} // class ArrayBlockStore
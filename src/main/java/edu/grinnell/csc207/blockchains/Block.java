@@ -2,8 +2,9 @@ package edu.grinnell.csc207.blockchains;
 
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Blocks to be stored in blockchains.
@@ -13,24 +14,18 @@ import java.util.Random;
  * @author Samuel A. Rebelsky
  */
 public class Block {
-  // +--------+------------------------------------------------------
-  // | Fields |
-  // +--------+
-
-  /**
-   * The message digest used to compute hashes.
-   */
-  static MessageDigest md = null;
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
 
   /**
-   * The byte buffer used for ints.
+   * The latest time now has given, so that it never gives an earlier one.
    */
-  static ByteBuffer intBuffer = ByteBuffer.allocate(Integer.BYTES);
+  static final AtomicLong LATEST = new AtomicLong();
 
-  /**
-   * The byte buffer used for longs.
-   */
-  static ByteBuffer longBuffer = ByteBuffer.allocate(Long.BYTES);
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
 
   /**
    * The number of the block.
@@ -57,6 +52,17 @@ public class Block {
    */
   Hash hash;
 
+  /**
+   * The hash function used to compute the hash.
+   */
+  HashFunction function;
+
+  /**
+   * When the block was made, in nanoseconds since the epoch. The time is kept with the block
+   * (so validators can judge the chain by it later) but is not part of its hash.
+   */
+  long time;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -69,20 +75,36 @@ public class Block {
    * @param transactionInput The transaction for the block.
    * @param prevHashInput The hash of the previous block.
    * @param checkInput The validator used to check the block.
+   * @param functionInput The hash function used to hash the block.
    */
   public Block(int numInput, Transaction transactionInput, Hash prevHashInput,
-      HashValidator checkInput) {
+      HashValidator checkInput, HashFunction functionInput) {
     this.blockNum = numInput;
     this.transaction = transactionInput;
     this.prevHash = prevHashInput;
-    Random rand = new Random();
-    long tempNonce = rand.nextLong();
-    while (!checkInput
-        .isValid(new Hash(computeHash(numInput, transactionInput, prevHashInput, tempNonce)))) {
-      tempNonce = rand.nextLong();
+    this.function = functionInput;
+    BlockHasher hasher = new BlockHasher(numInput, transactionInput, prevHashInput, functionInput);
+    long tempNonce = new Random().nextLong();
+    while (!hasher.isValid(tempNonce, checkInput)) {
+      tempNonce++;
     } // while
     this.nonce = tempNonce;
-    this.hash = new Hash(computeHash(numInput, transactionInput, prevHashInput, this.nonce));
+    this.hash = Hash.of(hasher.hash(this.nonce));
+    this.time = now();
+  } // Block(int, Transaction, Hash, HashValidator, HashFunction)
+
+  /**
+   * Create a new block from the specified block number, transaction, and previous hash, mining to
+   * choose a nonce whose SHA-256 hash meets the requirements of the validator.
+   *
+   * @param numInput The number of the block.
+   * @param transactionInput The transaction for the block.
+   * @param prevHashInput The hash of the previous block.
+   * @param checkInput The validator used to check the block.
+   */
+  public Block(int numInput, Transaction transactionInput, Hash prevHashInput,
+      HashValidator checkInput) {
+    this(numInput, transactionInput, prevHashInput, checkInput, HashFunction.SHA_256);
   } // Block(int, Transaction, Hash, HashValidator)
 
   /**
@@ -92,47 +114,108 @@ public class Block {
    * @param transactionInput The transaction for the block.
    * @param prevHashInput The hash of the previous block.
    * @param nonceInput The nonce of the block.
+   * @param functionInput The hash function used to hash the block.
    */
-  public Block(int numInput, Transaction transactionInput, Hash prevHashInput, long nonceInput) {
+  public Block(int numInput, Transaction transactionInput, Hash prevHashInput, long nonceInput,
+      HashFunction functionInput) {
     this.blockNum = numInput;
     this.transaction = transactionInput;
     this.prevHash = prevHashInput;
     this.nonce = nonceInput;
-    this.hash = new Hash(computeHash(numInput, transactionInput, prevHashInput, nonceInput));
+    this.function = functionInput;
+    this.hash = Hash.of(
+        computeHash(functionInput, numInput, transactionInput, prevHashInput, nonceInput));
+    this.time = now();
+  } // Block(int, Transaction, Hash, long, HashFunction)
+
+  /**
+   * Create a new block, computing its SHA-256 hash.
+   *
+   * @param numInput The number of the block.
+   * @param transactionInput The transaction for the block.
+   * @param prevHashInput The hash of the previous block.
+   * @param nonceInput The nonce of the block.
+   */
+  public Block(int numInput, Transaction transactionInput, Hash prevHashInput, long nonceInput) {
+    this(numInput, transactionInput, prevHashInput, nonceInput, HashFunction.SHA_256);
   } // Block(int, Transaction, Hash, long)
 
+  /**
+   * Create a block whose hash is already known, without computing it. Used by stores that read
+   * blocks back; check still recomputes the hash.
+   *
+   * @param numInput The number of the block.
+   * @param transactionInput The transaction for the block.
+   * @param prevHashInput The hash of the previous block.
+   * @param nonceInput The nonce of the block.
+   * @param hashInput The hash of the block.
+   * @param functionInput The hash function used to hash the block.
+   * @param timeInput When the block was made, in nanoseconds since the epoch.
+   */
+  Block(int numInput, Transaction transactionInput, Hash prevHashInput, long nonceInput,
+      Hash hashInput, HashFunction functionInput, long timeInput) {
+    this.blockNum = numInput;
+    this.transaction = transactionInput;
+    this.prevHash = prevHashInput;
+    this.nonce = nonceInput;
+    this.hash = hashInput;
+    this.function = functionInput;
+    this.time = timeInput;
+  } // Block(int, Transaction, Hash, long, Hash, HashFunction, long)
+
   // +---------+-----------------------------------------------------
   // | Helpers |
-  // +---------+)
+  // +---------+
 
   /**
-   * Compute the hash of the block given all the other info already stored in the block.
+   * Compute the hash of the block given all the other info already stored in the block. Safe to
+   * call from several threads at once.
    *
+   * @param function The hash function.
    * @param num The number of the block.
    * @param transaction The transaction for the block.
    * @param prevHash The hash of the previous block.
    * @param nonce The nonce of the block.
    * @return The hash of the block.
    */
-  static byte[] computeHash(int num, Transaction transaction, Hash prevHash, long nonce) {
-    if (num != 0) {
-      md.reset();
-    } else {
-      try {
-        md = MessageDigest.getInstance("sha-256");
-      } catch (NoSuchAlgorithmException e) {
-        // Shouldn't happen
-      } // try/catch
-    } // if/else
+  static byte[] computeHash(HashFunction function, int num, Transaction transaction,
+      Hash prevHash, long nonce) {
+    MessageDigest md = function.digest();
     md.update(intToBytes(num));
     md.update(transaction.getSource().getBytes());
     md.update(transaction.getTarget().getBytes());
     md.update(intToBytes(transaction.getAmount()));
-    md.update(prevHash.getBytes());
+    prevHash.writeTo(md);
     md.update(longToBytes(nonce));
     return md.digest();
   } // computeHash()
 
+  /**
+   * Compute the SHA-256 hash of the block given all the other info already stored in the block.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param nonce The nonce of the block.
+   * @return The hash of the block.
+   */
+  static byte[] computeHash(int num, Transaction transaction, Hash prevHash, long nonce) {
+    return computeHash(HashFunction.SHA_256, num, transaction, prevHash, nonce);
+  } // computeHash(int, Transaction, Hash, long)
+
+  /**
+   * Get the current time, in nanoseconds since the epoch. Unlike System.nanoTime, this means the
+   * same thing after a restart. Should the clock be set back, we keep giving the latest time
+   * given so far, since a chain refuses blocks whose times go backwards.
+   *
+   * @return the time.
+   */
+  static long now() {
+    Instant instant = Instant.now();
+    return LATEST.accumulateAndGet(instant.getEpochSecond() * 1_000_000_000L
+        + instant.getNano(), Math::max);
+  } // now()
+
   /**
    * Convert a long into its bytes.
    *
@@ -141,8 +224,7 @@ public class Block {
    * @return The bytes in that long.
    */
   static byte[] longToBytes(long l) {
-    longBuffer.clear();
-    return longBuffer.putLong(l).array();
+    return ByteBuffer.allocate(Long.BYTES).putLong(l).array();
   } // longToBytes()
 
   /**
@@ -153,8 +235,7 @@ public class Block {
    * @return The bytes of that integer.
    */
   static byte[] intToBytes(int i) {
-    intBuffer.clear();
-    return intBuffer.putInt(i).array();
+    return ByteBuffer.allocate(Integer.BYTES).putInt(i).array();
   } // intToBytes(int)
 
   // +---------+-----------------------------------------------------
@@ -206,6 +287,24 @@ public class Block {
     return this.hash;
   } // getHash
 
+  /**
+   * Get the hash function used to compute the hash of this block.
+   *
+   * @return the hash function.
+   */
+  public HashFunction getHashFunction() {
+    return this.function;
+  } // getHashFunction()
+
+  /**
+   * Get when this block was made.
+   *
+   * @return the time, in nanoseconds since the epoch.
+   */
+  public long getTime() {
+    return this.time;
+  } // getTime()
+
   /**
    * Get a string representation of the block.
    *
@@ -1,35 +1,117 @@
 package edu.grinnell.csc207.blockchains;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * A full blockchain.
  *
+ * Any number of threads may read the chain (its size, blocks, hash, balances, and users) while
+ * one thread at a time changes it. Readers never wait: each reading method works from the latest
+ * published snapshot, an immutable view of the blocks together with the balances after them, so
+ * it always sees some consistent prefix of the chain. Use snapshot to make several reads of the
+ * same moment. The index lookups findByHash and history also work from the latest snapshot,
+ * checking what the indexes say against it, so they do not wait either (except the first one of
+ * each kind, which builds its index). Changes (append and removeLast) take the chain's lock and
+ * publish a new snapshot when they are done. So does check, but only to record its results: it
+ * verifies blocks from a snapshot without holding the lock.
+ *
+ * Because readers do not wait, the chain counts the ones partway through a snapshot, and
+ * remembers how much of the chain any snapshot handed out through snapshot covers. When no one
+ * is reading and no handed-out snapshot includes a removed block, the store may reclaim its
+ * space, so a chain that appends and removes blocks over and over does not grow its log.
+ *
  * @author Khanh Do
  * @author Nicole Gorrell
  */
-public class BlockChain implements Iterable<Transaction> {
+public class BlockChain implements Iterable<Transaction>, Closeable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The most blocks a parallel check gives one task.
+   */
+  static final int PARALLEL_CHUNK = 256;
+
+  /**
+   * The name of the checkpoint file in the directory of a chain kept on disk.
+   */
+  public static final String CHECKPOINT = "checkpoint.dat";
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
   /**
-   * The first block in the chain.
+   * The blocks in the chain, by height. Only touched while holding the lock.
+   */
+  BlockStore blocks;
+
+  /**
+   * What readers see: the blocks and balances as of the last change. Its blocks are a view
+   * leased from the store (see reclaim).
+   */
+  volatile ChainSnapshot state;
+
+  /**
+   * The number of threads reading blocks through a snapshot without the lock. Readers count
+   * themselves before they read the state, so when this is 0 no one is partway through an
+   * older snapshot.
+   */
+  AtomicInteger reading;
+
+  /**
+   * The size of the largest snapshot handed out through snapshot. Whoever has it may read it
+   * at any time, so the store must keep its blocks readable.
    */
-  Node1 first;
+  AtomicInteger shared;
 
   /**
-   * The last block in the chain.
+   * The heights of the blocks, by hash, or null until someone needs it (see hashIndex).
    */
-  Node1 last;
+  volatile HashIndex index;
 
   /**
-   * The number of blocks in the chain.
+   * The heights of the blocks that involve each user, or null until someone needs it (see
+   * historyIndex).
    */
-  int size;
+  volatile HistoryIndex history;
+
+  /**
+   * The number of blocks, from the start of the chain, that check has verified.
+   */
+  int watermark;
+
+  /**
+   * The balances after the verified blocks, as check computed them.
+   */
+  HashMap<String, Integer> verifiedBalances;
+
+  /**
+   * How many verified blocks (after the initial one) mention each user, as source or target.
+   * Users with no such block are not in the map, nor in verifiedBalances.
+   */
+  HashMap<String, Integer> verifiedMentions;
+
+  /**
+   * Whether check works on several threads.
+   */
+  volatile boolean parallelCheck;
 
   /**
    * The validator used to check elements.
@@ -37,9 +119,24 @@ public class BlockChain implements Iterable<Transaction> {
   HashValidator check;
 
   /**
-   * The balances of all the users.
+   * The miner used to find nonces for new blocks.
+   */
+  volatile Miner miner;
+
+  /**
+   * The hash function used for every block.
+   */
+  HashFunction function;
+
+  /**
+   * The things that hear about changes to the chain.
    */
-  HashMap<String, Integer> balances;
+  CopyOnWriteArrayList<ChainListener> listeners;
+
+  /**
+   * Where close saves a checkpoint, or null if it does not.
+   */
+  Path checkpointFile;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -50,19 +147,114 @@ public class BlockChain implements Iterable<Transaction> {
    *
    * @param checkInput The validator used to check elements.
    */
-  @SuppressWarnings({"rawtypes", "unchecked"})
   public BlockChain(HashValidator checkInput) {
-    this.check = checkInput;
-    Transaction t = new Transaction("", "", 0);
-    Hash h = new Hash(new byte[] {});
-    Block firstBlock = new Block(0, t, h, checkInput);
-    this.first = new Node1(firstBlock);
-    this.last = this.first;
-    this.size = 1;
-
-    this.balances = new HashMap();
+    this(checkInput, new SequentialMiner());
   } // BlockChain(HashValidator)
 
+  /**
+   * Create a new blockchain using a validator to check elements and a miner to find nonces for
+   * new blocks (including the initial block), hashing blocks with SHA-256.
+   *
+   * @param checkInput The validator used to check elements.
+   * @param minerInput The miner used to find nonces.
+   */
+  public BlockChain(HashValidator checkInput, Miner minerInput) {
+    this(checkInput, minerInput, HashFunction.SHA_256);
+  } // BlockChain(HashValidator, Miner)
+
+  /**
+   * Create a new blockchain using a validator to check elements, a miner to find nonces for new
+   * blocks (including the initial block), and a hash function for every block. If the validator
+   * is also a ChainListener (as validators that retarget are), it hears about every change to
+   * the chain.
+   *
+   * @param checkInput The validator used to check elements.
+   * @param minerInput The miner used to find nonces.
+   * @param functionInput The hash function used for every block.
+   */
+  public BlockChain(HashValidator checkInput, Miner minerInput, HashFunction functionInput) {
+    this(checkInput, minerInput, functionInput, new ArrayBlockStore());
+  } // BlockChain(HashValidator, Miner, HashFunction)
+
+  /**
+   * Create a blockchain whose blocks are kept in a given store. If the store is empty, we mine
+   * the initial block as usual. Otherwise, the chain is rebuilt from the blocks already there,
+   * hashed with functionInput, without mining anything: we replay their balances, but do not
+   * verify them until check is called, nor index them until findByHash or history needs it. A
+   * validator that is also a ChainListener hears about the stored blocks through chainLoaded.
+   *
+   * @param checkInput The validator used to check elements.
+   * @param minerInput The miner used to find nonces.
+   * @param functionInput The hash function used for every block.
+   * @param store The store for the blocks, which the chain takes over.
+   */
+  public BlockChain(HashValidator checkInput, Miner minerInput, HashFunction functionInput,
+      BlockStore store) {
+    this(checkInput, minerInput, functionInput, store, null);
+  } // BlockChain(HashValidator, Miner, HashFunction, BlockStore)
+
+  /**
+   * Create a blockchain whose blocks are kept in a given store, trusting a checkpoint of a
+   * prefix of those blocks. The prefix counts as verified and its balances come from the
+   * checkpoint, so only the blocks after it are replayed. A checkpoint that does not match the
+   * store is ignored.
+   *
+   * @param checkInput The validator used to check elements.
+   * @param minerInput The miner used to find nonces.
+   * @param functionInput The hash function used for every block.
+   * @param store The store for the blocks, which the chain takes over.
+   * @param checkpoint The checkpoint, or null for none.
+   */
+  BlockChain(HashValidator checkInput, Miner minerInput, HashFunction functionInput,
+      BlockStore store, Checkpoint checkpoint) {
+    this.check = checkInput;
+    this.miner = minerInput;
+    this.function = functionInput;
+    this.blocks = store;
+    this.reading = new AtomicInteger(0);
+    this.shared = new AtomicInteger(0);
+    boolean loaded = store.size() > 0;
+    if (!loaded) {
+      Transaction t = new Transaction("", "", 0);
+      Hash h = new Hash(new byte[] {});
+      store.add(minerInput.mine(0, t, h, checkInput.atHeight(0), functionInput,
+          new MiningProgress()));
+    } // if
+    this.verifiedBalances = new HashMap<String, Integer>();
+    this.verifiedMentions = new HashMap<String, Integer>();
+    Ledger ledger = Ledger.EMPTY;
+    // The initial block is never applied to the balances.
+    int start = 1;
+    if (checkpoint != null && checkpoint.matches(store)) {
+      ledger = checkpoint.ledger;
+      start = checkpoint.height;
+      Iterator<String> users = ledger.users();
+      while (users.hasNext()) {
+        String user = users.next();
+        this.verifiedBalances.put(user, ledger.balance(user));
+      } // while
+      this.verifiedMentions.putAll(checkpoint.mentions);
+      if (checkInput instanceof RetargetingValidator retargeting) {
+        retargeting.restore(checkpoint.interval, checkpoint.epochs);
+      } // if
+    } // if
+    for (int height = start; height < this.blocks.size(); height++) {
+      ledger = ledger.apply(this.blocks.get(height).getTransaction());
+    } // for
+    this.watermark = start;
+    this.state = new ChainSnapshot(this.blocks.lease(), ledger);
+
+    this.listeners = new CopyOnWriteArrayList<ChainListener>();
+    if (checkInput instanceof ChainListener listener) {
+      this.addListener(listener);
+      if (loaded) {
+        listener.chainLoaded(this);
+      } else {
+        listener.blockAppended(this, this.blocks.get(0));
+      } // if/else
+    } // if
+  } // BlockChain(HashValidator, Miner, HashFunction, BlockStore, Checkpoint)
+
   // +---------+-----------------------------------------------------
   // | Methods |
   // +---------+
@@ -75,61 +267,241 @@ public class BlockChain implements Iterable<Transaction> {
    * @return a new block with correct number, hashes, and such.
    */
   public Block mine(Transaction t) {
-    Hash prevHash = this.last.getValue().getHash();
-    Block newBlock = new Block(this.size, t, prevHash, this.check);
+    int size;
+    Hash prevHash;
+    this.reading.incrementAndGet();
+    try {
+      BlockStore current = this.state.blocks;
+      size = current.size();
+      prevHash = current.getLast().getHash();
+    } finally {
+      this.reading.decrementAndGet();
+    } // try/finally
+    Block newBlock = this.miner.mine(size, t, prevHash, this.check.atHeight(size),
+        this.function, new MiningProgress());
     return newBlock;
   } // mine(Transaction)
 
+  /**
+   * Start mining a new block for the end of the chain in the background. The block builds on
+   * the chain as it is now; if the chain changes before the block is ready, it cannot be
+   * appended.
+   *
+   * @param t The transaction that goes in the block.
+   *
+   * @return a handle on the job, from which we can get the block.
+   */
+  public MiningJob mineAsync(Transaction t) {
+    return mineAsync(t, 0, TimeUnit.NANOSECONDS);
+  } // mineAsync(Transaction)
+
+  /**
+   * Start mining a new block for the end of the chain in the background, giving up after a
+   * while.
+   *
+   * @param t The transaction that goes in the block.
+   * @param timeout How long the job may run, or 0 for no limit.
+   * @param unit The unit of timeout.
+   *
+   * @return a handle on the job, from which we can get the block.
+   */
+  public MiningJob mineAsync(Transaction t, long timeout, TimeUnit unit) {
+    int size;
+    Hash prevHash;
+    this.reading.incrementAndGet();
+    try {
+      BlockStore current = this.state.blocks;
+      size = current.size();
+      prevHash = current.getLast().getHash();
+    } finally {
+      this.reading.decrementAndGet();
+    } // try/finally
+    return new MiningJob(this.miner, size, t, prevHash, this.check.atHeight(size),
+        this.function, unit.toNanos(timeout));
+  } // mineAsync(Transaction, long, TimeUnit)
+
+  /**
+   * Change the miner used to find nonces for new blocks.
+   *
+   * @param minerInput The new miner.
+   */
+  public void setMiner(Miner minerInput) {
+    this.miner = minerInput;
+  } // setMiner(Miner)
+
+  /**
+   * Get the hash function used for every block in the chain.
+   *
+   * @return the hash function.
+   */
+  public HashFunction getHashFunction() {
+    return this.function;
+  } // getHashFunction()
+
+  /**
+   * Get the validator used to check the blocks of the chain.
+   *
+   * @return the validator.
+   */
+  public HashValidator getValidator() {
+    return this.check;
+  } // getValidator()
+
+  /**
+   * Arrange for a listener to hear about blocks appended to and removed from the chain.
+   *
+   * @param listener The listener.
+   */
+  public void addListener(ChainListener listener) {
+    this.listeners.add(listener);
+  } // addListener(ChainListener)
+
+  /**
+   * Stop telling a listener about changes to the chain.
+   *
+   * @param listener The listener.
+   */
+  public void removeListener(ChainListener listener) {
+    this.listeners.remove(listener);
+  } // removeListener(ChainListener)
+
+  /**
+   * Release whatever the chain's store holds open, such as files, writing out any changes. The
+   * chain must not be changed afterwards.
+   *
+   * @throws IOException if the store cannot be closed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (this.checkpointFile != null) {
+      this.saveCheckpoint(this.checkpointFile);
+    } // if
+    this.blocks.close();
+  } // close()
+
+  /**
+   * Save a checkpoint of the blocks verified so far (see check): their number, the hash of the
+   * last one, the balances after them and how many of them mention each user, for chains kept
+   * on disk, where their records are in the log, and, for validators that retarget, the
+   * difficulty of the epochs they reach. This takes time proportional to the number of users,
+   * plus eight bytes a block for the positions. Chains opened with open save one in
+   * their directory when closed, and trust it when opened again.
+   *
+   * @param file Where to save the checkpoint.
+   *
+   * @throws IOException if the file cannot be written.
+   */
+  public synchronized void saveCheckpoint(Path file) throws IOException {
+    long[] positions = (this.blocks instanceof SegmentedBlockStore store)
+        ? store.prefixPositions(this.watermark) : new long[0];
+    int interval = 0;
+    int[] epochs = new int[0];
+    if (this.check instanceof RetargetingValidator retargeting) {
+      interval = retargeting.interval;
+      epochs = retargeting.epochBits(this.watermark);
+    } // if
+    Checkpoint.of(this.watermark, this.blocks.get(this.watermark - 1).getHash(),
+        this.verifiedBalances, this.verifiedMentions, positions, interval, epochs).write(file);
+  } // saveCheckpoint(Path)
+
   /**
    * Get the number of blocks curently in the chain.
    *
    * @return the number of blocks in the chain, including the initial block.
    */
   public int getSize() {
-    return this.size;
+    return this.state.getSize();
   } // getSize()
 
+  /**
+   * Get a frozen view of the chain and its balances as they are now. This takes constant time:
+   * the snapshot shares its blocks and balances with the chain rather than copying them, and
+   * later appends and removals do not change it.
+   *
+   * @return the snapshot.
+   */
+  public ChainSnapshot snapshot() {
+    return this.read((current) -> {
+      this.shared.accumulateAndGet(current.getSize(), Math::max);
+      return current;
+    });
+  } // snapshot()
+
+  /**
+   * Get the block at a given height.
+   *
+   * @param height The height of the block, between 0 (the initial block) and getSize() - 1.
+   *
+   * @return the block.
+   *
+   * @throws IndexOutOfBoundsException if there is no block at that height.
+   */
+  public Block getBlock(int height) {
+    return this.read((current) -> current.getBlock(height));
+  } // getBlock(int)
+
+  /**
+   * Find the block with a given hash.
+   *
+   * @param hash The hash of the block.
+   *
+   * @return the block, or null if no block in the chain has that hash.
+   */
+  public Block findByHash(Hash hash) {
+    HashIndex hashes = this.hashIndex();
+    return this.read((current) -> {
+      int height = hashes.find(hash, current.blocks);
+      return (height < 0) ? null : current.getBlock(height);
+    });
+  } // findByHash(Hash)
+
   /**
    * Add a block to the end of the chain.
    *
    * @param blk The block to add to the end of the chain.
    *
    * @throws IllegalArgumentException if (a) the hash is not valid, (b) the hash is not appropriate
-   *         for the contents, or (c) the previous hash is incorrect.
+   *         for the contents, (c) the previous hash is incorrect, or (d) the block's time is
+   *         before the last block's.
    */
-  public void append(Block blk) {
+  public synchronized void append(Block blk) {
     // (a) the hash is not valid
-    if (!this.check.isValid(blk.getHash())) {
+    if (!this.check.atHeight(this.blocks.size()).isValid(blk.getHash())) {
       throw new IllegalArgumentException("The hash is not valid.");
     } // if
 
     // (b) the hash is not appropriate for the contents
-    Hash temp = new Hash(
-        Block.computeHash(blk.getNum(), blk.getTransaction(), blk.getPrevHash(), blk.getNonce()));
-    if (!blk.getHash().equals(temp)) {
+    byte[] temp = Block.computeHash(this.function, blk.getNum(), blk.getTransaction(),
+        blk.getPrevHash(), blk.getNonce());
+    if (!blk.getHash().matches(temp)) {
       throw new IllegalArgumentException("The hash is not appropriate for the contents.");
     } // if
 
     // (c) the previous hash is incorrect
-    if (!this.last.getValue().getHash().equals(blk.getPrevHash())) {
+    Block last = this.blocks.getLast();
+    if (!last.getHash().equals(blk.getPrevHash())) {
       throw new IllegalArgumentException("The previous hash is incorrect.");
     } // if
 
-    this.last = this.last.insertAfter(blk);
-    ++size;
-
-    if (blk.getTransaction().getSource().equals("")) {
-      balances.put(blk.getTransaction().getTarget(),
-          balances.getOrDefault(blk.getTransaction().getTarget(), 0)
-              + blk.getTransaction().getAmount());
-    } else {
-      balances.put(blk.getTransaction().getSource(),
-          balances.getOrDefault(blk.getTransaction().getSource(), 0)
-              - blk.getTransaction().getAmount());
-      balances.put(blk.getTransaction().getTarget(),
-          balances.getOrDefault(blk.getTransaction().getTarget(), 0)
-              + blk.getTransaction().getAmount());
-    } // if/else
+    // (d) the block's time is before the last block's
+    if (blk.getTime() < last.getTime()) {
+      throw new IllegalArgumentException("The block's time is before the last block's.");
+    } // if
+
+    this.reclaim();
+    this.blocks.add(blk);
+    if (this.index != null) {
+      this.index.add(this.blocks.size() - 1);
+    } // if
+    if (this.history != null) {
+      this.history.add(this.blocks.size() - 1, blk.getTransaction());
+    } // if
+    this.state = new ChainSnapshot(this.blocks.lease(),
+        this.state.ledger.apply(blk.getTransaction()));
+
+    for (ChainListener listener : this.listeners) {
+      listener.blockAppended(this, blk);
+    } // for
   } // append()
 
   /**
@@ -138,26 +510,27 @@ public class BlockChain implements Iterable<Transaction> {
    * @return false if the chain has only one block (in which case it's not removed) or true
    *         otherwise (in which case the last block is removed).
    */
-  public boolean removeLast() {
-    if (this.size == 1) {
+  public synchronized boolean removeLast() {
+    if (this.blocks.size() == 1) {
       return false;
     } // if
-    Transaction t = this.last.getValue().getTransaction();
-    if (!t.getSource().isEmpty()) {
-      balances.put(t.getSource(), balances.get(t.getSource()) + t.getAmount());
+    Block removed = this.blocks.removeLast();
+    Transaction t = removed.getTransaction();
+    if (this.index != null) {
+      this.index.remove(this.blocks.size(), removed.getHash());
+    } // if
+    if (this.history != null) {
+      this.history.remove(this.blocks.size(), t);
+    } // if
+    this.state = new ChainSnapshot(this.blocks.lease(), this.state.ledger.undo(t));
+    this.reclaim();
+    if (this.blocks.size() < this.watermark) {
+      this.unverify(t);
     } // if
-    balances.put(t.getTarget(), balances.get(t.getTarget()) - t.getAmount());
-
-    // Find the second-to-last node
-    Node1 current = this.first;
-    while (current.next != this.last) {
-      current = current.next;
-    } // while
 
-    // Remove the last node
-    current.next = null;
-    this.last = current;
-    --size;
+    for (ChainListener listener : this.listeners) {
+      listener.blockRemoved(this, removed);
+    } // for
     return true;
   } // removeLast()
 
@@ -167,7 +540,7 @@ public class BlockChain implements Iterable<Transaction> {
    * @return the hash of the last sblock in the chain.
    */
   public Hash getHash() {
-    return this.last.getValue().getHash();
+    return this.read(ChainSnapshot::getHash);
   } // getHash()
 
   /**
@@ -177,13 +550,14 @@ public class BlockChain implements Iterable<Transaction> {
    * @return true if the user is in the system and false otherwise.
    */
   public boolean isUserInSystem(String user) {
-    return balances.containsKey(user);
+    return this.state.isUserInSystem(user);
   } // isUserInSystem()
 
   /**
    * Determine if the blockchain is correct in that (a) the balances are legal/correct at every
    * step, (b) that every block has a correct previous hash field, (c) that every block has a hash
-   * that is correct for its contents, and (d) that every block has a valid hash.
+   * that is correct for its contents, and (d) that every block has a valid hash and a time no
+   * earlier than the block before it.
    *
    * @return true if the blockchain is correct and false otherwise.
    * @throws Exception If things are wrong at any block.
@@ -200,181 +574,553 @@ public class BlockChain implements Iterable<Transaction> {
   /**
    * Determine if the blockchain is correct in that (a) the balances are legal/correct at every
    * step, (b) that every block has a correct previous hash field, (c) that every block has a hash
-   * that is correct for its contents, and (d) that every block has a valid hash.
+   * that is correct for its contents, and (d) that every block has a valid hash and a time no
+   * earlier than the block before it.
+   *
+   * Blocks verified by an earlier call are trusted, so only blocks appended since then are
+   * checked. Use checkAll to check every block again (say, if blocks may have been changed in
+   * place). We check (b), (c), and (d) on a snapshot without holding the chain's lock, so the
+   * chain can change meanwhile; if the blocks we checked are removed, we check the chain as it
+   * then stands. In parallel mode (see setParallelCheck), (b), (c), and (d) are checked for many
+   * blocks at once. Either way, the problem reported is the one in the lowest block.
    *
    * @throws Exception If things are wrong at any block.
    */
   public void check() throws Exception {
-    Node1 prev = this.first;
-    Node1 current = this.first.next;
-
-    Map<String, Integer> computedBalances = new HashMap<>();
-
-    int maxIterations = size;
-    int count = 0;
-
-    while (current != null) {
-      if (++count > maxIterations) {
-        throw new Exception("Infinite loop detected in blockchain.");
-      } // if
-
-      Block currentBlock = current.getValue();
-      Transaction transaction = currentBlock.getTransaction();
-      String target = transaction.getTarget();
-      String source = transaction.getSource();
-      int sourceBalance = computedBalances.getOrDefault(source, 0);
-      int amount = transaction.getAmount();
-      int blockNum = currentBlock.getNum();
-
-      // (a) Verify balances
-      if (transaction.getAmount() < 0) {
-        throw new Exception(
-            "Negative amount in block " + currentBlock.getNum() + ": " + transaction.getAmount());
-      } // if
-
-      if (!transaction.getSource().isEmpty()) {
-        if (!computedBalances.containsKey(source)) {
-          throw new Exception("Unknown source in block " + blockNum + ": \"" + source + "\"");
+    while (true) {
+      int start;
+      BlockStore view;
+      synchronized (this) {
+        start = this.watermark;
+        view = this.state.blocks;
+        this.reading.incrementAndGet();
+      } // synchronized
+      try {
+        int end = view.size();
+        if (start >= end) {
+          return;
         } // if
 
-        if (sourceBalance < transaction.getAmount()) {
-          throw new Exception("Insufficient balance for " + source + " in block " + blockNum
-              + ": Has " + sourceBalance + ", needs " + amount);
-        } // if
-
-        // Deduct from the source
-        computedBalances.put(source, sourceBalance - amount);
-      } // if
-
-      // Add to the target
-      computedBalances.put(target, computedBalances.getOrDefault(target, 0) + amount);
-
-      // (b) that every block has a correct previous hash field
-      if (prev != null && !currentBlock.getPrevHash().equals(prev.getValue().getHash())) {
-        throw new Exception("Every block does not have a correct previous hash field.");
-      } // if
-
-      // (c) that every block has a hash that is correct for its contents
-      Hash temp = new Hash(Block.computeHash(blockNum, transaction, currentBlock.getPrevHash(),
-          currentBlock.getNonce()));
-      if (!currentBlock.getHash().equals(temp)) {
-        throw new Exception("Every block does not have a hash that is correct for its contents.");
-      } // if
-
-      // (d) that every block has a valid hash
-      if (!this.check.isValid(currentBlock.getHash())) {
-        throw new Exception("Every block does not have a valid hash.");
-      } // if
+        // (b), (c), and (d), the slow part, need nothing but the snapshot.
+        Failure failure = null;
+        if (this.parallelCheck && end - start > PARALLEL_CHUNK) {
+          failure = ForkJoinPool.commonPool().invoke(new Verifier(view, start, end));
+        } else {
+          for (int height = start; height < end && failure == null; height++) {
+            String problem = this.verify(view, height);
+            if (problem != null) {
+              failure = new Failure(height, problem);
+            } // if
+          } // for
+        } // if/else
 
-      prev = current;
-      current = current.next;
+        synchronized (this) {
+          // If the blocks we checked are no longer the chain's (or someone else has checked
+          // them), start again from where things stand now.
+          if (this.watermark != start || this.blocks.size() < end
+              || !this.blocks.get(end - 1).getHash().equals(view.get(end - 1).getHash())) {
+            continue;
+          } // if
+          // (a) depends on the verified balances, so we replay it here, up to and including the
+          // block that failed (a problem with its balances comes first).
+          Map<String, Integer> computedBalances = new HashMap<>();
+          Map<String, Integer> computedMentions = new HashMap<>();
+          int stop = (failure == null) ? end : failure.height + 1;
+          for (int height = start; height < stop; height++) {
+            Block block = view.get(height);
+            String problem = this.replay(block, computedBalances);
+            if (problem != null) {
+              throw new Exception(problem);
+            } // if
+            mention(computedMentions, block.getTransaction(), 1);
+          } // for
+          if (failure != null) {
+            throw new Exception(failure.message);
+          } // if
+          this.verifiedBalances.putAll(computedBalances);
+          computedMentions.forEach((user, count) ->
+              this.verifiedMentions.merge(user, count, Integer::sum));
+          this.watermark = end;
+          return;
+        } // synchronized
+      } finally {
+        this.reading.decrementAndGet();
+      } // try/finally
     } // while
   } // check()
 
   /**
-   * Return an iterator of all the people who participated in the system.
+   * Choose whether check spreads the hash, validity, and link checks over several threads.
+   *
+   * @param parallel true to check in parallel and false to check on the calling thread.
+   */
+  public void setParallelCheck(boolean parallel) {
+    this.parallelCheck = parallel;
+  } // setParallelCheck(boolean)
+
+  /**
+   * Determine if the blockchain is correct, as check does, but check every block, including
+   * those verified before.
+   *
+   * @throws Exception If things are wrong at any block.
+   */
+  public void checkAll() throws Exception {
+    synchronized (this) {
+      this.watermark = 1;
+      this.verifiedBalances.clear();
+      this.verifiedMentions.clear();
+    } // synchronized
+    this.check();
+  } // checkAll()
+
+  /**
+   * Return an iterator of all the people who participated in the system, as of now.
    *
    * @return an iterator of all the people in the system.
    */
   public Iterator<String> users() {
-    return new Iterator<String>() {
-      private final Iterator<Map.Entry<String, Integer>> iterator = balances.entrySet().iterator();
-      private Map.Entry<String, Integer> currentEntry;
-
-      @Override
-      public boolean hasNext() {
-        return iterator.hasNext();
-      } // hasNext()
-
-      @Override
-      public String next() {
-        if (!this.hasNext()) {
-          throw new NoSuchElementException();
-        } // if
-        currentEntry = iterator.next();
-        return currentEntry.getKey();
-      } // next()
-    };
+    return this.state.users();
   } // users()
 
   /**
-   * Find one user's balance.
+   * Find one user's balance. We read it from the balances kept up to date by append and
+   * removeLast, so this takes constant time however long the chain is.
    *
    * @param user The user whose balance we want to find.
    *
    * @return that user's balance (or 0, if the user is not in the system).
    */
   public int balance(String user) {
-    int balance = 0;
-    Iterator<Block> blocks = this.blocks();
-    while (blocks.hasNext()) {
-      Block block = blocks.next();
-      Transaction transaction = block.getTransaction();
-      if (transaction.getSource().equals(user)) {
-        balance -= transaction.getAmount();
-      } // if
-      if (transaction.getTarget().equals(user)) {
-        balance += transaction.getAmount();
-      } // if
-    } // while
-    return balance;
+    return this.state.balance(user);
   } // balance(String)
 
   /**
-   * Get an interator for all the blocks in the chain.
+   * Get a page of the blocks whose transactions involve a user, as source or target. To get the
+   * next page, ask again starting one past the height of the last block returned.
+   *
+   * @param user The user.
+   * @param fromHeight The lowest height of interest.
+   * @param limit The most blocks to return.
+   *
+   * @return up to limit blocks, each at height fromHeight or above, in chain order.
+   */
+  public List<Block> history(String user, int fromHeight, int limit) {
+    HistoryIndex users = this.historyIndex();
+    return this.read((current) -> {
+      int[] heights = users.heights(user, fromHeight, limit);
+      ArrayList<Block> page = new ArrayList<Block>(heights.length);
+      for (int height : heights) {
+        // The index may be ahead of, or partway through changing from, our snapshot.
+        if (height < current.getSize()) {
+          Block block = current.getBlock(height);
+          Transaction t = block.getTransaction();
+          if (t.getSource().equals(user) || t.getTarget().equals(user)) {
+            page.add(block);
+          } // if
+        } // if
+      } // for
+      return page;
+    });
+  } // history(String, int, int)
+
+  /**
+   * Check, in the background, that the balances we keep agree with a replay of every block in
+   * the chain. The replay sees the chain as it is now; later appends and removals do not
+   * affect it.
+   *
+   * @return a future that completes with true if every balance agrees and false otherwise.
+   */
+  public CompletableFuture<Boolean> auditLedger() {
+    ChainSnapshot current = this.snapshot();
+    return CompletableFuture.supplyAsync(() -> {
+      HashMap<String, Integer> replayed = new HashMap<String, Integer>();
+      // The initial block is never applied to the balances.
+      for (int height = 1; height < current.blocks.size(); height++) {
+        apply(replayed, current.blocks.get(height).getTransaction());
+      } // for
+      for (Map.Entry<String, Integer> entry : replayed.entrySet()) {
+        if (current.ledger.balance(entry.getKey()) != entry.getValue()) {
+          return false;
+        } // if
+      } // for
+      Iterator<String> users = current.ledger.users();
+      while (users.hasNext()) {
+        String user = users.next();
+        if (current.ledger.balance(user) != replayed.getOrDefault(user, 0)) {
+          return false;
+        } // if
+      } // while
+      return true;
+    });
+  } // auditLedger()
+
+  /**
+   * Get an interator for all the blocks in the chain, as of now.
    *
    * @return an iterator for all the blocks in the chain.
    */
   public Iterator<Block> blocks() {
-    return new Iterator<Block>() {
-      int pos = 0;
-      Node1 next = first;
-
-      @Override
-      public boolean hasNext() {
-        return (pos < size);
-      } // hasNext()
-
-      @Override
-      public Block next() {
-        if (!this.hasNext()) {
-          throw new NoSuchElementException();
-        } // if
-        Node1 current = this.next;
-        this.next = this.next.next;
-        ++this.pos;
-        return current.getValue();
-      } // next()
-    };
+    return this.snapshot().blocks();
   } // blocks()
 
   /**
-   * Get an interator for all the transactions in the chain.
+   * Get an interator for all the transactions in the chain, as of now.
    *
    * @return an iterator for all the blocks in the chain.
    */
   @Override
   public Iterator<Transaction> iterator() {
-    return new Iterator<Transaction>() {
-      int pos = 0;
-      Node1 next = first;
-
-      @Override
-      public boolean hasNext() {
-        return (pos < size);
-      } // hasNext()
-
-      @Override
-      public Transaction next() {
-        if (!this.hasNext()) {
-          throw new NoSuchElementException();
-        } // if
-        Node1 current = this.next;
-        this.next = this.next.next;
-        ++this.pos;
-        return current.getValue().getTransaction();
-      } // next()
-    };
+    return this.snapshot().iterator();
   } // iterator()
 
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Read the latest snapshot, counting ourselves as a reader until we are done with it.
+   *
+   * @param <T> The type of what we read.
+   * @param reader What to read from the snapshot.
+   *
+   * @return what the reader returns.
+   */
+  <T> T read(Function<ChainSnapshot, T> reader) {
+    this.reading.incrementAndGet();
+    try {
+      return reader.apply(this.state);
+    } finally {
+      this.reading.decrementAndGet();
+    } // try/finally
+  } // read(Function<ChainSnapshot, T>)
+
+  /**
+   * Let the store reclaim the space of removed blocks that nobody can read any more: those past
+   * every snapshot handed out, when no one is reading without the lock. Call while holding the
+   * lock, after publishing any new state.
+   */
+  void reclaim() {
+    if (this.reading.get() == 0) {
+      this.blocks.release(Math.max(this.blocks.size(), this.shared.get()));
+    } // if
+  } // reclaim()
+
+  /**
+   * Get the index of hashes, building it (while holding the lock) if this is the first time
+   * anyone needs it.
+   *
+   * @return the index.
+   */
+  HashIndex hashIndex() {
+    HashIndex result = this.index;
+    if (result == null) {
+      synchronized (this) {
+        if (this.index == null) {
+          this.index = new HashIndex(this.blocks);
+        } // if
+        result = this.index;
+      } // synchronized
+    } // if
+    return result;
+  } // hashIndex()
+
+  /**
+   * Get the index of users' blocks, building it (while holding the lock) if this is the first
+   * time anyone needs it.
+   *
+   * @return the index.
+   */
+  HistoryIndex historyIndex() {
+    HistoryIndex result = this.history;
+    if (result == null) {
+      synchronized (this) {
+        if (this.history == null) {
+          HistoryIndex built = new HistoryIndex();
+          for (int height = 1; height < this.blocks.size(); height++) {
+            built.add(height, this.blocks.get(height).getTransaction());
+          } // for
+          this.history = built;
+        } // if
+        result = this.history;
+      } // synchronized
+    } // if
+    return result;
+  } // historyIndex()
+
+  /**
+   * Check (a), that a block's transaction is legal given the balances before it, and update the
+   * balances.
+   *
+   * @param block The block.
+   * @param computedBalances The balances that differ from the verified ones.
+   *
+   * @return a description of the problem, or null if there is none.
+   */
+  String replay(Block block, Map<String, Integer> computedBalances) {
+    Transaction transaction = block.getTransaction();
+    String target = transaction.getTarget();
+    String source = transaction.getSource();
+    Integer knownBalance = computedBalances.containsKey(source) ? computedBalances.get(source)
+        : this.verifiedBalances.get(source);
+    int sourceBalance = (knownBalance == null) ? 0 : knownBalance;
+    int amount = transaction.getAmount();
+    int blockNum = block.getNum();
+
+    if (amount < 0) {
+      return "Negative amount in block " + blockNum + ": " + amount;
+    } // if
+
+    if (!source.isEmpty()) {
+      if (knownBalance == null) {
+        return "Unknown source in block " + blockNum + ": \"" + source + "\"";
+      } // if
+
+      if (sourceBalance < amount) {
+        return "Insufficient balance for " + source + " in block " + blockNum + ": Has "
+            + sourceBalance + ", needs " + amount;
+      } // if
+
+      // Deduct from the source
+      computedBalances.put(source, sourceBalance - amount);
+    } // if
+
+    // Add to the target
+    Integer targetBalance = computedBalances.containsKey(target) ? computedBalances.get(target)
+        : this.verifiedBalances.get(target);
+    computedBalances.put(target, ((targetBalance == null) ? 0 : targetBalance) + amount);
+    return null;
+  } // replay(Block, Map<String, Integer>)
+
+  /**
+   * Check (b), (c), and (d) for the block at a given height. These depend on nothing but the
+   * block and the one before it, so blocks can be checked in any order.
+   *
+   * @param view The blocks.
+   * @param height The height of the block.
+   *
+   * @return a description of the problem, or null if there is none.
+   */
+  String verify(BlockStore view, int height) {
+    Block prevBlock = view.get(height - 1);
+    Block currentBlock = view.get(height);
+    int blockNum = currentBlock.getNum();
+
+    // (b) that every block has a correct previous hash field
+    if (!currentBlock.getPrevHash().equals(prevBlock.getHash())) {
+      return "Block " + blockNum + " does not have a correct previous hash field.";
+    } // if
+
+    // (c) that every block has a hash that is correct for its contents
+    byte[] temp = Block.computeHash(this.function, blockNum, currentBlock.getTransaction(),
+        currentBlock.getPrevHash(), currentBlock.getNonce());
+    if (!currentBlock.getHash().matches(temp)) {
+      return "Block " + blockNum + " does not have a hash that is correct for its contents.";
+    } // if
+
+    // (d) that every block has a valid hash for the difficulty at its height, and a time no
+    // earlier than the block before it (the difficulty may follow from the times)
+    if (!this.check.atHeight(blockNum).isValid(currentBlock.getHash())) {
+      return "Block " + blockNum + " does not have a valid hash.";
+    } // if
+    if (currentBlock.getTime() < prevBlock.getTime()) {
+      return "Block " + blockNum + " has a time before the block before it.";
+    } // if
+    return null;
+  } // verify(BlockStore, int)
+
+  /**
+   * Take a verified block that has just been removed back out of the verified balances. Users
+   * that no remaining block mentions are forgotten, as check would never have seen them. The
+   * counts in verifiedMentions tell us who they are, so this takes constant time.
+   *
+   * @param t The transaction in the removed block.
+   */
+  void unverify(Transaction t) {
+    this.watermark = this.blocks.size();
+    if (!t.getSource().isEmpty()) {
+      this.verifiedBalances.merge(t.getSource(), t.getAmount(), Integer::sum);
+    } // if
+    this.verifiedBalances.merge(t.getTarget(), -t.getAmount(), Integer::sum);
+    mention(this.verifiedMentions, t, -1);
+    if (!this.verifiedMentions.containsKey(t.getSource())) {
+      this.verifiedBalances.remove(t.getSource());
+    } // if
+    if (!this.verifiedMentions.containsKey(t.getTarget())) {
+      this.verifiedBalances.remove(t.getTarget());
+    } // if
+  } // unverify(Transaction)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Open the chain kept on disk in a directory, creating it if the directory holds none. An
+   * existing chain keeps the hash function it was created with. If the directory holds a
+   * checkpoint that matches the blocks, the blocks it covers are trusted, and their records are
+   * found from the positions it holds rather than by reading the log; every later block (or
+   * every block, without a usable checkpoint) is read and verified before the chain is returned.
+   * Closing the chain saves a new checkpoint, so a chain that is checked before it is closed
+   * reopens without reading its old blocks, however long it grows. Use checkAll to verify every
+   * block anyway.
+   *
+   * @param dir The directory.
+   * @param checkInput The validator used to check elements.
+   * @param minerInput The miner used to find nonces.
+   * @param functionInput The hash function used for every block of a new chain.
+   *
+   * @return the chain.
+   *
+   * @throws IOException if the chain cannot be read or created, or its blocks are not valid.
+   */
+  public static BlockChain open(Path dir, HashValidator checkInput, Miner minerInput,
+      HashFunction functionInput) throws IOException {
+    Path file = dir.resolve(CHECKPOINT);
+    Checkpoint checkpoint = null;
+    if (Files.exists(file)) {
+      try {
+        checkpoint = Checkpoint.read(file);
+      } catch (IOException e) {
+        // A checkpoint we cannot read just means verifying everything.
+        checkpoint = null;
+      } // try/catch
+    } // if
+    SegmentedBlockStore store = new SegmentedBlockStore(dir, functionInput,
+        SegmentedBlockStore.DEFAULT_SEGMENT_SIZE, checkpoint);
+    BlockChain chain = new BlockChain(checkInput, minerInput, store.getHashFunction(), store,
+        checkpoint);
+    try {
+      chain.check();
+    } catch (Exception e) {
+      store.close();
+      throw new IOException("The chain in " + dir + " is not valid: " + e.getMessage(), e);
+    } // try/catch
+    chain.checkpointFile = file;
+    return chain;
+  } // open(Path, HashValidator, Miner, HashFunction)
+
+  /**
+   * Update balances for a transaction.
+   *
+   * @param ledger The balances, by user.
+   * @param t The transaction.
+   */
+  static void apply(Map<String, Integer> ledger, Transaction t) {
+    if (!t.getSource().isEmpty()) {
+      ledger.put(t.getSource(), ledger.getOrDefault(t.getSource(), 0) - t.getAmount());
+    } // if
+    ledger.put(t.getTarget(), ledger.getOrDefault(t.getTarget(), 0) + t.getAmount());
+  } // apply(Map<String, Integer>, Transaction)
+
+  /**
+   * Count, up or down, a block's transaction against the users it mentions. A user whose count
+   * reaches zero is dropped.
+   *
+   * @param mentions The counts, by user.
+   * @param t The transaction.
+   * @param delta 1 to count the block and -1 to take it back.
+   */
+  static void mention(Map<String, Integer> mentions, Transaction t, int delta) {
+    if (!t.getSource().isEmpty()) {
+      mentions.merge(t.getSource(), delta, (a, b) -> (a + b == 0) ? null : a + b);
+    } // if
+    if (!t.getTarget().equals(t.getSource())) {
+      mentions.merge(t.getTarget(), delta, (a, b) -> (a + b == 0) ? null : a + b);
+    } // if
+  } // mention(Map<String, Integer>, Transaction, int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A problem found in a block.
+   */
+  static class Failure {
+    /**
+     * The height of the block.
+     */
+    int height;
+
+    /**
+     * A description of the problem.
+     */
+    String message;
+
+    /**
+     * Create a failure.
+     *
+     * @param heightInput The height of the block.
+     * @param messageInput A description of the problem.
+     */
+    Failure(int heightInput, String messageInput) {
+      this.height = heightInput;
+      this.message = messageInput;
+    } // Failure(int, String)
+  } // class Failure
+
+  /**
+   * Checks (b), (c), and (d) for a range of blocks, splitting large ranges in two and checking
+   * the halves in parallel.
+   */
+  class Verifier extends RecursiveTask<Failure> {
+    /**
+     * The version of the serialized form, which ForkJoinTask requires us to have.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The blocks to check.
+     */
+    BlockStore blocks;
+
+    /**
+     * The height of the first block to check.
+     */
+    int start;
+
+    /**
+     * The height just past the last block to check.
+     */
+    int end;
+
+    /**
+     * Create a task that checks the blocks from start (inclusive) to end (exclusive).
+     *
+     * @param blocksInput The blocks to check.
+     * @param startInput The height of the first block.
+     * @param endInput The height just past the last block.
+     */
+    Verifier(BlockStore blocksInput, int startInput, int endInput) {
+      this.blocks = blocksInput;
+      this.start = startInput;
+      this.end = endInput;
+    } // Verifier(BlockStore, int, int)
+
+    /**
+     * Check the blocks.
+     *
+     * @return the problem in the lowest block, or null if there are none.
+     */
+    @Override
+    protected Failure compute() {
+      if (this.end - this.start <= PARALLEL_CHUNK) {
+        for (int height = this.start; height < this.end; height++) {
+          String problem = verify(this.blocks, height);
+          if (problem != null) {
+            return new Failure(height, problem);
+          } // if
+        } // for
+        return null;
+      } // if
+      int middle = (this.start + this.end) >>> 1;
+      Verifier low = new Verifier(this.blocks, this.start, middle);
+      Verifier high = new Verifier(this.blocks, middle, this.end);
+      high.fork();
+      Failure failure = low.compute();
+      Failure highFailure = high.join();
+      return (failure != null) ? failure : highFailure;
+    } // compute()
+  } // class Verifier
 } // class BlockChain
@@ -0,0 +1,614 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A compact binary format for blocks. A block is written as
+ *
+ * <pre>
+ * flags (1 byte)        which hashes are full width
+ * number (varint)
+ * nonce (8 bytes)
+ * time (8 bytes)       when the block was made
+ * source (varint length, then UTF-8)
+ * target (varint length, then UTF-8)
+ * amount (zigzag varint)
+ * previous hash         full width, or varint length then bytes
+ * hash                  full width, or varint length then bytes
+ * </pre>
+ *
+ * where a varint is an unsigned integer in seven-bit groups, low group first, and a zigzag
+ * varint maps small negative numbers to small varints. Hashes as long as the hash function's
+ * output (all of them, but the initial block's empty previous hash) are written with no length.
+ * A deposit of 100 to a one-letter user takes about 90 bytes with SHA-256, where toString takes
+ * more than 200 characters.
+ *
+ * Streams of blocks (see Encoder and Decoder) start with the format version and the name of the
+ * hash function, and put the length of each block before it.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public final class BlockCodec {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The version of the format.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * The flag set when the previous hash is full width.
+   */
+  static final int PREV_FIXED = 1;
+
+  /**
+   * The flag set when the hash is full width.
+   */
+  static final int HASH_FIXED = 2;
+
+  /**
+   * The most bytes a varint can take.
+   */
+  static final int MAX_VARINT = 5;
+
+  /**
+   * The size of the buffers used by encoders and decoders, unless a block needs more.
+   */
+  static final int STREAM_BUFFER = 1 << 16;
+
+  /**
+   * The most bytes one block in a stream may take, so that a corrupt length cannot make a
+   * decoder allocate without bound.
+   */
+  static final int MAX_BLOCK = 1 << 24;
+
+  /**
+   * The most bytes the name of the hash function may take in a stream header.
+   */
+  static final int MAX_NAME = 32;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The hash function of the blocks.
+   */
+  final HashFunction function;
+
+  /**
+   * The number of bytes in a full-width hash.
+   */
+  final int width;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a codec for blocks hashed with a given function.
+   *
+   * @param functionInput The hash function.
+   */
+  public BlockCodec(HashFunction functionInput) {
+    this.function = functionInput;
+    this.width = functionInput.length();
+  } // BlockCodec(HashFunction)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the hash function of the blocks.
+   *
+   * @return the hash function.
+   */
+  public HashFunction getHashFunction() {
+    return this.function;
+  } // getHashFunction()
+
+  /**
+   * Determine how many bytes a block takes.
+   *
+   * @param block The block.
+   *
+   * @return the number of bytes encode would write.
+   */
+  public int encodedLength(Block block) {
+    Transaction t = block.getTransaction();
+    return this.encodedLength(block, t.getSource().getBytes(StandardCharsets.UTF_8),
+        t.getTarget().getBytes(StandardCharsets.UTF_8));
+  } // encodedLength(Block)
+
+  /**
+   * Write a block at a buffer's position, advancing the position.
+   *
+   * @param block The block.
+   * @param buffer The buffer.
+   *
+   * @throws BufferOverflowException if the buffer does not have room, in which case nothing is
+   *         written.
+   */
+  public void encode(Block block, ByteBuffer buffer) {
+    Transaction t = block.getTransaction();
+    byte[] source = t.getSource().getBytes(StandardCharsets.UTF_8);
+    byte[] target = t.getTarget().getBytes(StandardCharsets.UTF_8);
+    if (buffer.remaining() < this.encodedLength(block, source, target)) {
+      throw new BufferOverflowException();
+    } // if
+    Hash prevHash = block.getPrevHash();
+    Hash hash = block.getHash();
+    buffer.put((byte) ((prevHash.length() == this.width ? PREV_FIXED : 0)
+        | (hash.length() == this.width ? HASH_FIXED : 0)));
+    putVarint(buffer, block.getNum());
+    buffer.putLong(block.getNonce());
+    buffer.putLong(block.getTime());
+    putVarint(buffer, source.length);
+    buffer.put(source);
+    putVarint(buffer, target.length);
+    buffer.put(target);
+    putVarint(buffer, zigzag(t.getAmount()));
+    this.putHash(buffer, prevHash);
+    this.putHash(buffer, hash);
+  } // encode(Block, ByteBuffer)
+
+  /**
+   * Read a block from a buffer's position, advancing the position. The block's hashes are
+   * copied out of the buffer.
+   *
+   * @param buffer The buffer.
+   *
+   * @return the block.
+   *
+   * @throws BufferUnderflowException if the buffer holds only part of a block.
+   * @throws IllegalArgumentException if the bytes are not a block.
+   */
+  public Block decode(ByteBuffer buffer) {
+    return this.decode(buffer, false);
+  } // decode(ByteBuffer)
+
+  /**
+   * Read a block from a buffer's position, advancing the position.
+   *
+   * @param buffer The buffer.
+   * @param share Whether the block's hashes may be views of the buffer (see Hash.view) rather
+   *   than copies. Share only buffers whose contents stay put.
+   *
+   * @return the block.
+   *
+   * @throws BufferUnderflowException if the buffer holds only part of a block.
+   * @throws IllegalArgumentException if the bytes are not a block.
+   */
+  public Block decode(ByteBuffer buffer, boolean share) {
+    int flags = buffer.get();
+    if ((flags & ~(PREV_FIXED | HASH_FIXED)) != 0) {
+      throw new IllegalArgumentException("Unknown flags in block: " + flags);
+    } // if
+    int num = getVarint(buffer);
+    long nonce = buffer.getLong();
+    long time = buffer.getLong();
+    String source = getString(buffer);
+    String target = getString(buffer);
+    int amount = unzigzag(getVarint(buffer));
+    Hash prevHash = this.getHash(buffer, (flags & PREV_FIXED) != 0, share);
+    Hash hash = this.getHash(buffer, (flags & HASH_FIXED) != 0, share);
+    return new Block(num, new Transaction(source, target, amount), prevHash, nonce, hash,
+        this.function, time);
+  } // decode(ByteBuffer, boolean)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Determine how many bytes a block takes, given its names in UTF-8.
+   *
+   * @param block The block.
+   * @param source The source's name.
+   * @param target The target's name.
+   *
+   * @return the number of bytes.
+   */
+  int encodedLength(Block block, byte[] source, byte[] target) {
+    return 1 + varintLength(block.getNum()) + 2 * Long.BYTES
+        + varintLength(source.length) + source.length
+        + varintLength(target.length) + target.length
+        + varintLength(zigzag(block.getTransaction().getAmount()))
+        + this.hashLength(block.getPrevHash()) + this.hashLength(block.getHash());
+  } // encodedLength(Block, byte[], byte[])
+
+  /**
+   * Determine how many bytes a hash takes.
+   *
+   * @param hash The hash.
+   *
+   * @return the number of bytes.
+   */
+  int hashLength(Hash hash) {
+    int length = hash.length();
+    return (length == this.width) ? length : varintLength(length) + length;
+  } // hashLength(Hash)
+
+  /**
+   * Write a hash, with its length if it is not full width.
+   *
+   * @param buffer The buffer.
+   * @param hash The hash.
+   */
+  void putHash(ByteBuffer buffer, Hash hash) {
+    if (hash.length() != this.width) {
+      putVarint(buffer, hash.length());
+    } // if
+    hash.writeTo(buffer);
+  } // putHash(ByteBuffer, Hash)
+
+  /**
+   * Read a hash.
+   *
+   * @param buffer The buffer.
+   * @param fixed Whether the hash is full width, and so has no length.
+   * @param share Whether the hash may be a view of the buffer.
+   *
+   * @return the hash.
+   */
+  Hash getHash(ByteBuffer buffer, boolean fixed, boolean share) {
+    int length = fixed ? this.width : getVarint(buffer);
+    if (length < 0 || length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    } // if
+    Hash hash;
+    if (share) {
+      hash = Hash.view(buffer, buffer.position(), length);
+    } else {
+      byte[] bytes = new byte[length];
+      buffer.get(buffer.position(), bytes);
+      hash = Hash.of(bytes);
+    } // if/else
+    buffer.position(buffer.position() + length);
+    return hash;
+  } // getHash(ByteBuffer, boolean, boolean)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Write an unsigned varint.
+   *
+   * @param buffer The buffer.
+   * @param value The value, treated as unsigned.
+   */
+  static void putVarint(ByteBuffer buffer, int value) {
+    while ((value & ~0x7f) != 0) {
+      buffer.put((byte) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    } // while
+    buffer.put((byte) value);
+  } // putVarint(ByteBuffer, int)
+
+  /**
+   * Read an unsigned varint.
+   *
+   * @param buffer The buffer.
+   *
+   * @return the value.
+   *
+   * @throws IllegalArgumentException if the varint is longer, or larger, than an int allows.
+   */
+  static int getVarint(ByteBuffer buffer) {
+    int value = 0;
+    for (int shift = 0; shift < 7 * MAX_VARINT; shift += 7) {
+      byte b = buffer.get();
+      if (shift + 7 > Integer.SIZE && (b & 0xff) >>> (Integer.SIZE - shift) != 0) {
+        throw new IllegalArgumentException("Varint too large.");
+      } // if
+      value |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        return value;
+      } // if
+    } // for
+    throw new IllegalArgumentException("Varint too long.");
+  } // getVarint(ByteBuffer)
+
+  /**
+   * Determine how many bytes an unsigned varint takes.
+   *
+   * @param value The value, treated as unsigned.
+   *
+   * @return the number of bytes, from 1 to 5.
+   */
+  static int varintLength(int value) {
+    return 1 + (31 - Integer.numberOfLeadingZeros(value | 1)) / 7;
+  } // varintLength(int)
+
+  /**
+   * Map a signed int to an unsigned one, so that numbers near zero stay small.
+   *
+   * @param value The signed value.
+   *
+   * @return 0, 1, 2, 3, ... for 0, -1, 1, -2, ...
+   */
+  static int zigzag(int value) {
+    return (value << 1) ^ (value >> 31);
+  } // zigzag(int)
+
+  /**
+   * Undo zigzag.
+   *
+   * @param value The unsigned value.
+   *
+   * @return the signed value.
+   */
+  static int unzigzag(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  } // unzigzag(int)
+
+  /**
+   * Read a string written as a varint length and UTF-8 bytes.
+   *
+   * @param buffer The buffer.
+   *
+   * @return the string.
+   *
+   * @throws BufferUnderflowException if the buffer holds only part of the string.
+   * @throws IllegalArgumentException if the length is not one a string can have.
+   */
+  static String getString(ByteBuffer buffer) {
+    int length = getVarint(buffer);
+    if (length < 0) {
+      throw new IllegalArgumentException("Bad string length: " + length);
+    } else if (length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    } // if
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  } // getString(ByteBuffer)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * Writes a stream of blocks to a channel, buffering them.
+   */
+  public static final class Encoder implements Closeable {
+    /**
+     * The format of the blocks.
+     */
+    final BlockCodec codec;
+
+    /**
+     * Where the blocks go.
+     */
+    final WritableByteChannel channel;
+
+    /**
+     * Blocks waiting to be written.
+     */
+    ByteBuffer buffer;
+
+    /**
+     * Start a stream of blocks, writing its header to the buffer.
+     *
+     * @param codecInput The format of the blocks.
+     * @param channelInput Where the blocks go.
+     */
+    public Encoder(BlockCodec codecInput, WritableByteChannel channelInput) {
+      this.codec = codecInput;
+      this.channel = channelInput;
+      this.buffer = ByteBuffer.allocate(STREAM_BUFFER);
+      byte[] name = codecInput.function.name().getBytes(StandardCharsets.US_ASCII);
+      this.buffer.put((byte) VERSION);
+      putVarint(this.buffer, name.length);
+      this.buffer.put(name);
+    } // Encoder(BlockCodec, WritableByteChannel)
+
+    /**
+     * Add a block to the stream.
+     *
+     * @param block The block.
+     *
+     * @throws IOException if the channel cannot be written.
+     * @throws IllegalArgumentException if the block is too large for a stream.
+     */
+    public void write(Block block) throws IOException {
+      int length = this.codec.encodedLength(block);
+      if (length > MAX_BLOCK) {
+        throw new IllegalArgumentException("Block of " + length + " bytes is too large.");
+      } // if
+      if (this.buffer.remaining() < MAX_VARINT + length) {
+        this.flush();
+        if (this.buffer.capacity() < MAX_VARINT + length) {
+          this.buffer = ByteBuffer.allocate(MAX_VARINT + length);
+        } // if
+      } // if
+      putVarint(this.buffer, length);
+      this.codec.encode(block, this.buffer);
+    } // write(Block)
+
+    /**
+     * Write every block added so far to the channel.
+     *
+     * @throws IOException if the channel cannot be written.
+     */
+    public void flush() throws IOException {
+      this.buffer.flip();
+      while (this.buffer.hasRemaining()) {
+        this.channel.write(this.buffer);
+      } // while
+      this.buffer.clear();
+    } // flush()
+
+    /**
+     * Flush the stream and close the channel.
+     *
+     * @throws IOException if the channel cannot be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+      this.flush();
+      this.channel.close();
+    } // close()
+  } // class Encoder
+
+  /**
+   * Reads a stream of blocks, as written by an Encoder, from a channel.
+   */
+  public static final class Decoder implements Closeable {
+    /**
+     * Where the blocks come from.
+     */
+    final ReadableByteChannel channel;
+
+    /**
+     * Bytes read but not yet decoded, between the position and the limit.
+     */
+    ByteBuffer buffer;
+
+    /**
+     * The format of the blocks, from the header of the stream.
+     */
+    final BlockCodec codec;
+
+    /**
+     * Start reading a stream of blocks, reading its header.
+     *
+     * @param channelInput Where the blocks come from.
+     *
+     * @throws IOException if the channel cannot be read, or the header is missing or from
+     *         another version of the format.
+     */
+    public Decoder(ReadableByteChannel channelInput) throws IOException {
+      this.channel = channelInput;
+      this.buffer = ByteBuffer.allocate(STREAM_BUFFER).flip();
+      if (!this.fill(1 + MAX_VARINT) && !this.buffer.hasRemaining()) {
+        throw new EOFException("No stream header.");
+      } // if
+      int version = this.buffer.get();
+      if (version != VERSION) {
+        throw new IOException("Cannot read version " + version + " of the block format.");
+      } // if
+      int length;
+      try {
+        length = getVarint(this.buffer);
+      } catch (BufferUnderflowException | IllegalArgumentException e) {
+        throw new IOException("Bad stream header.", e);
+      } // try/catch
+      if (length < 0 || length > MAX_NAME) {
+        throw new IOException("Bad hash function name length in stream header: " + length);
+      } // if
+      byte[] name = new byte[length];
+      if (!this.fill(name.length)) {
+        throw new EOFException("Stream header cut short.");
+      } // if
+      this.buffer.get(name);
+      try {
+        this.codec = new BlockCodec(
+            HashFunction.valueOf(new String(name, StandardCharsets.US_ASCII)));
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Unknown hash function in stream header.", e);
+      } // try/catch
+    } // Decoder(ReadableByteChannel)
+
+    /**
+     * Get the format of the blocks, as given by the stream.
+     *
+     * @return the codec.
+     */
+    public BlockCodec getCodec() {
+      return this.codec;
+    } // getCodec()
+
+    /**
+     * Read the next block.
+     *
+     * @return the block, or null at the end of the stream.
+     *
+     * @throws IOException if the channel cannot be read, or the stream ends within a block.
+     * @throws IllegalArgumentException if the bytes are not a block, or give a length no block
+     *         can have.
+     */
+    public Block read() throws IOException {
+      if (!this.fill(MAX_VARINT) && !this.buffer.hasRemaining()) {
+        return null;
+      } // if
+      int length;
+      try {
+        length = getVarint(this.buffer);
+      } catch (BufferUnderflowException e) {
+        throw new EOFException("Stream ends within a block length.");
+      } // try/catch
+      if (length < 1 || length > MAX_BLOCK) {
+        throw new IllegalArgumentException("Bad block length: " + length);
+      } // if
+      if (!this.fill(length)) {
+        throw new EOFException("Stream ends within a block.");
+      } // if
+      ByteBuffer block = this.buffer.slice(this.buffer.position(), length);
+      this.buffer.position(this.buffer.position() + length);
+      Block result;
+      try {
+        result = this.codec.decode(block);
+      } catch (BufferUnderflowException e) {
+        throw new IllegalArgumentException("Block longer than its length.", e);
+      } // try/catch
+      if (block.hasRemaining()) {
+        throw new IllegalArgumentException("Block shorter than its length.");
+      } // if
+      return result;
+    } // read()
+
+    /**
+     * Close the channel.
+     *
+     * @throws IOException if the channel cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+      this.channel.close();
+    } // close()
+
+    /**
+     * Read from the channel until the buffer holds at least a given number of bytes, or the
+     * channel ends.
+     *
+     * @param needed The number of bytes.
+     *
+     * @return true if the buffer holds that many bytes and false if the channel ended first.
+     *
+     * @throws IOException if the channel cannot be read.
+     */
+    boolean fill(int needed) throws IOException {
+      if (this.buffer.remaining() >= needed) {
+        return true;
+      } // if
+      if (this.buffer.capacity() < needed) {
+        this.buffer = ByteBuffer.allocate(needed).put(this.buffer).flip();
+      } // if
+      this.buffer.compact();
+      try {
+        while (this.buffer.position() < needed) {
+          if (this.channel.read(this.buffer) < 0) {
+            return false;
+          } // if
+        } // while
+        return true;
+      } finally {
+        this.buffer.flip();
+      } // try/finally
+    } // fill(int)
+  } // class Decoder
+} // class BlockCodec
@@ -0,0 +1,517 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Hashes many candidate blocks that differ only in their nonce, using a SHA-256 compression
+ * function specialized for the layout that Block.computeHash digests (number, source, target,
+ * amount, previous hash, nonce).
+ *
+ * When the hasher is created, we lay out the whole padded message, compress every message block
+ * that comes before the nonce, and run the rounds of the nonce's message block that come before
+ * the first word containing nonce bytes. Each candidate then only patches in the nonce words and
+ * finishes the remaining rounds on primitive ints. The first output word is checked against the
+ * validator's leading-zero requirement before we compute the rest of the digest, so almost every
+ * candidate is rejected without ever producing a hash. Checking a candidate allocates nothing.
+ *
+ * On processors with SHA extensions, the JDK compiles its own SHA-256 to those instructions,
+ * which no pure-Java compression function can match. So a hasher can instead use a MessageDigest:
+ * it digests the prefix once, and each candidate works on a clone of that digest, so only the
+ * nonce and padding are hashed per attempt. We time both engines the first time a hasher needs
+ * the default engine and keep the faster; the system property blockchains.hasher ("kernel" or
+ * "digest") overrides that choice. Blocks hashed with other functions always use the
+ * MessageDigest.
+ *
+ * Each hasher keeps mutable scratch state, so a hasher must only be used by one thread at a time.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+class BlockHasher {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of 32-bit words in a message block.
+   */
+  static final int BLOCK_WORDS = Sha256.BLOCK_BYTES / Integer.BYTES;
+
+  /**
+   * The number of rounds in the compression function.
+   */
+  static final int ROUNDS = Sha256.ROUNDS;
+
+  /**
+   * The number of candidates we hash with each engine when deciding which is faster.
+   */
+  static final int CALIBRATION_ATTEMPTS = 20000;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Whether this hasher uses the specialized compression function.
+   */
+  boolean kernel;
+
+  /**
+   * The platform digest, if we're not using the specialized compression function. It has
+   * already digested the bytes that precede the nonce, unless the digest cannot be cloned.
+   */
+  MessageDigest md;
+
+  /**
+   * The bytes that precede the nonce, if the platform digest cannot be cloned and so must
+   * digest them for every candidate; null otherwise.
+   */
+  byte[] prefix;
+
+  /**
+   * The bytes of the nonce, for the platform digest.
+   */
+  byte[] nonceBytes;
+
+  /**
+   * The hash value after all the message blocks that precede the nonce.
+   */
+  int[] midstate;
+
+  /**
+   * The working variables (a through h) after the rounds of the first remaining message block
+   * that precede the nonce.
+   */
+  int[] preRounds;
+
+  /**
+   * The round at which the nonce first affects the working variables.
+   */
+  int firstRound;
+
+  /**
+   * The remaining message blocks (one or two of them), with padding, as bytes.
+   */
+  byte[] tail;
+
+  /**
+   * The remaining message blocks, as big-endian words.
+   */
+  int[] words;
+
+  /**
+   * The offset of the nonce within tail.
+   */
+  int nonceOffset;
+
+  /**
+   * The message schedule.
+   */
+  int[] sched;
+
+  /**
+   * The hash value while we work through the remaining blocks.
+   */
+  int[] chain;
+
+  /**
+   * The working variables while we work through a block.
+   */
+  int[] regs;
+
+  /**
+   * Where we store the hash of each candidate.
+   */
+  byte[] out;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a hasher for blocks with the given contents.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   */
+  BlockHasher(int num, Transaction transaction, Hash prevHash) {
+    this(num, transaction, prevHash, useKernel());
+  } // BlockHasher(int, Transaction, Hash)
+
+  /**
+   * Create a hasher for blocks with the given contents and hash function, using the faster
+   * engine for SHA-256.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param function The hash function.
+   */
+  BlockHasher(int num, Transaction transaction, Hash prevHash, HashFunction function) {
+    this(num, transaction, prevHash, function, useKernel() && function == HashFunction.SHA_256);
+  } // BlockHasher(int, Transaction, Hash, HashFunction)
+
+  /**
+   * Create a hasher for blocks with the given contents, hashed with SHA-256 using the given
+   * engine.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param kernelInput Whether to use the specialized compression function (true) or the
+   *   platform's SHA-256 (false).
+   */
+  BlockHasher(int num, Transaction transaction, Hash prevHash, boolean kernelInput) {
+    this(num, transaction, prevHash, HashFunction.SHA_256, kernelInput);
+  } // BlockHasher(int, Transaction, Hash, boolean)
+
+  /**
+   * Create a hasher for blocks with the given contents, using the given hash function and
+   * engine.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param function The hash function.
+   * @param kernelInput Whether to use the specialized compression function (true) or the
+   *   platform's digest (false).
+   *
+   * @throws IllegalArgumentException if we are asked to use the specialized compression function
+   *   for some function other than SHA-256.
+   */
+  BlockHasher(int num, Transaction transaction, Hash prevHash, HashFunction function,
+      boolean kernelInput) {
+    if (kernelInput && function != HashFunction.SHA_256) {
+      throw new IllegalArgumentException("The kernel only computes SHA-256.");
+    } // if
+    byte[] source = transaction.getSource().getBytes();
+    byte[] target = transaction.getTarget().getBytes();
+    byte[] prev = prevHash.getBytes();
+    int prefixLength = 2 * Integer.BYTES + source.length + target.length + prev.length;
+    int messageLength = prefixLength + Long.BYTES;
+    int paddedLength = (messageLength + Long.BYTES) / Sha256.BLOCK_BYTES * Sha256.BLOCK_BYTES
+        + Sha256.BLOCK_BYTES;
+
+    // Lay out the padded message, leaving zeros where the nonce goes.
+    byte[] message = new byte[paddedLength];
+    int pos = putInt(message, 0, num);
+    System.arraycopy(source, 0, message, pos, source.length);
+    pos += source.length;
+    System.arraycopy(target, 0, message, pos, target.length);
+    pos += target.length;
+    pos = putInt(message, pos, transaction.getAmount());
+    System.arraycopy(prev, 0, message, pos, prev.length);
+    message[messageLength] = (byte) 0x80;
+    long bits = (long) messageLength * Byte.SIZE;
+    putInt(message, paddedLength - Long.BYTES, (int) (bits >>> Integer.SIZE));
+    putInt(message, paddedLength - Integer.BYTES, (int) bits);
+
+    // Compress the message blocks that precede the nonce.
+    int skip = prefixLength / Sha256.BLOCK_BYTES * Sha256.BLOCK_BYTES;
+    Sha256 sha = new Sha256();
+    for (int offset = 0; offset < skip; offset += Sha256.BLOCK_BYTES) {
+      sha.compress(message, offset);
+    } // for
+    this.midstate = sha.state.clone();
+
+    this.tail = new byte[paddedLength - skip];
+    System.arraycopy(message, skip, this.tail, 0, this.tail.length);
+    this.nonceOffset = prefixLength - skip;
+    this.words = new int[this.tail.length / Integer.BYTES];
+    for (int i = 0; i < this.words.length; i++) {
+      this.words[i] = getInt(this.tail, i * Integer.BYTES);
+    } // for
+
+    // Run the rounds of the first remaining block that don't depend on the nonce.
+    this.sched = new int[ROUNDS];
+    this.chain = new int[this.midstate.length];
+    this.regs = this.midstate.clone();
+    this.firstRound = this.nonceOffset / Integer.BYTES;
+    System.arraycopy(this.words, 0, this.sched, 0, this.firstRound);
+    rounds(this.regs, this.sched, 0, this.firstRound);
+    this.preRounds = this.regs.clone();
+
+    this.kernel = kernelInput;
+    if (!kernelInput) {
+      this.md = function.newDigest();
+      this.md.update(message, 0, prefixLength);
+      try {
+        this.md.clone();
+      } catch (CloneNotSupportedException e) {
+        this.md.reset();
+        this.prefix = Arrays.copyOf(message, prefixLength);
+      } // try/catch
+      this.nonceBytes = new byte[Long.BYTES];
+    } // if
+    this.out = new byte[function.length()];
+  } // BlockHasher(int, Transaction, Hash, HashFunction, boolean)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Compute the hash of the block with the given nonce. The result is identical to that of
+   * Block.computeHash.
+   *
+   * @param nonce The nonce of the block.
+   *
+   * @return the hash, in an array that is overwritten by the next call.
+   */
+  byte[] hash(long nonce) {
+    compute(nonce, 0);
+    return this.out;
+  } // hash(long)
+
+  /**
+   * Determine if the block with the given nonce has a valid hash. Candidates that lack the
+   * validator's required leading zero bits are rejected as soon as we know the first word of
+   * their hash.
+   *
+   * @param nonce The nonce of the block.
+   * @param check The validator used to check the block.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  boolean isValid(long nonce, HashValidator check) {
+    return compute(nonce, check.leadingZeroBits()) && check.isValid(this.out, 0, this.out.length);
+  } // isValid(long, HashValidator)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Compute the hash of the block with the given nonce into out, unless the first word of the
+   * hash shows that it lacks the required leading zero bits.
+   *
+   * @param nonce The nonce of the block.
+   * @param zeroBits The number of leading zero bits required.
+   *
+   * @return true if out now holds the hash and false if the candidate was rejected early.
+   */
+  boolean compute(long nonce, int zeroBits) {
+    if (!this.kernel) {
+      return computeWithDigest(nonce, zeroBits);
+    } // if
+
+    // Patch the nonce into the message words.
+    putInt(this.tail, this.nonceOffset, (int) (nonce >>> Integer.SIZE));
+    putInt(this.tail, this.nonceOffset + Integer.BYTES, (int) nonce);
+    int lastWord = (this.nonceOffset + Long.BYTES - 1) / Integer.BYTES;
+    for (int i = this.firstRound; i <= lastWord; i++) {
+      this.words[i] = getInt(this.tail, i * Integer.BYTES);
+    } // for
+
+    // The first remaining block starts from the precomputed rounds.
+    System.arraycopy(this.midstate, 0, this.chain, 0, this.chain.length);
+    System.arraycopy(this.preRounds, 0, this.regs, 0, this.regs.length);
+    schedule(this.words, 0);
+    rounds(this.regs, this.sched, this.firstRound, ROUNDS);
+
+    // Any later block (there is at most one) starts from scratch.
+    for (int block = 1; block < this.words.length / BLOCK_WORDS; block++) {
+      for (int i = 0; i < this.chain.length; i++) {
+        this.chain[i] += this.regs[i];
+      } // for
+      System.arraycopy(this.chain, 0, this.regs, 0, this.regs.length);
+      schedule(this.words, block * BLOCK_WORDS);
+      rounds(this.regs, this.sched, 0, ROUNDS);
+    } // for
+
+    // Check the first word before bothering with the rest.
+    int first = this.chain[0] + this.regs[0];
+    if (zeroBits > 0 && Integer.numberOfLeadingZeros(first) < Math.min(zeroBits, Integer.SIZE)) {
+      return false;
+    } // if
+    putInt(this.out, 0, first);
+    for (int i = 1; i < this.chain.length; i++) {
+      putInt(this.out, i * Integer.BYTES, this.chain[i] + this.regs[i]);
+    } // for
+    return true;
+  } // compute(long, int)
+
+  /**
+   * Compute the hash of the block with the given nonce into out using the platform digest.
+   *
+   * @param nonce The nonce of the block.
+   * @param zeroBits The number of leading zero bits required.
+   *
+   * @return true if the hash has enough leading zero bits and false otherwise.
+   */
+  boolean computeWithDigest(long nonce, int zeroBits) {
+    putInt(this.nonceBytes, 0, (int) (nonce >>> Integer.SIZE));
+    putInt(this.nonceBytes, Integer.BYTES, (int) nonce);
+    MessageDigest digest;
+    try {
+      if (this.prefix == null) {
+        digest = (MessageDigest) this.md.clone();
+      } else {
+        digest = this.md;
+        digest.update(this.prefix);
+      } // if/else
+      digest.update(this.nonceBytes);
+      digest.digest(this.out, 0, this.out.length);
+    } catch (CloneNotSupportedException | DigestException e) {
+      throw new IllegalStateException("Cannot finish digest", e);
+    } // try/catch
+    return zeroBits <= 0
+        || Integer.numberOfLeadingZeros(getInt(this.out, 0)) >= Math.min(zeroBits, Integer.SIZE);
+  } // computeWithDigest(long, int)
+
+  /**
+   * Determine whether hashers use the specialized compression function by default. The choice
+   * is made the first time anyone asks, not when the class is loaded.
+   *
+   * @return true if hashers use the specialized compression function by default.
+   */
+  static boolean useKernel() {
+    return DefaultEngine.KERNEL;
+  } // useKernel()
+
+  /**
+   * Decide whether hashers should use the specialized compression function, either because the
+   * system property says so or because it beats the platform digest on this machine.
+   *
+   * @return true if hashers should use the specialized compression function.
+   */
+  static boolean chooseKernel() {
+    String choice = System.getProperty("blockchains.hasher", "");
+    if (choice.equals("kernel") || choice.equals("digest")) {
+      return choice.equals("kernel");
+    } // if
+    Transaction t = new Transaction("calibration", "calibration", 0);
+    Hash prev = new Hash(new byte[Sha256.DIGEST_BYTES]);
+    BlockHasher kernelHasher = new BlockHasher(0, t, prev, true);
+    BlockHasher digestHasher = new BlockHasher(0, t, prev, false);
+    long kernelTime = Long.MAX_VALUE;
+    long digestTime = Long.MAX_VALUE;
+    for (int round = 0; round < 3; round++) {
+      kernelTime = Math.min(kernelTime, time(kernelHasher));
+      digestTime = Math.min(digestTime, time(digestHasher));
+    } // for
+    return kernelTime < digestTime;
+  } // chooseKernel()
+
+  /**
+   * Time how long a hasher takes to check a batch of candidates.
+   *
+   * @param hasher The hasher to time.
+   *
+   * @return the elapsed time, in nanoseconds.
+   */
+  static long time(BlockHasher hasher) {
+    long start = System.nanoTime();
+    for (int i = 0; i < CALIBRATION_ATTEMPTS; i++) {
+      hasher.compute(i, Integer.SIZE);
+    } // for
+    return System.nanoTime() - start;
+  } // time(BlockHasher)
+
+  /**
+   * Fill in the message schedule for one message block.
+   *
+   * @param block The message words.
+   * @param offset The index of the first word of the block.
+   */
+  void schedule(int[] block, int offset) {
+    int[] w = this.sched;
+    System.arraycopy(block, offset, w, 0, BLOCK_WORDS);
+    for (int t = BLOCK_WORDS; t < ROUNDS; t++) {
+      int w15 = w[t - 15];
+      int w2 = w[t - 2];
+      w[t] = w[t - 16] + w[t - 7]
+          + (Integer.rotateRight(w15, 7) ^ Integer.rotateRight(w15, 18) ^ (w15 >>> 3))
+          + (Integer.rotateRight(w2, 17) ^ Integer.rotateRight(w2, 19) ^ (w2 >>> 10));
+    } // for
+  } // schedule(int[], int)
+
+  /**
+   * Run some rounds of the compression function.
+   *
+   * @param vars The working variables, a through h, updated in place.
+   * @param w The message schedule.
+   * @param from The first round to run.
+   * @param to The round at which to stop.
+   */
+  static void rounds(int[] vars, int[] w, int from, int to) {
+    int a = vars[0];
+    int b = vars[1];
+    int c = vars[2];
+    int d = vars[3];
+    int e = vars[4];
+    int f = vars[5];
+    int g = vars[6];
+    int h = vars[7];
+    for (int t = from; t < to; t++) {
+      int t1 = h + (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11)
+          ^ Integer.rotateRight(e, 25)) + ((e & f) ^ (~e & g)) + Sha256.K[t] + w[t];
+      int t2 = (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13)
+          ^ Integer.rotateRight(a, 22)) + ((a & b) ^ (a & c) ^ (b & c));
+      h = g;
+      g = f;
+      f = e;
+      e = d + t1;
+      d = c;
+      c = b;
+      b = a;
+      a = t1 + t2;
+    } // for
+    vars[0] = a;
+    vars[1] = b;
+    vars[2] = c;
+    vars[3] = d;
+    vars[4] = e;
+    vars[5] = f;
+    vars[6] = g;
+    vars[7] = h;
+  } // rounds(int[], int[], int, int)
+
+  /**
+   * Store an integer as four big-endian bytes.
+   *
+   * @param bytes Where to store the integer.
+   * @param offset The index of the first byte.
+   * @param i The integer to store.
+   *
+   * @return the index just past the stored bytes.
+   */
+  static int putInt(byte[] bytes, int offset, int i) {
+    bytes[offset] = (byte) (i >>> 24);
+    bytes[offset + 1] = (byte) (i >>> 16);
+    bytes[offset + 2] = (byte) (i >>> 8);
+    bytes[offset + 3] = (byte) i;
+    return offset + Integer.BYTES;
+  } // putInt(byte[], int, int)
+
+  /**
+   * Read four big-endian bytes as an integer.
+   *
+   * @param bytes Where to find the bytes.
+   * @param offset The index of the first byte.
+   *
+   * @return the integer.
+   */
+  static int getInt(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+        | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+  } // getInt(byte[], int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * Holds the choice of default engine, which the JVM makes (timing both engines, unless the
+   * system property decides) when a hasher first needs it.
+   */
+  static final class DefaultEngine {
+    /**
+     * Whether hashers use the specialized compression function by default.
+     */
+    static final boolean KERNEL = chooseKernel();
+  } // class DefaultEngine
+} // class BlockHasher
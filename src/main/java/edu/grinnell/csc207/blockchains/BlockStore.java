@@ -0,0 +1,98 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Places to keep the blocks of a chain, in order, indexed by height.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public interface BlockStore extends Closeable {
+  /**
+   * Get the number of blocks in the store.
+   *
+   * @return the number of blocks.
+   */
+  int size();
+
+  /**
+   * Get the block at a given height.
+   *
+   * @param height
+   *   The height of the block, between 0 (inclusive) and size() (exclusive).
+   *
+   * @return the block.
+   *
+   * @throws IndexOutOfBoundsException if height is out of range.
+   */
+  Block get(int height);
+
+  /**
+   * Add a block after the current last block.
+   *
+   * @param block
+   *   The block to add.
+   */
+  void add(Block block);
+
+  /**
+   * Remove the last block.
+   *
+   * @return the block removed.
+   *
+   * @throws java.util.NoSuchElementException if the store is empty.
+   */
+  Block removeLast();
+
+  /**
+   * Get a read-only view of the blocks as they are now. Later changes to the store do not show up
+   * in the view, and the view may be read from any thread while the store is being changed.
+   *
+   * @return the view.
+   */
+  BlockStore view();
+
+  /**
+   * Get a read-only view of the blocks as they are now, like view, but one that stays readable
+   * only until release says it will not be read again. Stores that reuse the space of removed
+   * blocks can reuse it sooner for leased views than for views from view. Blocks read through a
+   * leased view never share storage with the store, so they stay valid after it is released.
+   *
+   * @return the view.
+   */
+  default BlockStore lease() {
+    return this.view();
+  } // lease()
+
+  /**
+   * Promise that no view from lease of more than size blocks will be read again, so that the
+   * store may reuse the space of the blocks above size. Views from view are not affected.
+   * Stores that never reuse space ignore this.
+   *
+   * @param size The number of blocks that leased views may still read.
+   */
+  default void release(int size) {
+  } // release(int)
+
+  /**
+   * Get the last block.
+   *
+   * @return the last block.
+   *
+   * @throws IndexOutOfBoundsException if the store is empty.
+   */
+  default Block getLast() {
+    return this.get(this.size() - 1);
+  } // getLast()
+
+  /**
+   * Release whatever the store holds open, such as files. Stores kept in memory hold nothing.
+   *
+   * @throws IOException if the store cannot be closed.
+   */
+  @Override
+  default void close() throws IOException {
+  } // close()
+} // interface BlockStore
@@ -0,0 +1,320 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A miner that remembers the nonces it has found, so that mining the same block again (the same
+ * number, transaction, previous hash, and hash function) takes no work. It hands everything else
+ * to another miner. The cache holds a limited number of nonces and forgets the least recently used
+ * first. It can be saved to and loaded from a file, so that replaying a known chain after a
+ * restart does no proof-of-work.
+ *
+ * Cached nonces are checked against the validator before we return them, so a nonce found for an
+ * easier validator is mined again rather than returned.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class CachingMiner implements Miner {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default number of nonces to remember.
+   */
+  static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * Marks our cache files.
+   */
+  static final int MAGIC = 0x4e4f4e43;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The miner that does the work on a miss.
+   */
+  Miner miner;
+
+  /**
+   * The most nonces we remember.
+   */
+  int capacity;
+
+  /**
+   * The nonces we remember, from least to most recently used.
+   */
+  LinkedHashMap<Key, Long> nonces;
+
+  /**
+   * The number of requests we answered from the cache.
+   */
+  long hits;
+
+  /**
+   * The number of requests we passed on to the miner.
+   */
+  long misses;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new miner that remembers up to the given number of nonces.
+   *
+   * @param minerInput The miner that does the work on a miss.
+   * @param capacityInput The most nonces to remember.
+   *
+   * @throws IllegalArgumentException if capacityInput is not positive.
+   */
+  public CachingMiner(Miner minerInput, int capacityInput) {
+    if (capacityInput < 1) {
+      throw new IllegalArgumentException("The cache must hold at least one nonce.");
+    } // if
+    this.miner = minerInput;
+    this.capacity = capacityInput;
+    this.nonces = new LinkedHashMap<Key, Long>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+        return this.size() > CachingMiner.this.capacity;
+      } // removeEldestEntry(Map.Entry<Key, Long>)
+    };
+  } // CachingMiner(Miner, int)
+
+  /**
+   * Create a new miner that remembers up to DEFAULT_CAPACITY nonces.
+   *
+   * @param minerInput The miner that does the work on a miss.
+   */
+  public CachingMiner(Miner minerInput) {
+    this(minerInput, DEFAULT_CAPACITY);
+  } // CachingMiner(Miner)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Mine a block with the given contents, using a remembered nonce if we have a valid one.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param check The validator used to check the block.
+   * @param function The hash function used to hash the block.
+   * @param progress Where to report attempts and check for requests to stop.
+   *
+   * @return a block whose hash is valid, or null if the search was stopped.
+   */
+  @Override
+  public Block mine(int num, Transaction transaction, Hash prevHash, HashValidator check,
+      HashFunction function, MiningProgress progress) {
+    Key key = new Key(num, transaction, prevHash, function);
+    Long nonce;
+    synchronized (this) {
+      nonce = this.nonces.get(key);
+    } // synchronized
+    if (nonce != null) {
+      Block block = new Block(num, transaction, prevHash, nonce, function);
+      if (check.isValid(block.getHash())) {
+        synchronized (this) {
+          ++this.hits;
+        } // synchronized
+        progress.addAttempts(1);
+        return block;
+      } // if
+    } // if
+    synchronized (this) {
+      ++this.misses;
+    } // synchronized
+    Block block = this.miner.mine(num, transaction, prevHash, check, function, progress);
+    if (block != null) {
+      synchronized (this) {
+        this.nonces.put(key, block.getNonce());
+      } // synchronized
+    } // if
+    return block;
+  } // mine(int, Transaction, Hash, HashValidator, HashFunction, MiningProgress)
+
+  /**
+   * Get the number of requests answered from the cache.
+   *
+   * @return the number of hits.
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  } // getHits()
+
+  /**
+   * Get the number of requests that needed mining.
+   *
+   * @return the number of misses.
+   */
+  public synchronized long getMisses() {
+    return this.misses;
+  } // getMisses()
+
+  /**
+   * Get the fraction of requests answered from the cache.
+   *
+   * @return the hit rate, between 0 and 1 (0 if there have been no requests).
+   */
+  public synchronized double getHitRate() {
+    long requests = this.hits + this.misses;
+    return (requests == 0) ? 0 : (double) this.hits / requests;
+  } // getHitRate()
+
+  /**
+   * Get the number of nonces remembered.
+   *
+   * @return the number of nonces.
+   */
+  public synchronized int size() {
+    return this.nonces.size();
+  } // size()
+
+  /**
+   * Write the remembered nonces to a file, replacing its contents. We write a temporary file
+   * and then move it into place, so a crash mid-write leaves the old file intact.
+   *
+   * @param file The file.
+   *
+   * @throws IOException if the file cannot be written.
+   */
+  public synchronized void save(Path file) throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(this.nonces.size());
+      for (Map.Entry<Key, Long> entry : this.nonces.entrySet()) {
+        Key key = entry.getKey();
+        out.writeUTF(key.function.name());
+        out.writeInt(key.num);
+        out.writeUTF(key.transaction.getSource());
+        out.writeUTF(key.transaction.getTarget());
+        out.writeInt(key.transaction.getAmount());
+        out.writeInt(key.prevHash.length());
+        key.prevHash.writeTo(out);
+        out.writeLong(entry.getValue());
+      } // for
+    } // try
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+  } // save(Path)
+
+  /**
+   * Remember the nonces in a file written by save, in addition to those we already remember.
+   * A missing file is treated as empty.
+   *
+   * @param file The file.
+   *
+   * @throws IOException if the file cannot be read or is not a cache file.
+   */
+  public synchronized void load(Path file) throws IOException {
+    if (!Files.exists(file)) {
+      return;
+    } // if
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(file + " is not a nonce cache.");
+      } // if
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        HashFunction function;
+        try {
+          function = HashFunction.valueOf(in.readUTF());
+        } catch (IllegalArgumentException e) {
+          throw new IOException("Unknown hash function in " + file + ".", e);
+        } // try/catch
+        int num = in.readInt();
+        Transaction transaction = new Transaction(in.readUTF(), in.readUTF(), in.readInt());
+        byte[] prev = new byte[in.readInt()];
+        in.readFully(prev);
+        this.nonces.put(new Key(num, transaction, Hash.of(prev), function), in.readLong());
+      } // for
+    } // try
+  } // load(Path)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * The contents of a block that determine its hash, apart from the nonce.
+   */
+  static class Key {
+    /**
+     * The number of the block.
+     */
+    int num;
+
+    /**
+     * The transaction for the block.
+     */
+    Transaction transaction;
+
+    /**
+     * The hash of the previous block.
+     */
+    Hash prevHash;
+
+    /**
+     * The hash function.
+     */
+    HashFunction function;
+
+    /**
+     * Create a key.
+     *
+     * @param numInput The number of the block.
+     * @param transactionInput The transaction for the block.
+     * @param prevHashInput The hash of the previous block.
+     * @param functionInput The hash function.
+     */
+    Key(int numInput, Transaction transactionInput, Hash prevHashInput,
+        HashFunction functionInput) {
+      this.num = numInput;
+      this.transaction = transactionInput;
+      this.prevHash = prevHashInput;
+      this.function = functionInput;
+    } // Key(int, Transaction, Hash, HashFunction)
+
+    /**
+     * Determine if this is equal to another object.
+     *
+     * @param other The object to compare to.
+     *
+     * @return true if other is a key for the same contents and false otherwise.
+     */
+    @Override
+    public boolean equals(Object other) {
+      return (other instanceof Key o) && this.num == o.num && this.function == o.function
+          && this.transaction.equals(o.transaction) && this.prevHash.equals(o.prevHash);
+    } // equals(Object)
+
+    /**
+     * Get the hash code of this object.
+     *
+     * @return the hash code.
+     */
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.num, this.transaction, this.prevHash, this.function);
+    } // hashCode()
+  } // class Key
+} // class CachingMiner
@@ -0,0 +1,38 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * Things that want to hear about changes to a blockchain.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public interface ChainListener {
+  /**
+   * Note that a block has been added to the end of a chain. Called for the initial block, too.
+   *
+   * @param chain The chain.
+   * @param block The new last block.
+   */
+  void blockAppended(BlockChain chain, Block block);
+
+  /**
+   * Note that the last block has been removed from a chain.
+   *
+   * @param chain The chain.
+   * @param block The block that was removed.
+   */
+  void blockRemoved(BlockChain chain, Block block);
+
+  /**
+   * Note that a chain has been rebuilt from blocks it had stored, rather than appended to one
+   * block at a time. By default, hears about each stored block as though it had just been
+   * appended.
+   *
+   * @param chain The chain.
+   */
+  default void chainLoaded(BlockChain chain) {
+    for (int height = 0; height < chain.getSize(); height++) {
+      this.blockAppended(chain, chain.getBlock(height));
+    } // for
+  } // chainLoaded(BlockChain)
+} // interface ChainListener
@@ -0,0 +1,168 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A frozen view of a blockchain: its blocks and the balances after them, as of one moment.
+ * Snapshots never change, whatever happens to the chain later, and may be shared freely between
+ * threads. Taking one copies nothing; the snapshot shares its blocks and balances with the chain
+ * (see BlockChain.snapshot).
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public final class ChainSnapshot implements Iterable<Transaction> {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * A read-only view of the blocks.
+   */
+  final BlockStore blocks;
+
+  /**
+   * The balances after those blocks.
+   */
+  final Ledger ledger;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a snapshot.
+   *
+   * @param blocksInput A read-only view of the blocks.
+   * @param ledgerInput The balances after those blocks.
+   */
+  ChainSnapshot(BlockStore blocksInput, Ledger ledgerInput) {
+    this.blocks = blocksInput;
+    this.ledger = ledgerInput;
+  } // ChainSnapshot(BlockStore, Ledger)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of blocks in the chain.
+   *
+   * @return the number of blocks, including the initial block.
+   */
+  public int getSize() {
+    return this.blocks.size();
+  } // getSize()
+
+  /**
+   * Get the block at a given height.
+   *
+   * @param height The height of the block, between 0 (the initial block) and getSize() - 1.
+   *
+   * @return the block.
+   *
+   * @throws IndexOutOfBoundsException if there is no block at that height.
+   */
+  public Block getBlock(int height) {
+    return this.blocks.get(height);
+  } // getBlock(int)
+
+  /**
+   * Get the hash of the last block.
+   *
+   * @return the hash of the last block.
+   */
+  public Hash getHash() {
+    return this.blocks.getLast().getHash();
+  } // getHash()
+
+  /**
+   * Find one user's balance.
+   *
+   * @param user The user whose balance we want to find.
+   *
+   * @return that user's balance (or 0, if the user is not in the system).
+   */
+  public int balance(String user) {
+    return this.ledger.balance(user);
+  } // balance(String)
+
+  /**
+   * Determine if a user is in the system.
+   *
+   * @param user The user to check.
+   *
+   * @return true if the user is in the system and false otherwise.
+   */
+  public boolean isUserInSystem(String user) {
+    return this.ledger.contains(user);
+  } // isUserInSystem(String)
+
+  /**
+   * Get the number of users in the system.
+   *
+   * @return the number of users.
+   */
+  public int getUserCount() {
+    return this.ledger.size();
+  } // getUserCount()
+
+  /**
+   * Iterate the users in the system, in no particular order.
+   *
+   * @return an iterator of all the people in the system.
+   */
+  public Iterator<String> users() {
+    return this.ledger.users();
+  } // users()
+
+  /**
+   * Iterate the blocks, from the initial block on.
+   *
+   * @return an iterator for all the blocks.
+   */
+  public Iterator<Block> blocks() {
+    return new Iterator<Block>() {
+      int pos = 0;
+
+      @Override
+      public boolean hasNext() {
+        return (pos < blocks.size());
+      } // hasNext()
+
+      @Override
+      public Block next() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        return blocks.get(this.pos++);
+      } // next()
+    };
+  } // blocks()
+
+  /**
+   * Iterate the transactions, from the initial block on.
+   *
+   * @return an iterator for all the transactions.
+   */
+  @Override
+  public Iterator<Transaction> iterator() {
+    return new Iterator<Transaction>() {
+      int pos = 0;
+
+      @Override
+      public boolean hasNext() {
+        return (pos < blocks.size());
+      } // hasNext()
+
+      @Override
+      public Transaction next() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        return blocks.get(this.pos++).getTransaction();
+      } // next()
+    };
+  } // iterator()
+} // class ChainSnapshot
@@ -0,0 +1,322 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * What a chain knew about a verified prefix of its blocks: how many there were, the hash of the
+ * last one, every user's balance after them and how many of them mention each user, where
+ * their records are in the store's log (for stores that keep one), and the difficulty of the
+ * epochs they reach (for validators that retarget). A chain reopened from a
+ * checkpoint trusts that prefix instead of replaying it, and its store reads only the records
+ * after it, so it starts in time that depends on the number of users and the blocks since the
+ * checkpoint, plus eight bytes a block to read back the positions.
+ *
+ * A checkpoint file holds a magic number, a version, the height, the tip hash, the balances
+ * and counts, the positions, and the epoch interval and difficulties, using the varints and
+ * strings of BlockCodec.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+final class Checkpoint {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The first four bytes of a checkpoint file ("CHKP").
+   */
+  static final int MAGIC = 0x43484b50;
+
+  /**
+   * The version of the format.
+   */
+  static final int VERSION = 1;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of blocks in the prefix.
+   */
+  final int height;
+
+  /**
+   * The hash of the last block in the prefix.
+   */
+  final Hash tip;
+
+  /**
+   * The balances after the prefix.
+   */
+  final Ledger ledger;
+
+  /**
+   * How many blocks of the prefix (after the initial one) mention each user in the ledger, as
+   * source or target.
+   */
+  final Map<String, Integer> mentions;
+
+  /**
+   * The positions of the records of the prefix's blocks in the store's log (see
+   * SegmentedBlockStore), or no positions if the store keeps no log.
+   */
+  final long[] positions;
+
+  /**
+   * The number of blocks in an epoch, for a chain whose validator retargets (see
+   * RetargetingValidator), or 0.
+   */
+  final int interval;
+
+  /**
+   * The number of leading zero bits each epoch the prefix reaches requires, for a chain whose
+   * validator retargets, or no epochs.
+   */
+  final int[] epochs;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a checkpoint with no epochs.
+   *
+   * @param heightInput The number of blocks in the prefix.
+   * @param tipInput The hash of the last block in the prefix.
+   * @param ledgerInput The balances after the prefix.
+   * @param mentionsInput How many blocks of the prefix mention each user.
+   * @param positionsInput The positions of the prefix's records, or an empty array.
+   */
+  Checkpoint(int heightInput, Hash tipInput, Ledger ledgerInput,
+      Map<String, Integer> mentionsInput, long[] positionsInput) {
+    this(heightInput, tipInput, ledgerInput, mentionsInput, positionsInput, 0, new int[0]);
+  } // Checkpoint(int, Hash, Ledger, Map<String, Integer>, long[])
+
+  /**
+   * Create a checkpoint.
+   *
+   * @param heightInput The number of blocks in the prefix.
+   * @param tipInput The hash of the last block in the prefix.
+   * @param ledgerInput The balances after the prefix.
+   * @param mentionsInput How many blocks of the prefix mention each user.
+   * @param positionsInput The positions of the prefix's records, or an empty array.
+   * @param intervalInput The number of blocks in an epoch, or 0.
+   * @param epochsInput The difficulty of each epoch the prefix reaches, or an empty array.
+   */
+  Checkpoint(int heightInput, Hash tipInput, Ledger ledgerInput,
+      Map<String, Integer> mentionsInput, long[] positionsInput, int intervalInput,
+      int[] epochsInput) {
+    this.height = heightInput;
+    this.tip = tipInput;
+    this.ledger = ledgerInput;
+    this.mentions = mentionsInput;
+    this.positions = positionsInput;
+    this.interval = intervalInput;
+    this.epochs = epochsInput;
+  } // Checkpoint(int, Hash, Ledger, Map<String, Integer>, long[], int, int[])
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine if the checkpoint describes a prefix of the blocks in a store.
+   *
+   * @param blocks The store.
+   *
+   * @return true if the store has at least height blocks and the last block of the prefix has
+   *         the tip hash, and false otherwise.
+   */
+  boolean matches(BlockStore blocks) {
+    return this.height >= 1 && this.height <= blocks.size()
+        && blocks.get(this.height - 1).getHash().equals(this.tip);
+  } // matches(BlockStore)
+
+  /**
+   * Write the checkpoint to a file, replacing it all at once so that a crash leaves either the
+   * old checkpoint or the new one.
+   *
+   * @param file The file.
+   *
+   * @throws IOException if the file cannot be written.
+   */
+  void write(Path file) throws IOException {
+    ArrayList<String> users = new ArrayList<String>(this.ledger.size());
+    ArrayList<byte[]> names = new ArrayList<byte[]>(this.ledger.size());
+    int length = 3 * Integer.BYTES + BlockCodec.varintLength(this.tip.length())
+        + this.tip.length() + 4 * Integer.BYTES + this.positions.length * Long.BYTES
+        + this.epochs.length * BlockCodec.MAX_VARINT;
+    Iterator<String> iter = this.ledger.users();
+    while (iter.hasNext()) {
+      String user = iter.next();
+      byte[] name = user.getBytes(StandardCharsets.UTF_8);
+      users.add(user);
+      names.add(name);
+      length += BlockCodec.varintLength(name.length) + name.length + 2 * BlockCodec.MAX_VARINT;
+    } // while
+
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putInt(this.height);
+    BlockCodec.putVarint(buffer, this.tip.length());
+    this.tip.writeTo(buffer);
+    buffer.putInt(names.size());
+    for (int i = 0; i < names.size(); i++) {
+      BlockCodec.putVarint(buffer, names.get(i).length);
+      buffer.put(names.get(i));
+      BlockCodec.putVarint(buffer, BlockCodec.zigzag(this.ledger.balance(users.get(i))));
+      BlockCodec.putVarint(buffer, this.mentions.getOrDefault(users.get(i), 0));
+    } // for
+    buffer.putInt(this.positions.length);
+    for (long position : this.positions) {
+      buffer.putLong(position);
+    } // for
+    buffer.putInt(this.interval);
+    buffer.putInt(this.epochs.length);
+    for (int bits : this.epochs) {
+      BlockCodec.putVarint(buffer, bits);
+    } // for
+
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.write(temp, Arrays.copyOf(buffer.array(), buffer.position()));
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  } // write(Path)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Make a checkpoint from balances kept in a map, with no counts or positions.
+   *
+   * @param height The number of blocks in the prefix.
+   * @param tip The hash of the last block in the prefix.
+   * @param balances The balances after the prefix.
+   *
+   * @return the checkpoint.
+   */
+  static Checkpoint of(int height, Hash tip, Map<String, Integer> balances) {
+    return of(height, tip, balances, new HashMap<String, Integer>(), new long[0]);
+  } // of(int, Hash, Map<String, Integer>)
+
+  /**
+   * Make a checkpoint from balances and counts kept in maps.
+   *
+   * @param height The number of blocks in the prefix.
+   * @param tip The hash of the last block in the prefix.
+   * @param balances The balances after the prefix.
+   * @param mentions How many blocks of the prefix mention each user.
+   * @param positions The positions of the prefix's records, or an empty array.
+   *
+   * @return the checkpoint.
+   */
+  static Checkpoint of(int height, Hash tip, Map<String, Integer> balances,
+      Map<String, Integer> mentions, long[] positions) {
+    return of(height, tip, balances, mentions, positions, 0, new int[0]);
+  } // of(int, Hash, Map<String, Integer>, Map<String, Integer>, long[])
+
+  /**
+   * Make a checkpoint from balances and counts kept in maps, with the epochs of a chain whose
+   * validator retargets.
+   *
+   * @param height The number of blocks in the prefix.
+   * @param tip The hash of the last block in the prefix.
+   * @param balances The balances after the prefix.
+   * @param mentions How many blocks of the prefix mention each user.
+   * @param positions The positions of the prefix's records, or an empty array.
+   * @param interval The number of blocks in an epoch, or 0.
+   * @param epochs The difficulty of each epoch the prefix reaches, or an empty array.
+   *
+   * @return the checkpoint.
+   */
+  static Checkpoint of(int height, Hash tip, Map<String, Integer> balances,
+      Map<String, Integer> mentions, long[] positions, int interval, int[] epochs) {
+    Ledger ledger = Ledger.EMPTY;
+    for (Map.Entry<String, Integer> entry : balances.entrySet()) {
+      ledger = ledger.with(entry.getKey(), entry.getValue());
+    } // for
+    return new Checkpoint(height, tip, ledger, new HashMap<String, Integer>(mentions),
+        positions, interval, epochs);
+  } // of(int, Hash, Map<String, Integer>, Map<String, Integer>, long[], int, int[])
+
+  /**
+   * Read a checkpoint from a file.
+   *
+   * @param file The file.
+   *
+   * @return the checkpoint.
+   *
+   * @throws IOException if the file cannot be read or is not a checkpoint.
+   */
+  static Checkpoint read(Path file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IOException(file + " is not a checkpoint we can read.");
+      } // if
+      int height = buffer.getInt();
+      byte[] tip = new byte[count(buffer, BlockCodec.getVarint(buffer), 1)];
+      buffer.get(tip);
+      int count = count(buffer, buffer.getInt(), 1);
+      Ledger ledger = Ledger.EMPTY;
+      HashMap<String, Integer> mentions = new HashMap<String, Integer>();
+      for (int i = 0; i < count; i++) {
+        String user = BlockCodec.getString(buffer);
+        ledger = ledger.with(user, BlockCodec.unzigzag(BlockCodec.getVarint(buffer)));
+        int mentioned = BlockCodec.getVarint(buffer);
+        if (mentioned > 0) {
+          mentions.put(user, mentioned);
+        } // if
+      } // for
+      long[] positions = new long[count(buffer, buffer.getInt(), Long.BYTES)];
+      for (int i = 0; i < positions.length; i++) {
+        positions[i] = buffer.getLong();
+      } // for
+      int interval = buffer.getInt();
+      int[] epochs = new int[count(buffer, buffer.getInt(), 1)];
+      for (int i = 0; i < epochs.length; i++) {
+        epochs[i] = BlockCodec.getVarint(buffer);
+      } // for
+      if (buffer.hasRemaining() || ledger.size() != count) {
+        throw new IOException(file + " is not a valid checkpoint.");
+      } // if
+      return new Checkpoint(height, Hash.of(tip), ledger, mentions, positions, interval,
+          epochs);
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException(file + " is not a valid checkpoint.", e);
+    } // try/catch
+  } // read(Path)
+
+  /**
+   * Check a count read from a checkpoint against the bytes left in it, before we make room for
+   * that many things, so that a damaged file cannot ask for a huge (or negative) array.
+   *
+   * @param buffer The rest of the checkpoint.
+   * @param count The count.
+   * @param bytes The fewest bytes each thing takes in the file.
+   *
+   * @return the count.
+   *
+   * @throws IllegalArgumentException if the count is negative or the rest is too short.
+   */
+  static int count(ByteBuffer buffer, int count, int bytes) {
+    if (count < 0 || count > buffer.remaining() / bytes) {
+      throw new IllegalArgumentException("A count of " + count + " does not fit.");
+    } // if
+    return count;
+  } // count(ByteBuffer, int, int)
+} // class Checkpoint
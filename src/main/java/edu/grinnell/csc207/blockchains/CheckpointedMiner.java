@@ -0,0 +1,233 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * A miner that can pick up where it left off. Rather than starting from a random nonce, it
+ * searches the nonce space in fixed-size ranges (0 to size - 1, then size to 2 * size - 1, and so
+ * on). After each range it records, in a checkpoint file, which block it is mining and how many
+ * ranges it has searched. If the JVM stops mid-search, the next request to mine the same block
+ * skips the ranges already searched. The checkpoint is removed once a nonce is found.
+ *
+ * The checkpoint does not record the validator, so resume only with the validator the search
+ * started with.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class CheckpointedMiner implements Miner {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How many nonces we check between progress reports.
+   */
+  static final int CHECK_INTERVAL = 1024;
+
+  /**
+   * The default number of nonces in a range.
+   */
+  static final long DEFAULT_RANGE_SIZE = 1L << 22;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The checkpoint file.
+   */
+  Path file;
+
+  /**
+   * The number of nonces in a range.
+   */
+  long rangeSize;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new miner that checkpoints to the given file after every range of the given size.
+   *
+   * @param fileInput The checkpoint file.
+   * @param rangeSizeInput The number of nonces in a range, a multiple of CHECK_INTERVAL.
+   *
+   * @throws IllegalArgumentException if rangeSizeInput is not a positive multiple of
+   *   CHECK_INTERVAL.
+   */
+  public CheckpointedMiner(Path fileInput, long rangeSizeInput) {
+    if (rangeSizeInput <= 0 || rangeSizeInput % CHECK_INTERVAL != 0) {
+      throw new IllegalArgumentException("Ranges must hold a positive multiple of "
+          + CHECK_INTERVAL + " nonces.");
+    } // if
+    this.file = fileInput;
+    this.rangeSize = rangeSizeInput;
+  } // CheckpointedMiner(Path, long)
+
+  /**
+   * Create a new miner that checkpoints to the given file.
+   *
+   * @param fileInput The checkpoint file.
+   */
+  public CheckpointedMiner(Path fileInput) {
+    this(fileInput, DEFAULT_RANGE_SIZE);
+  } // CheckpointedMiner(Path)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Mine a block with the given contents, resuming from the checkpoint if it is for the same
+   * block.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param check The validator used to check the block.
+   * @param function The hash function used to hash the block.
+   * @param progress Where to report attempts and check for requests to stop.
+   *
+   * @return a block whose hash is valid, or null if the search was stopped.
+   *
+   * @throws IllegalStateException if the checkpoint cannot be read or written.
+   */
+  @Override
+  public Block mine(int num, Transaction transaction, Hash prevHash, HashValidator check,
+      HashFunction function, MiningProgress progress) {
+    Properties block = describe(num, transaction, prevHash, function);
+    BlockHasher hasher = new BlockHasher(num, transaction, prevHash, function);
+    for (long range = resumeRange(num, transaction, prevHash, function); !progress.isStopped();
+        range++) {
+      long nonce = range * this.rangeSize;
+      long end = nonce + this.rangeSize;
+      while (nonce != end) {
+        for (int i = 0; i < CHECK_INTERVAL; i++) {
+          if (hasher.isValid(nonce, check)) {
+            progress.addAttempts(i + 1);
+            clear();
+            return new Block(num, transaction, prevHash, nonce, function);
+          } // if
+          nonce++;
+        } // for
+        progress.addAttempts(CHECK_INTERVAL);
+        if (progress.isStopped()) {
+          return null;
+        } // if
+      } // while
+      save(block, range + 1);
+    } // for
+    return null;
+  } // mine(int, Transaction, Hash, HashValidator, HashFunction, MiningProgress)
+
+  /**
+   * Determine which range a search for the given block would start with.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param function The hash function used to hash the block.
+   *
+   * @return the number of ranges already searched for this block, or 0 if the checkpoint is
+   *   missing or for some other block.
+   *
+   * @throws IllegalStateException if the checkpoint cannot be read.
+   */
+  public long resumeRange(int num, Transaction transaction, Hash prevHash,
+      HashFunction function) {
+    if (!Files.exists(this.file)) {
+      return 0;
+    } // if
+    Properties saved = new Properties();
+    try (InputStream in = Files.newInputStream(this.file)) {
+      saved.load(in);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not read the checkpoint " + this.file + ".", e);
+    } // try/catch
+    Properties block = describe(num, transaction, prevHash, function);
+    for (String key : block.stringPropertyNames()) {
+      if (!block.getProperty(key).equals(saved.getProperty(key))) {
+        return 0;
+      } // if
+    } // for
+    try {
+      return Long.parseLong(saved.getProperty("ranges", "0"));
+    } catch (NumberFormatException e) {
+      return 0;
+    } // try/catch
+  } // resumeRange(int, Transaction, Hash, HashFunction)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Describe a block as it appears in a checkpoint.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param function The hash function used to hash the block.
+   *
+   * @return the properties that identify the block.
+   */
+  Properties describe(int num, Transaction transaction, Hash prevHash, HashFunction function) {
+    Properties block = new Properties();
+    block.setProperty("num", Integer.toString(num));
+    block.setProperty("source", transaction.getSource());
+    block.setProperty("target", transaction.getTarget());
+    block.setProperty("amount", Integer.toString(transaction.getAmount()));
+    block.setProperty("prevHash", prevHash.toString());
+    block.setProperty("function", function.name());
+    block.setProperty("rangeSize", Long.toString(this.rangeSize));
+    return block;
+  } // describe(int, Transaction, Hash, HashFunction)
+
+  /**
+   * Record that we have searched the given number of ranges. We write a temporary file and then
+   * move it over the checkpoint, so a crash mid-write leaves the old checkpoint intact.
+   *
+   * @param block The properties that identify the block.
+   * @param ranges The number of ranges searched.
+   *
+   * @throws IllegalStateException if the checkpoint cannot be written.
+   */
+  void save(Properties block, long ranges) {
+    block.setProperty("ranges", Long.toString(ranges));
+    Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+    try {
+      try (OutputStream out = Files.newOutputStream(temp)) {
+        block.store(out, "Mining checkpoint");
+      } // try
+      try {
+        Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING);
+      } // try/catch
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not write the checkpoint " + this.file + ".", e);
+    } // try/catch
+  } // save(Properties, long)
+
+  /**
+   * Remove the checkpoint.
+   *
+   * @throws IllegalStateException if the checkpoint cannot be removed.
+   */
+  void clear() {
+    try {
+      Files.deleteIfExists(this.file);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not remove the checkpoint " + this.file + ".", e);
+    } // try/catch
+  } // clear()
+} // class CheckpointedMiner
@@ -1,21 +1,47 @@
 package edu.grinnell.csc207.blockchains;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 import java.util.Arrays;
 
 /**
  * Encapsulated hashes.
  *
+ * Equality and hash codes are computed a 64-bit word at a time, so hashes make good keys for
+ * hash maps. Hashes of the common 32-byte size made with Hash.of are stored as four words
+ * rather than an array; they behave exactly like other hashes of the same bytes.
+ *
+ * Hashes can write themselves into digests, buffers, and streams without copying, and
+ * Hash.view makes a read-only hash over part of an existing buffer (say, a mapped file)
+ * without copying it onto the heap.
+ *
  * @author Khanh Do
  * @author Nicole Gorrell
  * @author Samuel A. Rebelsky
  */
 public class Hash {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The hex digits, by value.
+   */
+  static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  /**
+   * The value of each hex digit, by character, or -1 for characters that aren't hex digits.
+   */
+  static final byte[] HEX_VALUES = hexValues();
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
   /**
-   * The hash.
+   * The hash, or null if a subclass stores it some other way.
    */
   byte[] copy;
 
@@ -35,6 +61,94 @@ public class Hash {
     this.copy = Arrays.copyOf(data, data.length);
   } // Hash(byte[])
 
+  /**
+   * Create a new encapsulated hash that shares, rather than copies, its data.
+   *
+   * @param data The data for the hash.
+   * @param share Ignored; distinguishes this constructor from the copying one.
+   */
+  private Hash(byte[] data, boolean share) {
+    this.copy = data;
+  } // Hash(byte[], boolean)
+
+  /**
+   * Create a hash whose subclass stores the bytes itself.
+   */
+  Hash() {
+    this.copy = null;
+  } // Hash()
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Create a hash of the given bytes, in the most compact form for its size.
+   *
+   * @param data The data to copy into the hash.
+   *
+   * @return the hash.
+   */
+  public static Hash of(byte[] data) {
+    if (data == null) {
+      throw new IllegalArgumentException("Data cannot be null.");
+    } // if
+    if (data.length == Hash32.BYTES) {
+      return new Hash32(data, 0);
+    } // if
+    return new Hash(data);
+  } // of(byte[])
+
+  /**
+   * Create a hash from its hex string, as produced by toString. Either case is accepted.
+   *
+   * @param hex The hex string.
+   *
+   * @return the hash.
+   *
+   * @throws IllegalArgumentException if hex has an odd length or contains something other than
+   *   hex digits.
+   */
+  public static Hash fromHex(String hex) {
+    if (hex.length() % 2 != 0) {
+      throw new IllegalArgumentException("Hex strings have an even number of digits.");
+    } // if
+    byte[] data = new byte[hex.length() / 2];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) ((hexValue(hex, 2 * i) << 4) | hexValue(hex, 2 * i + 1));
+    } // for
+    return of(data);
+  } // fromHex(String)
+
+  /**
+   * Create a read-only hash over part of a buffer, without copying. Later changes to those bytes
+   * of the buffer show up in the hash, so only view buffers whose contents stay put. The
+   * buffer's position, limit, and byte order are not used or changed.
+   *
+   * @param buffer The buffer that holds the hash.
+   * @param offset The index of the first byte of the hash.
+   * @param length The number of bytes in the hash.
+   *
+   * @return a hash backed by the buffer.
+   *
+   * @throws IndexOutOfBoundsException if the bytes are not all within the buffer.
+   */
+  public static Hash view(ByteBuffer buffer, int offset, int length) {
+    return new HashView(buffer, offset, length);
+  } // view(ByteBuffer, int, int)
+
+  /**
+   * Create a hash that shares the given array, so that later changes to the array show up in the
+   * hash. Validators that only understand Hash objects get raw candidates this way.
+   *
+   * @param data The data for the hash.
+   *
+   * @return a hash backed by data.
+   */
+  static Hash wrap(byte[] data) {
+    return new Hash(data, true);
+  } // wrap(byte[])
+
   // +---------+-----------------------------------------------------
   // | Methods |
   // +---------+
@@ -69,18 +183,107 @@ public class Hash {
     return newCopy;
   } // getBytes()
 
+  /**
+   * Feed the bytes of the hash to a digest, without copying them.
+   *
+   * @param md The digest.
+   */
+  public void writeTo(MessageDigest md) {
+    md.update(this.copy);
+  } // writeTo(MessageDigest)
+
+  /**
+   * Put the bytes of the hash in a buffer at its current position, advancing the position.
+   *
+   * @param buffer The buffer.
+   *
+   * @throws java.nio.BufferOverflowException if the buffer does not have room.
+   */
+  public void writeTo(ByteBuffer buffer) {
+    buffer.put(this.copy);
+  } // writeTo(ByteBuffer)
+
+  /**
+   * Write the bytes of the hash to a stream.
+   *
+   * @param out The stream.
+   *
+   * @throws IOException if the stream cannot be written.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(this.copy);
+  } // writeTo(OutputStream)
+
+  /**
+   * Determine if this hash holds exactly the given bytes, without wrapping them in a Hash.
+   *
+   * @param bytes The bytes to compare to.
+   *
+   * @return true if the bytes are the same and false otherwise.
+   */
+  boolean matches(byte[] bytes) {
+    return Arrays.equals(this.copy, bytes);
+  } // matches(byte[])
+
+  /**
+   * Get the ith big-endian 64-bit word of the hash. A final partial word is padded with zeros.
+   *
+   * @param i The index of the word, between 0 (inclusive) and words() (exclusive).
+   *
+   * @return the word.
+   */
+  long word(int i) {
+    long word = 0;
+    int start = i * Long.BYTES;
+    for (int j = 0; j < Long.BYTES; j++) {
+      word <<= Byte.SIZE;
+      if (start + j < this.copy.length) {
+        word |= this.copy[start + j] & 0xff;
+      } // if
+    } // for
+    return word;
+  } // word(int)
+
+  /**
+   * Determine how many 64-bit words, counting a final partial word, the hash takes.
+   *
+   * @return the number of words.
+   */
+  int words() {
+    return (this.length() + Long.BYTES - 1) / Long.BYTES;
+  } // words()
+
+  /**
+   * Count the zero bits at the start of the hash.
+   *
+   * @return the number of leading zero bits.
+   */
+  int leadingZeros() {
+    int zeros = 0;
+    for (int i = 0; i < this.words(); i++) {
+      long word = this.word(i);
+      if (word != 0) {
+        return zeros + Long.numberOfLeadingZeros(word);
+      } // if
+      zeros += Long.SIZE;
+    } // for
+    return this.length() * Byte.SIZE;
+  } // leadingZeros()
+
   /**
    * Convert to a hex string.
    *
    * @return the hash as a hex string.
    */
   public String toString() {
-    StringBuilder sb = new StringBuilder(this.copy.length * 2);
-    for (byte b : this.copy) {
-      int newB = Byte.toUnsignedInt(b);
-      sb.append((String.format("%02x", newB)).toUpperCase());
+    int length = this.length();
+    char[] hex = new char[length * 2];
+    for (int i = 0; i < length; i++) {
+      int b = this.get(i) & 0xff;
+      hex[2 * i] = HEX_DIGITS[b >>> 4];
+      hex[2 * i + 1] = HEX_DIGITS[b & 0xf];
     } // for
-    return sb.toString();
+    return new String(hex);
   } // toString()
 
   /**
@@ -92,10 +295,18 @@ public class Hash {
    */
   @Override
   public boolean equals(Object other) {
-    if (other instanceof Hash otherHash) {
+    if (!(other instanceof Hash otherHash) || this.length() != otherHash.length()) {
+      return false;
+    } // if
+    if (this.copy != null && otherHash.copy != null) {
       return Arrays.equals(this.copy, otherHash.copy);
     } // if
-    return false;
+    for (int i = 0; i < this.words(); i++) {
+      if (this.word(i) != otherHash.word(i)) {
+        return false;
+      } // if
+    } // for
+    return true;
   } // equals(Object)
 
   /**
@@ -104,6 +315,48 @@ public class Hash {
    * @return the hash code.
    */
   public int hashCode() {
-    return this.toString().hashCode();
+    int code = this.length();
+    for (int i = 0; i < this.words(); i++) {
+      code = 31 * code + Long.hashCode(this.word(i));
+    } // for
+    return code;
   } // hashCode()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Build the table of hex digit values.
+   *
+   * @return the table.
+   */
+  static byte[] hexValues() {
+    byte[] values = new byte[128];
+    Arrays.fill(values, (byte) -1);
+    for (int i = 0; i < HEX_DIGITS.length; i++) {
+      values[HEX_DIGITS[i]] = (byte) i;
+      values[Character.toLowerCase(HEX_DIGITS[i])] = (byte) i;
+    } // for
+    return values;
+  } // hexValues()
+
+  /**
+   * Get the value of a hex digit.
+   *
+   * @param hex The string that holds the digit.
+   * @param i The index of the digit.
+   *
+   * @return the value, between 0 and 15.
+   *
+   * @throws IllegalArgumentException if the character is not a hex digit.
+   */
+  static int hexValue(String hex, int i) {
+    char c = hex.charAt(i);
+    int value = (c < HEX_VALUES.length) ? HEX_VALUES[c] : -1;
+    if (value < 0) {
+      throw new IllegalArgumentException("Not a hex digit: '" + c + "'");
+    } // if
+    return value;
+  } // hexValue(String, int)
 } // class Hash
@@ -0,0 +1,264 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+
+/**
+ * A 32-byte hash (the size SHA-256 and its relatives produce), stored as four big-endian 64-bit
+ * words instead of an array. Comparing two of them takes four comparisons, and their hash codes
+ * come straight from the words. Create them with Hash.of.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+final class Hash32 extends Hash {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of bytes in the hash.
+   */
+  static final int BYTES = 4 * Long.BYTES;
+
+  /**
+   * Reads and writes big-endian longs in byte arrays.
+   */
+  static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+  /**
+   * Per-thread space for writing our bytes to digests and streams, which only take arrays.
+   */
+  static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[BYTES]);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Bytes 0 through 7.
+   */
+  final long w0;
+
+  /**
+   * Bytes 8 through 15.
+   */
+  final long w1;
+
+  /**
+   * Bytes 16 through 23.
+   */
+  final long w2;
+
+  /**
+   * Bytes 24 through 31.
+   */
+  final long w3;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a hash from 32 bytes of an array.
+   *
+   * @param data The array that holds the bytes.
+   * @param offset The index of the first byte.
+   */
+  Hash32(byte[] data, int offset) {
+    this.w0 = getLong(data, offset);
+    this.w1 = getLong(data, offset + Long.BYTES);
+    this.w2 = getLong(data, offset + 2 * Long.BYTES);
+    this.w3 = getLong(data, offset + 3 * Long.BYTES);
+  } // Hash32(byte[], int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine how many bytes are in the hash.
+   *
+   * @return 32.
+   */
+  @Override
+  public int length() {
+    return BYTES;
+  } // length()
+
+  /**
+   * Get the ith byte.
+   *
+   * @param i The index of the byte to get, between 0 (inclusive) and 32 (exclusive).
+   *
+   * @return the ith byte.
+   *
+   * @throws IndexOutOfBoundsException if i is out of range.
+   */
+  @Override
+  public byte get(int i) {
+    if (i < 0 || i >= BYTES) {
+      throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + BYTES);
+    } // if
+    return (byte) (word(i / Long.BYTES) >>> (Long.SIZE - Byte.SIZE * (i % Long.BYTES + 1)));
+  } // get(int)
+
+  /**
+   * Get a copy of the bytes in the hash.
+   *
+   * @return a new array holding the bytes.
+   */
+  @Override
+  public byte[] getBytes() {
+    return this.fill(new byte[BYTES]);
+  } // getBytes()
+
+  /**
+   * Feed the bytes of the hash to a digest, without allocating.
+   *
+   * @param md The digest.
+   */
+  @Override
+  public void writeTo(MessageDigest md) {
+    md.update(this.fill(SCRATCH.get()));
+  } // writeTo(MessageDigest)
+
+  /**
+   * Put the bytes of the hash in a buffer at its current position, advancing the position.
+   *
+   * @param buffer The buffer.
+   *
+   * @throws java.nio.BufferOverflowException if the buffer does not have room.
+   */
+  @Override
+  public void writeTo(ByteBuffer buffer) {
+    boolean swap = buffer.order() != ByteOrder.BIG_ENDIAN;
+    buffer.putLong(swap ? Long.reverseBytes(this.w0) : this.w0);
+    buffer.putLong(swap ? Long.reverseBytes(this.w1) : this.w1);
+    buffer.putLong(swap ? Long.reverseBytes(this.w2) : this.w2);
+    buffer.putLong(swap ? Long.reverseBytes(this.w3) : this.w3);
+  } // writeTo(ByteBuffer)
+
+  /**
+   * Write the bytes of the hash to a stream, without allocating.
+   *
+   * @param out The stream.
+   *
+   * @throws IOException if the stream cannot be written.
+   */
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(this.fill(SCRATCH.get()));
+  } // writeTo(OutputStream)
+
+  /**
+   * Determine if this hash holds exactly the given bytes.
+   *
+   * @param bytes The bytes to compare to.
+   *
+   * @return true if the bytes are the same and false otherwise.
+   */
+  @Override
+  boolean matches(byte[] bytes) {
+    return bytes.length == BYTES && getLong(bytes, 0) == this.w0
+        && getLong(bytes, Long.BYTES) == this.w1 && getLong(bytes, 2 * Long.BYTES) == this.w2
+        && getLong(bytes, 3 * Long.BYTES) == this.w3;
+  } // matches(byte[])
+
+  /**
+   * Get the ith big-endian 64-bit word of the hash.
+   *
+   * @param i The index of the word, between 0 (inclusive) and 4 (exclusive).
+   *
+   * @return the word.
+   */
+  @Override
+  long word(int i) {
+    switch (i) {
+      case 0:
+        return this.w0;
+      case 1:
+        return this.w1;
+      case 2:
+        return this.w2;
+      case 3:
+        return this.w3;
+      default:
+        throw new IndexOutOfBoundsException("Word " + i + " out of bounds for length 4");
+    } // switch
+  } // word(int)
+
+  /**
+   * Determine if this is equal to another object.
+   *
+   * @param other The object to compare to.
+   *
+   * @return true if other is a hash of the same bytes and false otherwise.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if (other instanceof Hash32 o) {
+      return this.w0 == o.w0 && this.w1 == o.w1 && this.w2 == o.w2 && this.w3 == o.w3;
+    } // if
+    return super.equals(other);
+  } // equals(Object)
+
+  /**
+   * Get the hash code of this object. Matches Hash.hashCode for the same bytes.
+   *
+   * @return the hash code.
+   */
+  @Override
+  public int hashCode() {
+    return ((((BYTES * 31) + Long.hashCode(this.w0)) * 31 + Long.hashCode(this.w1)) * 31
+        + Long.hashCode(this.w2)) * 31 + Long.hashCode(this.w3);
+  } // hashCode()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Store the bytes of the hash at the start of an array.
+   *
+   * @param bytes The array, which must hold at least 32 bytes.
+   *
+   * @return bytes.
+   */
+  byte[] fill(byte[] bytes) {
+    putLong(bytes, 0, this.w0);
+    putLong(bytes, Long.BYTES, this.w1);
+    putLong(bytes, 2 * Long.BYTES, this.w2);
+    putLong(bytes, 3 * Long.BYTES, this.w3);
+    return bytes;
+  } // fill(byte[])
+
+  /**
+   * Read eight big-endian bytes as a long.
+   *
+   * @param bytes The array.
+   * @param offset The index of the first byte.
+   *
+   * @return the long.
+   */
+  static long getLong(byte[] bytes, int offset) {
+    return (long) LONGS.get(bytes, offset);
+  } // getLong(byte[], int)
+
+  /**
+   * Store a long as eight big-endian bytes.
+   *
+   * @param bytes The array.
+   * @param offset The index of the first byte.
+   * @param value The long.
+   */
+  static void putLong(byte[] bytes, int offset, long value) {
+    LONGS.set(bytes, offset, value);
+  } // putLong(byte[], int, long)
+} // class Hash32
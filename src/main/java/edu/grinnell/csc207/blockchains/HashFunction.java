@@ -0,0 +1,180 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The hash functions a blockchain can use for its blocks. Each chain picks one, and its blocks,
+ * miners, and checks all use it.
+ *
+ * Which function is fastest depends on the machine: the JDK compiles SHA-256 to the SHA
+ * extensions where the processor has them, while SHA-512/256 does its arithmetic on 64-bit words
+ * and so tends to win on 64-bit processors without them. The benchmark method measures them all.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public enum HashFunction {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * SHA-256, which miners can also compute with a specialized kernel.
+   */
+  SHA_256("SHA-256"),
+
+  /**
+   * SHA-512 truncated to 256 bits.
+   */
+  SHA_512_256("SHA-512/256"),
+
+  /**
+   * SHA3-256.
+   */
+  SHA3_256("SHA3-256");
+
+  /**
+   * The number of blocks we hash with each function when benchmarking.
+   */
+  static final int BENCHMARK_HASHES = 50000;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The name of the algorithm, as MessageDigest knows it.
+   */
+  final String algorithm;
+
+  /**
+   * The number of bytes in a hash.
+   */
+  final int length;
+
+  /**
+   * The message digests used to compute hashes, one per thread, so that different threads can
+   * hash blocks at the same time.
+   */
+  final ThreadLocal<MessageDigest> digests;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a hash function.
+   *
+   * @param algorithmInput The name of the algorithm.
+   */
+  HashFunction(String algorithmInput) {
+    this.algorithm = algorithmInput;
+    this.digests = ThreadLocal.withInitial(this::newDigest);
+    this.length = newDigest().getDigestLength();
+  } // HashFunction(String)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the name of the algorithm.
+   *
+   * @return the name, as MessageDigest knows it.
+   */
+  public String getAlgorithm() {
+    return this.algorithm;
+  } // getAlgorithm()
+
+  /**
+   * Get the number of bytes in a hash.
+   *
+   * @return the number of bytes.
+   */
+  public int length() {
+    return this.length;
+  } // length()
+
+  /**
+   * Create a new message digest for this function.
+   *
+   * @return a new message digest.
+   *
+   * @throws IllegalStateException if the platform does not provide the algorithm.
+   */
+  MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(this.algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Cannot load hash algorithm " + this.algorithm, e);
+    } // try/catch
+  } // newDigest()
+
+  /**
+   * Get this thread's message digest for this function, reset and ready to use.
+   *
+   * @return the message digest.
+   */
+  MessageDigest digest() {
+    MessageDigest md = this.digests.get();
+    md.reset();
+    return md;
+  } // digest()
+
+  /**
+   * Convert to a string.
+   *
+   * @return the name of the algorithm.
+   */
+  @Override
+  public String toString() {
+    return this.algorithm;
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Measure how quickly each function hashes blocks on this machine. Takes a fraction of a
+   * second.
+   *
+   * @return the number of blocks each function hashes per second.
+   */
+  public static Map<HashFunction, Double> benchmark() {
+    Transaction t = new Transaction("benchmark", "benchmark", 0);
+    Map<HashFunction, Double> rates = new EnumMap<HashFunction, Double>(HashFunction.class);
+    for (int round = 0; round < 3; round++) {
+      for (HashFunction function : values()) {
+        Hash prev = new Hash(new byte[function.length()]);
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_HASHES; i++) {
+          Block.computeHash(function, 0, t, prev, i);
+        } // for
+        double rate = BENCHMARK_HASHES * 1e9 / (System.nanoTime() - start);
+        rates.merge(function, rate, Math::max);
+      } // for
+    } // for
+    return rates;
+  } // benchmark()
+
+  /**
+   * Find the fastest function among some benchmark results.
+   *
+   * @param rates The number of blocks each function hashes per second.
+   *
+   * @return the function with the highest rate.
+   */
+  public static HashFunction fastest(Map<HashFunction, Double> rates) {
+    HashFunction best = SHA_256;
+    for (Map.Entry<HashFunction, Double> entry : rates.entrySet()) {
+      if (entry.getValue() > rates.getOrDefault(best, 0.0)) {
+        best = entry.getKey();
+      } // if
+    } // for
+    return best;
+  } // fastest(Map<HashFunction, Double>)
+} // enum HashFunction
@@ -0,0 +1,203 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * An index from the hashes of the blocks in a store to their heights. It is an open-addressing
+ * table (linear probing) held in one int array, a height and a hash code per slot, so it costs
+ * eight bytes a slot and no objects per block; the hashes themselves stay in the blocks. Each
+ * slot remembers the hash code of its block, so most failed comparisons never touch the block.
+ *
+ * Blocks must be added and removed in stack order, as a chain does. Since the last block added
+ * is always the last to have claimed its slot, no later entry can have probed past it, and
+ * removing it just empties its slot.
+ *
+ * One thread at a time may change the index, while any number of others look up hashes
+ * without locking. A lookup might see a change half made, so readers check every candidate
+ * against their own view of the blocks (see find(Hash, BlockStore)): they find every block of
+ * that view that is not being removed, and nothing else. Growing builds a whole new table and
+ * then publishes it, so readers never see a table half copied.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+class HashIndex {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of slots we start with.
+   */
+  static final int INITIAL_CAPACITY = 64;
+
+  /**
+   * Spreads hash codes over the table (the 32-bit golden ratio).
+   */
+  static final int SPREAD = 0x9E3779B9;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The blocks we index.
+   */
+  BlockStore blocks;
+
+  /**
+   * The slots, two ints each: the height of the block in the slot plus one (or 0 for an empty
+   * slot), then the hash code of that block.
+   */
+  volatile int[] slots;
+
+  /**
+   * The number of blocks in the index.
+   */
+  int count;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an index of the blocks in a store, including those already there.
+   *
+   * @param blocksInput The blocks to index.
+   */
+  HashIndex(BlockStore blocksInput) {
+    this.blocks = blocksInput;
+    int capacity = INITIAL_CAPACITY;
+    while (3 * blocksInput.size() >= 2 * capacity) {
+      capacity *= 2;
+    } // while
+    this.slots = new int[2 * capacity];
+    this.count = 0;
+    for (int height = 0; height < blocksInput.size(); height++) {
+      this.add(height);
+    } // for
+  } // HashIndex(BlockStore)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Index the block at a given height, which must be one more than the last height indexed.
+   *
+   * @param height The height of the block.
+   */
+  void add(int height) {
+    if (3 * (this.count + 1) > this.slots.length) {
+      this.grow();
+    } // if
+    insert(this.slots, height, this.blocks.get(height).getHash().hashCode());
+    ++this.count;
+  } // add(int)
+
+  /**
+   * Stop indexing the block at a given height, which must be the last height indexed.
+   *
+   * @param height The height of the block.
+   * @param hash The hash of the block.
+   */
+  void remove(int height, Hash hash) {
+    int[] table = this.slots;
+    int mask = table.length / 2 - 1;
+    for (int slot = spread(hash.hashCode()) & mask; table[2 * slot] != 0;
+        slot = (slot + 1) & mask) {
+      if (table[2 * slot] == height + 1) {
+        table[2 * slot] = 0;
+        --this.count;
+        return;
+      } // if
+    } // for
+  } // remove(int, Hash)
+
+  /**
+   * Find the height of the block with a given hash.
+   *
+   * @param hash The hash.
+   *
+   * @return the height of the block, or -1 if no block has that hash.
+   */
+  int find(Hash hash) {
+    return this.find(hash, this.blocks);
+  } // find(Hash)
+
+  /**
+   * Find the height of the block with a given hash in a view of the blocks we index. Heights
+   * beyond the view, and blocks of the view whose hash differs, are passed over, so this is
+   * safe while another thread changes the index.
+   *
+   * @param hash The hash.
+   * @param view The blocks to look in.
+   *
+   * @return the height of the block in view, or -1 if no block there has that hash.
+   */
+  int find(Hash hash, BlockStore view) {
+    int code = hash.hashCode();
+    int size = view.size();
+    int[] table = this.slots;
+    int mask = table.length / 2 - 1;
+    for (int slot = spread(code) & mask; table[2 * slot] != 0; slot = (slot + 1) & mask) {
+      int height = table[2 * slot] - 1;
+      if (table[2 * slot + 1] == code && height < size
+          && view.get(height).getHash().equals(hash)) {
+        return height;
+      } // if
+    } // for
+    return -1;
+  } // find(Hash, BlockStore)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Double the table. We reinsert in height order, so that the newest block is still the last
+   * to claim its slot, and publish the new table only once it is full.
+   */
+  void grow() {
+    int[] old = this.slots;
+    int[] codes = new int[this.count];
+    for (int slot = 0; slot < old.length / 2; slot++) {
+      if (old[2 * slot] != 0) {
+        codes[old[2 * slot] - 1] = old[2 * slot + 1];
+      } // if
+    } // for
+    int[] table = new int[2 * old.length];
+    for (int height = 0; height < codes.length; height++) {
+      insert(table, height, codes[height]);
+    } // for
+    this.slots = table;
+  } // grow()
+
+  /**
+   * Put a height in the first free slot of a table for its hash code. The code goes in before
+   * the height, which is what marks the slot as taken.
+   *
+   * @param table The table.
+   * @param height The height.
+   * @param code The hash code of the block at that height.
+   */
+  static void insert(int[] table, int height, int code) {
+    int mask = table.length / 2 - 1;
+    int slot = spread(code) & mask;
+    while (table[2 * slot] != 0) {
+      slot = (slot + 1) & mask;
+    } // while
+    table[2 * slot + 1] = code;
+    table[2 * slot] = height + 1;
+  } // insert(int[], int, int)
+
+  /**
+   * Mix the bits of a hash code so that nearby codes land in distant slots.
+   *
+   * @param code The hash code.
+   *
+   * @return the mixed code.
+   */
+  static int spread(int code) {
+    int mixed = code * SPREAD;
+    return mixed ^ (mixed >>> 16);
+  } // spread(int)
+} // class HashIndex
@@ -1,5 +1,7 @@
 package edu.grinnell.csc207.blockchains;
 
+import java.util.Arrays;
+
 /**
  * Things that validate hashes.
  *
@@ -16,4 +18,46 @@ public interface HashValidator {
    */
   boolean isValid(Hash hash);
 
+  /**
+   * Determine if a hash, given as raw bytes, meets the criterion. Miners call this for every
+   * candidate, so validators should override it to read the bytes in place; the default wraps
+   * them in a Hash and calls isValid(Hash). The validator must not keep the array.
+   *
+   * @param bytes The array that holds the hash.
+   * @param offset The index of the first byte of the hash.
+   * @param length The number of bytes in the hash.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  default boolean isValid(byte[] bytes, int offset, int length) {
+    if (offset == 0 && length == bytes.length) {
+      return isValid(Hash.wrap(bytes));
+    } // if
+    return isValid(Hash.wrap(Arrays.copyOfRange(bytes, offset, offset + length)));
+  } // isValid(byte[], int, int)
+
+  /**
+   * Determine how many leading zero bits every valid hash has. Miners use this to reject most
+   * candidates before computing their full hash, so validators that need leading zeros should
+   * say so; others may leave it at 0.
+   *
+   * @return the number of leading zero bits that isValid requires.
+   */
+  default int leadingZeroBits() {
+    return 0;
+  } // leadingZeroBits()
+
+  /**
+   * Get the validator for the block at a given height. Validators whose criterion changes as the
+   * chain grows return the criterion that applies (or applied) to that block; the rest return
+   * themselves.
+   *
+   * @param height The number of the block.
+   *
+   * @return a validator for that block.
+   */
+  default HashValidator atHeight(int height) {
+    return this;
+  } // atHeight(int)
+
 } // interface HashValidator
@@ -0,0 +1,180 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.util.Objects;
+
+/**
+ * A read-only hash over part of a buffer. Nothing is copied onto the heap until someone asks
+ * for the bytes with getBytes. Create them with Hash.view.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+final class HashView extends Hash {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How many bytes we copy at a time when writing to a stream.
+   */
+  static final int CHUNK = 64;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * A read-only, big-endian view of the buffer that holds the hash.
+   */
+  final ByteBuffer buffer;
+
+  /**
+   * The index of the first byte of the hash.
+   */
+  final int offset;
+
+  /**
+   * The number of bytes in the hash.
+   */
+  final int length;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a view of part of a buffer.
+   *
+   * @param bufferInput The buffer that holds the hash.
+   * @param offsetInput The index of the first byte of the hash.
+   * @param lengthInput The number of bytes in the hash.
+   *
+   * @throws IndexOutOfBoundsException if the bytes are not all within the buffer.
+   */
+  HashView(ByteBuffer bufferInput, int offsetInput, int lengthInput) {
+    Objects.checkFromIndexSize(offsetInput, lengthInput, bufferInput.capacity());
+    this.buffer = bufferInput.asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN);
+    this.offset = offsetInput;
+    this.length = lengthInput;
+  } // HashView(ByteBuffer, int, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine how many bytes are in the hash.
+   *
+   * @return the number of bytes in the hash.
+   */
+  @Override
+  public int length() {
+    return this.length;
+  } // length()
+
+  /**
+   * Get the ith byte.
+   *
+   * @param i The index of the byte to get, between 0 (inclusive) and length() (exclusive).
+   *
+   * @return the ith byte.
+   *
+   * @throws IndexOutOfBoundsException if i is out of range.
+   */
+  @Override
+  public byte get(int i) {
+    return this.buffer.get(this.offset + Objects.checkIndex(i, this.length));
+  } // get(int)
+
+  /**
+   * Get a copy of the bytes in the hash.
+   *
+   * @return a new array holding the bytes.
+   */
+  @Override
+  public byte[] getBytes() {
+    byte[] bytes = new byte[this.length];
+    this.buffer.get(this.offset, bytes);
+    return bytes;
+  } // getBytes()
+
+  /**
+   * Feed the bytes of the hash to a digest, straight from the buffer.
+   *
+   * @param md The digest.
+   */
+  @Override
+  public void writeTo(MessageDigest md) {
+    md.update(this.buffer.slice(this.offset, this.length));
+  } // writeTo(MessageDigest)
+
+  /**
+   * Put the bytes of the hash in a buffer at its current position, advancing the position.
+   *
+   * @param target The buffer.
+   *
+   * @throws java.nio.BufferOverflowException if the buffer does not have room.
+   */
+  @Override
+  public void writeTo(ByteBuffer target) {
+    target.put(this.buffer.slice(this.offset, this.length));
+  } // writeTo(ByteBuffer)
+
+  /**
+   * Write the bytes of the hash to a stream, a chunk at a time.
+   *
+   * @param out The stream.
+   *
+   * @throws IOException if the stream cannot be written.
+   */
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    byte[] chunk = new byte[Math.min(CHUNK, this.length)];
+    for (int i = 0; i < this.length; i += chunk.length) {
+      int n = Math.min(chunk.length, this.length - i);
+      this.buffer.get(this.offset + i, chunk, 0, n);
+      out.write(chunk, 0, n);
+    } // for
+  } // writeTo(OutputStream)
+
+  /**
+   * Determine if this hash holds exactly the given bytes.
+   *
+   * @param bytes The bytes to compare to.
+   *
+   * @return true if the bytes are the same and false otherwise.
+   */
+  @Override
+  boolean matches(byte[] bytes) {
+    return bytes.length == this.length
+        && this.buffer.slice(this.offset, this.length).equals(ByteBuffer.wrap(bytes));
+  } // matches(byte[])
+
+  /**
+   * Get the ith big-endian 64-bit word of the hash. A final partial word is padded with zeros.
+   *
+   * @param i The index of the word, between 0 (inclusive) and words() (exclusive).
+   *
+   * @return the word.
+   */
+  @Override
+  long word(int i) {
+    int start = i * Long.BYTES;
+    if (start + Long.BYTES <= this.length) {
+      return this.buffer.getLong(this.offset + start);
+    } // if
+    long word = 0;
+    for (int j = 0; j < Long.BYTES; j++) {
+      word <<= Byte.SIZE;
+      if (start + j < this.length) {
+        word |= this.buffer.get(this.offset + start + j) & 0xff;
+      } // if
+    } // for
+    return word;
+  } // word(int)
+} // class HashView
@@ -0,0 +1,161 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index from each user to the heights of the blocks whose transactions involve them. Each
+ * user's heights are kept, in increasing order, in a single int array whose first element is the
+ * number of heights in use, so a user costs one array rather than a list of boxed integers.
+ *
+ * Blocks must be added and removed in stack order, as a chain does, so removing a block only
+ * ever removes the last height of a user.
+ *
+ * One thread at a time may change the index, while any number of others read heights without
+ * locking. A reader might see a change half made, so it must check each height against its own
+ * view of the blocks, dropping heights beyond the view and blocks that do not involve the user.
+ * What is left is every block of the view that involves the user and is not being removed.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+class HistoryIndex {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of heights a new user has room for.
+   */
+  static final int INITIAL_CAPACITY = 3;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The heights for each user. Element 0 of each array is the number of heights that follow.
+   */
+  ConcurrentHashMap<String, int[]> postings;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty index.
+   */
+  HistoryIndex() {
+    this.postings = new ConcurrentHashMap<String, int[]>();
+  } // HistoryIndex()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Index a block, which must be higher than every block indexed so far.
+   *
+   * @param height The height of the block.
+   * @param t The transaction in the block.
+   */
+  void add(int height, Transaction t) {
+    this.post(t.getSource(), height);
+    if (!t.getTarget().equals(t.getSource())) {
+      this.post(t.getTarget(), height);
+    } // if
+  } // add(int, Transaction)
+
+  /**
+   * Stop indexing a block, which must be the highest block indexed.
+   *
+   * @param height The height of the block.
+   * @param t The transaction in the block.
+   */
+  void remove(int height, Transaction t) {
+    this.unpost(t.getSource(), height);
+    this.unpost(t.getTarget(), height);
+  } // remove(int, Transaction)
+
+  /**
+   * Get some of the heights of the blocks that involve a user.
+   *
+   * @param user The user.
+   * @param fromHeight The lowest height of interest.
+   * @param limit The most heights to return.
+   *
+   * @return up to limit heights, each at least fromHeight, in increasing order.
+   */
+  int[] heights(String user, int fromHeight, int limit) {
+    int[] heights = this.postings.get(user);
+    if (heights == null || limit <= 0) {
+      return new int[0];
+    } // if
+    int count = heights[0];
+    int start = Arrays.binarySearch(heights, 1, count + 1, fromHeight);
+    if (start < 0) {
+      start = -start - 1;
+    } // if
+    int end = (int) Math.min((long) start + limit, count + 1);
+    return Arrays.copyOfRange(heights, start, end);
+  } // heights(String, int, int)
+
+  /**
+   * Count the blocks that involve a user.
+   *
+   * @param user The user.
+   *
+   * @return the number of blocks.
+   */
+  int count(String user) {
+    int[] heights = this.postings.get(user);
+    return (heights == null) ? 0 : heights[0];
+  } // count(String)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Add a height to a user's postings. Deposits have no source, so the empty user is skipped.
+   * The height is stored before it is counted, and a new array is filled in before readers can
+   * see it.
+   *
+   * @param user The user.
+   * @param height The height.
+   */
+  void post(String user, int height) {
+    if (user.isEmpty()) {
+      return;
+    } // if
+    int[] heights = this.postings.get(user);
+    boolean fresh = heights == null || heights[0] + 1 == heights.length;
+    if (heights == null) {
+      heights = new int[INITIAL_CAPACITY + 1];
+    } else if (fresh) {
+      heights = Arrays.copyOf(heights, 2 * heights.length);
+    } // if/else
+    heights[heights[0] + 1] = height;
+    ++heights[0];
+    if (fresh) {
+      this.postings.put(user, heights);
+    } // if
+  } // post(String, int)
+
+  /**
+   * Remove a height from the end of a user's postings, if it is there, forgetting users with no
+   * postings left.
+   *
+   * @param user The user.
+   * @param height The height.
+   */
+  void unpost(String user, int height) {
+    int[] heights = this.postings.get(user);
+    if (heights == null || heights[heights[0]] != height) {
+      return;
+    } // if
+    if (--heights[0] == 0) {
+      this.postings.remove(user);
+    } // if
+  } // unpost(String, int)
+} // class HistoryIndex
@@ -0,0 +1,96 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * Validators that accept hashes that start with a certain number of zero bits.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class LeadingZerosValidator implements HashValidator {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of leading zero bits required.
+   */
+  int bits;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new validator that requires the given number of leading zero bits.
+   *
+   * @param bitsInput The number of leading zero bits required.
+   *
+   * @throws IllegalArgumentException if bitsInput is negative.
+   */
+  public LeadingZerosValidator(int bitsInput) {
+    if (bitsInput < 0) {
+      throw new IllegalArgumentException("Cannot require a negative number of bits.");
+    } // if
+    this.bits = bitsInput;
+  } // LeadingZerosValidator(int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine if a hash starts with enough zero bits.
+   *
+   * @param hash The hash we're checking.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  @Override
+  public boolean isValid(Hash hash) {
+    return hash.length() * Byte.SIZE >= this.bits && hash.leadingZeros() >= this.bits;
+  } // isValid(Hash)
+
+  /**
+   * Determine if a hash, given as raw bytes, starts with enough zero bits.
+   *
+   * @param bytes The array that holds the hash.
+   * @param offset The index of the first byte of the hash.
+   * @param length The number of bytes in the hash.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  @Override
+  public boolean isValid(byte[] bytes, int offset, int length) {
+    if (length * Byte.SIZE < this.bits) {
+      return false;
+    } // if
+    int whole = this.bits / Byte.SIZE;
+    for (int i = 0; i < whole; i++) {
+      if (bytes[offset + i] != 0) {
+        return false;
+      } // if
+    } // for
+    int rest = this.bits % Byte.SIZE;
+    return (rest == 0) || ((bytes[offset + whole] & 0xff) >>> (Byte.SIZE - rest)) == 0;
+  } // isValid(byte[], int, int)
+
+  /**
+   * Determine how many leading zero bits every valid hash has.
+   *
+   * @return the number of leading zero bits required.
+   */
+  @Override
+  public int leadingZeroBits() {
+    return this.bits;
+  } // leadingZeroBits()
+
+  /**
+   * Convert to a string.
+   *
+   * @return a description of the validator.
+   */
+  @Override
+  public String toString() {
+    return this.bits + " leading zero bits";
+  } // toString()
+} // class LeadingZerosValidator
@@ -0,0 +1,398 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable map from users to balances. Changing a balance makes a new ledger that shares all
+ * but a few small nodes with the old one, so a chain can hand out the ledger at any moment and
+ * keep working without copying it or locking out the readers.
+ *
+ * The ledger is a hash array mapped trie: each level of the tree uses five bits of the user's
+ * hash code to pick one of up to 32 children, and stores only the children that exist. Users
+ * whose hash codes are identical share a collision node.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+final class Ledger {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of hash bits used at each level.
+   */
+  static final int BITS = 5;
+
+  /**
+   * Picks out the bits for one level.
+   */
+  static final int MASK = (1 << BITS) - 1;
+
+  /**
+   * The ledger with no users.
+   */
+  static final Ledger EMPTY = new Ledger(null, 0);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The root of the trie: an Entry, a Branch, a Collision, or null if there are no users.
+   */
+  final Object root;
+
+  /**
+   * The number of users.
+   */
+  final int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a ledger.
+   *
+   * @param rootInput The root of the trie.
+   * @param sizeInput The number of users.
+   */
+  Ledger(Object rootInput, int sizeInput) {
+    this.root = rootInput;
+    this.size = sizeInput;
+  } // Ledger(Object, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of users.
+   *
+   * @return the number of users.
+   */
+  int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Get a user's balance.
+   *
+   * @param user The user.
+   *
+   * @return the balance, or null if the user is not in the ledger.
+   */
+  Integer get(String user) {
+    int hash = user.hashCode();
+    Object node = this.root;
+    for (int shift = 0; node != null; shift += BITS) {
+      if (node instanceof Entry entry) {
+        return (entry.hash == hash && entry.user.equals(user)) ? entry.balance : null;
+      } else if (node instanceof Branch branch) {
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((branch.bitmap & bit) == 0) {
+          return null;
+        } // if
+        node = branch.children[Integer.bitCount(branch.bitmap & (bit - 1))];
+      } else {
+        Collision collision = (Collision) node;
+        if (collision.hash != hash) {
+          return null;
+        } // if
+        for (Entry entry : collision.entries) {
+          if (entry.user.equals(user)) {
+            return entry.balance;
+          } // if
+        } // for
+        return null;
+      } // if/else
+    } // for
+    return null;
+  } // get(String)
+
+  /**
+   * Get a user's balance, treating missing users as having nothing.
+   *
+   * @param user The user.
+   *
+   * @return the balance, or 0 if the user is not in the ledger.
+   */
+  int balance(String user) {
+    Integer balance = this.get(user);
+    return (balance == null) ? 0 : balance;
+  } // balance(String)
+
+  /**
+   * Determine if a user is in the ledger.
+   *
+   * @param user The user.
+   *
+   * @return true if the user is in the ledger and false otherwise.
+   */
+  boolean contains(String user) {
+    return this.get(user) != null;
+  } // contains(String)
+
+  /**
+   * Make a ledger in which a user has a given balance.
+   *
+   * @param user The user.
+   * @param balance The balance.
+   *
+   * @return the new ledger.
+   */
+  Ledger with(String user, int balance) {
+    boolean[] added = new boolean[1];
+    Object newRoot = put(this.root, new Entry(user, user.hashCode(), balance), 0, added);
+    return new Ledger(newRoot, this.size + (added[0] ? 1 : 0));
+  } // with(String, int)
+
+  /**
+   * Make a ledger in which a transaction has taken place. Deposits (transactions with no
+   * source) only change the target's balance.
+   *
+   * @param t The transaction.
+   *
+   * @return the new ledger.
+   */
+  Ledger apply(Transaction t) {
+    Ledger result = this;
+    if (!t.getSource().isEmpty()) {
+      result = result.with(t.getSource(), result.balance(t.getSource()) - t.getAmount());
+    } // if
+    return result.with(t.getTarget(), result.balance(t.getTarget()) + t.getAmount());
+  } // apply(Transaction)
+
+  /**
+   * Make a ledger in which a transaction has been undone. Users stay in the ledger, with
+   * whatever balance they are left with.
+   *
+   * @param t The transaction.
+   *
+   * @return the new ledger.
+   */
+  Ledger undo(Transaction t) {
+    Ledger result = this;
+    if (!t.getSource().isEmpty()) {
+      result = result.with(t.getSource(), result.balance(t.getSource()) + t.getAmount());
+    } // if
+    return result.with(t.getTarget(), result.balance(t.getTarget()) - t.getAmount());
+  } // undo(Transaction)
+
+  /**
+   * Iterate the users, in no particular order.
+   *
+   * @return an iterator for the users.
+   */
+  Iterator<String> users() {
+    return new Iterator<String>() {
+      // Nodes we have yet to visit.
+      ArrayDeque<Object> pending = new ArrayDeque<Object>();
+
+      {
+        if (root != null) {
+          this.pending.push(root);
+        } // if
+      }
+
+      @Override
+      public boolean hasNext() {
+        return !this.pending.isEmpty();
+      } // hasNext()
+
+      @Override
+      public String next() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        Object node = this.pending.pop();
+        while (!(node instanceof Entry)) {
+          Object[] children = (node instanceof Branch branch) ? branch.children
+              : ((Collision) node).entries;
+          for (int i = children.length - 1; i > 0; i--) {
+            this.pending.push(children[i]);
+          } // for
+          node = children[0];
+        } // while
+        return ((Entry) node).user;
+      } // next()
+    };
+  } // users()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Put an entry into a trie, copying the nodes on the way down.
+   *
+   * @param node The root of the trie, or null for an empty trie.
+   * @param entry The entry.
+   * @param shift The number of hash bits used by the levels above node.
+   * @param added Set to true if the entry's user was not in the trie.
+   *
+   * @return the root of the new trie.
+   */
+  static Object put(Object node, Entry entry, int shift, boolean[] added) {
+    if (node == null) {
+      added[0] = true;
+      return entry;
+    } else if (node instanceof Entry old) {
+      if (old.hash == entry.hash && old.user.equals(entry.user)) {
+        return entry;
+      } // if
+      added[0] = true;
+      if (old.hash == entry.hash) {
+        return new Collision(entry.hash, new Entry[] {old, entry});
+      } // if
+      return split(old, old.hash, entry, shift);
+    } else if (node instanceof Branch branch) {
+      int bit = 1 << ((entry.hash >>> shift) & MASK);
+      int index = Integer.bitCount(branch.bitmap & (bit - 1));
+      if ((branch.bitmap & bit) == 0) {
+        added[0] = true;
+        Object[] children = new Object[branch.children.length + 1];
+        System.arraycopy(branch.children, 0, children, 0, index);
+        children[index] = entry;
+        System.arraycopy(branch.children, index, children, index + 1,
+            branch.children.length - index);
+        return new Branch(branch.bitmap | bit, children);
+      } // if
+      Object[] children = branch.children.clone();
+      children[index] = put(children[index], entry, shift + BITS, added);
+      return new Branch(branch.bitmap, children);
+    } else {
+      Collision collision = (Collision) node;
+      if (collision.hash != entry.hash) {
+        added[0] = true;
+        return split(collision, collision.hash, entry, shift);
+      } // if
+      for (int i = 0; i < collision.entries.length; i++) {
+        if (collision.entries[i].user.equals(entry.user)) {
+          Entry[] entries = collision.entries.clone();
+          entries[i] = entry;
+          return new Collision(collision.hash, entries);
+        } // if
+      } // for
+      added[0] = true;
+      Entry[] entries = Arrays.copyOf(collision.entries, collision.entries.length + 1);
+      entries[collision.entries.length] = entry;
+      return new Collision(collision.hash, entries);
+    } // if/else
+  } // put(Object, Entry, int, boolean[])
+
+  /**
+   * Make a branch that holds a node and an entry whose hash differs from the node's.
+   *
+   * @param node The node (an Entry or a Collision).
+   * @param hash The hash of the user or users in node.
+   * @param entry The entry.
+   * @param shift The number of hash bits used by the levels above the branch.
+   *
+   * @return the branch.
+   */
+  static Branch split(Object node, int hash, Entry entry, int shift) {
+    int nodeIndex = (hash >>> shift) & MASK;
+    int entryIndex = (entry.hash >>> shift) & MASK;
+    if (nodeIndex == entryIndex) {
+      return new Branch(1 << nodeIndex,
+          new Object[] {split(node, hash, entry, shift + BITS)});
+    } // if
+    Object[] children = (nodeIndex < entryIndex) ? new Object[] {node, entry}
+        : new Object[] {entry, node};
+    return new Branch((1 << nodeIndex) | (1 << entryIndex), children);
+  } // split(Object, int, Entry, int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * One user's balance.
+   */
+  static final class Entry {
+    /**
+     * The user.
+     */
+    final String user;
+
+    /**
+     * The user's hash code.
+     */
+    final int hash;
+
+    /**
+     * The balance.
+     */
+    final int balance;
+
+    /**
+     * Create an entry.
+     *
+     * @param userInput The user.
+     * @param hashInput The user's hash code.
+     * @param balanceInput The balance.
+     */
+    Entry(String userInput, int hashInput, int balanceInput) {
+      this.user = userInput;
+      this.hash = hashInput;
+      this.balance = balanceInput;
+    } // Entry(String, int, int)
+  } // class Entry
+
+  /**
+   * A node with a child for each distinct value of the next five hash bits.
+   */
+  static final class Branch {
+    /**
+     * Which of the 32 possible children exist.
+     */
+    final int bitmap;
+
+    /**
+     * The children that exist, in order.
+     */
+    final Object[] children;
+
+    /**
+     * Create a branch.
+     *
+     * @param bitmapInput Which children exist.
+     * @param childrenInput The children.
+     */
+    Branch(int bitmapInput, Object[] childrenInput) {
+      this.bitmap = bitmapInput;
+      this.children = childrenInput;
+    } // Branch(int, Object[])
+  } // class Branch
+
+  /**
+   * The entries for users whose hash codes are identical.
+   */
+  static final class Collision {
+    /**
+     * The hash code they share.
+     */
+    final int hash;
+
+    /**
+     * The entries.
+     */
+    final Entry[] entries;
+
+    /**
+     * Create a collision node.
+     *
+     * @param hashInput The hash code.
+     * @param entriesInput The entries.
+     */
+    Collision(int hashInput, Entry[] entriesInput) {
+      this.hash = hashInput;
+      this.entries = entriesInput;
+    } // Collision(int, Entry[])
+  } // class Collision
+} // class Ledger
@@ -0,0 +1,73 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * Things that search for nonces, producing valid blocks.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public interface Miner {
+  /**
+   * Mine a block with the given contents, choosing a nonce so that the hash of the block meets
+   * the requirements of the validator. The miner reports its attempts to progress and gives up
+   * once progress says it should stop.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   * @param function
+   *   The hash function used to hash the block.
+   * @param progress
+   *   Where to report attempts and check for requests to stop.
+   *
+   * @return a block whose hash is valid, or null if the search was stopped.
+   */
+  Block mine(int num, Transaction transaction, Hash prevHash, HashValidator check,
+      HashFunction function, MiningProgress progress);
+
+  /**
+   * Mine a block with the given contents, hashing with SHA-256. The miner reports its attempts
+   * to progress and gives up once progress says it should stop.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   * @param progress
+   *   Where to report attempts and check for requests to stop.
+   *
+   * @return a block whose hash is valid, or null if the search was stopped.
+   */
+  default Block mine(int num, Transaction transaction, Hash prevHash, HashValidator check,
+      MiningProgress progress) {
+    return mine(num, transaction, prevHash, check, HashFunction.SHA_256, progress);
+  } // mine(int, Transaction, Hash, HashValidator, MiningProgress)
+
+  /**
+   * Mine a block with the given contents, choosing a nonce so that the SHA-256 hash of the block
+   * meets the requirements of the validator.
+   *
+   * @param num
+   *   The number of the block.
+   * @param transaction
+   *   The transaction for the block.
+   * @param prevHash
+   *   The hash of the previous block.
+   * @param check
+   *   The validator used to check the block.
+   *
+   * @return a block whose hash is valid.
+   */
+  default Block mine(int num, Transaction transaction, Hash prevHash, HashValidator check) {
+    return mine(num, transaction, prevHash, check, HashFunction.SHA_256, new MiningProgress());
+  } // mine(int, Transaction, Hash, HashValidator)
+} // interface Miner
@@ -0,0 +1,240 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A block being mined in the background. The job can be watched (attempts, hashes per second,
+ * elapsed time), cancelled, or waited for.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class MiningJob implements Future<Block> {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The threads that run background jobs. Each job occupies one thread for as long as it runs
+   * (a parallel miner then farms the search out to its own workers).
+   */
+  static final ExecutorService BACKGROUND = Executors.newCachedThreadPool((r) -> {
+    Thread t = new Thread(r, "mining-job");
+    t.setDaemon(true);
+    return t;
+  });
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The progress of the search.
+   */
+  MiningProgress progress;
+
+  /**
+   * The task that runs the search.
+   */
+  FutureTask<Block> task;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Start mining a block in the background.
+   *
+   * @param miner The miner to use.
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param check The validator used to check the block.
+   * @param function The hash function used to hash the block.
+   * @param timeoutNanos How long the search may run, in nanoseconds, or 0 for no limit.
+   */
+  public MiningJob(Miner miner, int num, Transaction transaction, Hash prevHash,
+      HashValidator check, HashFunction function, long timeoutNanos) {
+    this.progress = new MiningProgress(timeoutNanos);
+    this.task = new FutureTask<Block>(() -> {
+      try {
+        Block result = miner.mine(num, transaction, prevHash, check, function, this.progress);
+        if (result == null) {
+          throw new CancellationException(
+              this.progress.isTimedOut() ? "Mining timed out." : "Mining cancelled.");
+        } // if
+        return result;
+      } finally {
+        this.progress.finish();
+      } // try/finally
+    });
+    BACKGROUND.execute(this.task);
+  } // MiningJob(Miner, int, Transaction, Hash, HashValidator, HashFunction, long)
+
+  /**
+   * Start mining a block in the background, hashing with SHA-256.
+   *
+   * @param miner The miner to use.
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param check The validator used to check the block.
+   * @param timeoutNanos How long the search may run, in nanoseconds, or 0 for no limit.
+   */
+  public MiningJob(Miner miner, int num, Transaction transaction, Hash prevHash,
+      HashValidator check, long timeoutNanos) {
+    this(miner, num, transaction, prevHash, check, HashFunction.SHA_256, timeoutNanos);
+  } // MiningJob(Miner, int, Transaction, Hash, HashValidator, long)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the progress of the search.
+   *
+   * @return the progress.
+   */
+  public MiningProgress getProgress() {
+    return this.progress;
+  } // getProgress()
+
+  /**
+   * Get the number of nonces checked so far.
+   *
+   * @return the number of attempts.
+   */
+  public long getAttempts() {
+    return this.progress.getAttempts();
+  } // getAttempts()
+
+  /**
+   * Get the average rate at which nonces have been checked.
+   *
+   * @return the number of attempts per second.
+   */
+  public double getHashesPerSecond() {
+    return this.progress.getHashesPerSecond();
+  } // getHashesPerSecond()
+
+  /**
+   * Get the time the job has been running (or ran, if it has ended).
+   *
+   * @param unit The unit in which to report the time.
+   *
+   * @return the elapsed time.
+   */
+  public long getElapsed(TimeUnit unit) {
+    return unit.convert(this.progress.getElapsedNanos(), TimeUnit.NANOSECONDS);
+  } // getElapsed(TimeUnit)
+
+  /**
+   * Determine if the job gave up because it ran out of time.
+   *
+   * @return true if the job timed out and false otherwise.
+   */
+  public boolean isTimedOut() {
+    return isDone() && this.progress.isTimedOut();
+  } // isTimedOut()
+
+  /**
+   * Stop the job.
+   *
+   * @param mayInterruptIfRunning Ignored; the miner notices on its own.
+   *
+   * @return false if the job had already finished and true otherwise.
+   */
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    this.progress.stop();
+    return this.task.cancel(false);
+  } // cancel(boolean)
+
+  /**
+   * Determine if the job was cancelled before it finished.
+   *
+   * @return true if the job was cancelled and false otherwise.
+   */
+  @Override
+  public boolean isCancelled() {
+    return this.task.isCancelled();
+  } // isCancelled()
+
+  /**
+   * Determine if the job has finished, one way or another.
+   *
+   * @return true if the job has finished and false otherwise.
+   */
+  @Override
+  public boolean isDone() {
+    return this.task.isDone();
+  } // isDone()
+
+  /**
+   * Wait for the mined block.
+   *
+   * @return the block.
+   *
+   * @throws CancellationException if the job was cancelled or timed out.
+   * @throws ExecutionException if the miner failed.
+   * @throws InterruptedException if we were interrupted while waiting.
+   */
+  @Override
+  public Block get() throws InterruptedException, ExecutionException {
+    try {
+      return this.task.get();
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    } // try/catch
+  } // get()
+
+  /**
+   * Wait a limited time for the mined block. The job keeps running if we stop waiting.
+   *
+   * @param timeout How long to wait.
+   * @param unit The unit of timeout.
+   *
+   * @return the block.
+   *
+   * @throws CancellationException if the job was cancelled or timed out.
+   * @throws ExecutionException if the miner failed.
+   * @throws InterruptedException if we were interrupted while waiting.
+   * @throws TimeoutException if the block was not ready in time.
+   */
+  @Override
+  public Block get(long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    try {
+      return this.task.get(timeout, unit);
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    } // try/catch
+  } // get(long, TimeUnit)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Report a search that gave up as a cancellation, rather than as a failure.
+   *
+   * @param e The exception from the task.
+   *
+   * @return e, if the miner really failed.
+   *
+   * @throws CancellationException if the search gave up.
+   */
+  static ExecutionException unwrap(ExecutionException e) {
+    if (e.getCause() instanceof CancellationException cancelled) {
+      throw cancelled;
+    } // if
+    return e;
+  } // unwrap(ExecutionException)
+} // class MiningJob
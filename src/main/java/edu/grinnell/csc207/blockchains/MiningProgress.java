@@ -0,0 +1,140 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The progress of one mining search. Miners report their attempts here and check here whether
+ * they should give up; anyone else may watch the attempts or ask the search to stop.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class MiningProgress {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of nonces checked so far.
+   */
+  LongAdder attempts;
+
+  /**
+   * When the search started, from System.nanoTime().
+   */
+  long start;
+
+  /**
+   * When the search ended, from System.nanoTime(), or 0 if it has not ended.
+   */
+  volatile long end;
+
+  /**
+   * When the search should give up, from System.nanoTime(), or 0 for never.
+   */
+  long deadline;
+
+  /**
+   * Whether someone has asked the search to stop.
+   */
+  volatile boolean stopped;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Start tracking a search that runs until it finds a nonce or is stopped.
+   */
+  public MiningProgress() {
+    this(0);
+  } // MiningProgress()
+
+  /**
+   * Start tracking a search that gives up after the given time.
+   *
+   * @param timeoutNanos How long the search may run, in nanoseconds, or 0 for no limit.
+   */
+  public MiningProgress(long timeoutNanos) {
+    this.attempts = new LongAdder();
+    this.start = System.nanoTime();
+    this.deadline = (timeoutNanos > 0) ? this.start + timeoutNanos : 0;
+  } // MiningProgress(long)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Record that a miner has checked some more nonces.
+   *
+   * @param n The number of nonces checked.
+   */
+  public void addAttempts(long n) {
+    this.attempts.add(n);
+  } // addAttempts(long)
+
+  /**
+   * Determine if the search should stop, either because someone asked it to or because it has
+   * run out of time.
+   *
+   * @return true if miners should give up and false otherwise.
+   */
+  public boolean isStopped() {
+    return this.stopped || isTimedOut();
+  } // isStopped()
+
+  /**
+   * Determine if the search has run out of time.
+   *
+   * @return true if the search has a deadline and it has passed.
+   */
+  public boolean isTimedOut() {
+    return (this.deadline != 0) && (System.nanoTime() - this.deadline > 0);
+  } // isTimedOut()
+
+  /**
+   * Ask the search to stop.
+   */
+  public void stop() {
+    this.stopped = true;
+  } // stop()
+
+  /**
+   * Record that the search has ended, so that the elapsed time stops growing.
+   */
+  public void finish() {
+    if (this.end == 0) {
+      this.end = System.nanoTime();
+    } // if
+  } // finish()
+
+  /**
+   * Get the number of nonces checked so far.
+   *
+   * @return the number of attempts.
+   */
+  public long getAttempts() {
+    return this.attempts.sum();
+  } // getAttempts()
+
+  /**
+   * Get the time the search has been running (or ran, if it has ended).
+   *
+   * @return the elapsed time, in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    long stop = this.end;
+    return ((stop == 0) ? System.nanoTime() : stop) - this.start;
+  } // getElapsedNanos()
+
+  /**
+   * Get the average rate at which nonces have been checked.
+   *
+   * @return the number of attempts per second.
+   */
+  public double getHashesPerSecond() {
+    long nanos = getElapsedNanos();
+    return (nanos == 0) ? 0 : getAttempts() * 1e9 / nanos;
+  } // getHashesPerSecond()
+} // class MiningProgress
@@ -0,0 +1,187 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A miner that splits the nonce space across several worker threads. Each worker checks every
+ * nth nonce from a common random starting point, so the workers never repeat each other's work.
+ * As soon as one worker finds a valid nonce, the others stop.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class ParallelMiner implements Miner, AutoCloseable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How many nonces a worker checks between looks at the shared "found" flag.
+   */
+  static final int CHECK_INTERVAL = 1024;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of worker threads.
+   */
+  int threads;
+
+  /**
+   * The pool that runs the workers.
+   */
+  ExecutorService pool;
+
+  /**
+   * Where we get starting points.
+   */
+  Random rand;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new miner that uses the given number of worker threads.
+   *
+   * @param threadsInput The number of worker threads.
+   *
+   * @throws IllegalArgumentException if threadsInput is not positive.
+   */
+  public ParallelMiner(int threadsInput) {
+    if (threadsInput < 1) {
+      throw new IllegalArgumentException("A miner needs at least one thread.");
+    } // if
+    this.threads = threadsInput;
+    this.pool = Executors.newFixedThreadPool(threadsInput, (r) -> {
+      Thread t = new Thread(r, "miner");
+      t.setDaemon(true);
+      return t;
+    });
+    this.rand = new Random();
+  } // ParallelMiner(int)
+
+  /**
+   * Create a new miner with one worker thread per available processor.
+   */
+  public ParallelMiner() {
+    this(Runtime.getRuntime().availableProcessors());
+  } // ParallelMiner()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of worker threads.
+   *
+   * @return the number of worker threads.
+   */
+  public int getThreads() {
+    return this.threads;
+  } // getThreads()
+
+  /**
+   * Mine a block with the given contents, searching on all of the worker threads.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param check The validator used to check the block.
+   * @param function The hash function used to hash the block.
+   * @param progress Where to report attempts and check for requests to stop.
+   *
+   * @return a block whose hash is valid, or null if the search was stopped.
+   *
+   * @throws IllegalStateException if the search is interrupted or a worker fails.
+   */
+  @Override
+  public Block mine(int num, Transaction transaction, Hash prevHash, HashValidator check,
+      HashFunction function, MiningProgress progress) {
+    AtomicBoolean found = new AtomicBoolean(false);
+    long start = this.rand.nextLong();
+    List<Callable<Long>> workers = new ArrayList<Callable<Long>>(this.threads);
+    for (int i = 0; i < this.threads; i++) {
+      long first = start + i;
+      workers.add(() -> search(num, transaction, prevHash, check, function, first, this.threads,
+          found, progress));
+    } // for
+
+    long nonce;
+    try {
+      nonce = this.pool.invokeAny(workers);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while mining.", e);
+    } catch (ExecutionException e) {
+      if (progress.isStopped()) {
+        return null;
+      } // if
+      throw new IllegalStateException("Mining failed.", e.getCause());
+    } finally {
+      found.set(true);
+    } // try/catch/finally
+    return new Block(num, transaction, prevHash, nonce, function);
+  } // mine(int, Transaction, Hash, HashValidator, HashFunction, MiningProgress)
+
+  /**
+   * Stop the worker threads. The miner may not be used afterwards.
+   */
+  @Override
+  public void close() {
+    this.pool.shutdownNow();
+  } // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Check first, first + stride, first + 2*stride, ... until we find a valid nonce, some other
+   * worker does, or the search is stopped.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param check The validator used to check the block.
+   * @param function The hash function used to hash the block.
+   * @param first The first nonce to check.
+   * @param stride The distance between the nonces we check.
+   * @param found Set once any worker has found a nonce.
+   * @param progress Where to report attempts and check for requests to stop.
+   *
+   * @return a valid nonce.
+   *
+   * @throws InterruptedException if another worker found a nonce first or the search stopped.
+   */
+  static long search(int num, Transaction transaction, Hash prevHash, HashValidator check,
+      HashFunction function, long first, int stride, AtomicBoolean found,
+      MiningProgress progress)
+      throws InterruptedException {
+    BlockHasher hasher = new BlockHasher(num, transaction, prevHash, function);
+    long nonce = first;
+    while (true) {
+      for (int i = 0; i < CHECK_INTERVAL; i++) {
+        if (hasher.isValid(nonce, check)) {
+          found.set(true);
+          progress.addAttempts(i + 1);
+          return nonce;
+        } // if
+        nonce += stride;
+      } // for
+      progress.addAttempts(CHECK_INTERVAL);
+      if (found.get() || progress.isStopped() || Thread.interrupted()) {
+        throw new InterruptedException("Search over.");
+      } // if
+    } // while
+  } // search
+} // class ParallelMiner
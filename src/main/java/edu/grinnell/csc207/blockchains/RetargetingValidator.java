@@ -0,0 +1,274 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validators that require leading zero bits and adjust how many to keep blocks coming at a
+ * steady rate. The chain is divided into epochs of a fixed number of blocks. When the last block
+ * of an epoch is appended, we compare how long the recent blocks took, by the times recorded in
+ * the blocks themselves, with the time we want per block and set the next epoch's difficulty
+ * accordingly, one bit (a factor of two) at a time. Since the times travel with the blocks, the
+ * difficulty of every epoch follows from the chain alone. The times are not part of the blocks'
+ * hashes, though, so a chain's checkpoint records the difficulty of the epochs it covers (see
+ * epochBits and restore), and only the epochs after it are worked out from stored times.
+ *
+ * Each epoch's difficulty is kept, so atHeight can answer for any block the chain has held, and
+ * BlockChain.check verifies old blocks against the difficulty they were mined at. The validator
+ * learns of appends and removals as a ChainListener; BlockChain registers it automatically.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class RetargetingValidator implements HashValidator, ChainListener {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The most bits by which one retarget may change the difficulty.
+   */
+  static final int MAX_STEP = 4;
+
+  /**
+   * The most bits we ever require.
+   */
+  static final int MAX_BITS = Sha256.DIGEST_BYTES * Byte.SIZE;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of blocks in an epoch.
+   */
+  int interval;
+
+  /**
+   * The time we want each block to take, in nanoseconds.
+   */
+  long blockNanos;
+
+  /**
+   * The validator for each epoch so far.
+   */
+  ArrayList<LeadingZerosValidator> epochs;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new validator.
+   *
+   * @param initialBits The number of leading zero bits required in the first epoch.
+   * @param blockTime The time we want each block to take.
+   * @param unit The unit of blockTime.
+   * @param intervalInput The number of blocks between retargets.
+   *
+   * @throws IllegalArgumentException if initialBits is out of range or the time or interval is
+   *   not positive.
+   */
+  public RetargetingValidator(int initialBits, long blockTime, TimeUnit unit,
+      int intervalInput) {
+    if (initialBits < 0 || initialBits > MAX_BITS) {
+      throw new IllegalArgumentException("Cannot require " + initialBits + " bits.");
+    } // if
+    if (blockTime <= 0 || intervalInput <= 0) {
+      throw new IllegalArgumentException("Block time and interval must be positive.");
+    } // if
+    this.interval = intervalInput;
+    this.blockNanos = unit.toNanos(blockTime);
+    this.epochs = new ArrayList<LeadingZerosValidator>();
+    this.epochs.add(new LeadingZerosValidator(initialBits));
+  } // RetargetingValidator(int, long, TimeUnit, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine if a hash meets the current difficulty.
+   *
+   * @param hash The hash we're checking.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  @Override
+  public boolean isValid(Hash hash) {
+    return current().isValid(hash);
+  } // isValid(Hash)
+
+  /**
+   * Determine if a hash, given as raw bytes, meets the current difficulty.
+   *
+   * @param bytes The array that holds the hash.
+   * @param offset The index of the first byte of the hash.
+   * @param length The number of bytes in the hash.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  @Override
+  public boolean isValid(byte[] bytes, int offset, int length) {
+    return current().isValid(bytes, offset, length);
+  } // isValid(byte[], int, int)
+
+  /**
+   * Determine how many leading zero bits the current difficulty requires.
+   *
+   * @return the number of bits.
+   */
+  @Override
+  public int leadingZeroBits() {
+    return current().leadingZeroBits();
+  } // leadingZeroBits()
+
+  /**
+   * Get the validator for the block at a given height. Heights beyond the current epoch get the
+   * current difficulty.
+   *
+   * @param height The number of the block.
+   *
+   * @return a validator that requires the leading zero bits in force at that height.
+   */
+  @Override
+  public synchronized HashValidator atHeight(int height) {
+    return this.epochs.get(Math.min(height / this.interval, this.epochs.size() - 1));
+  } // atHeight(int)
+
+  /**
+   * If a new block ends an epoch, set the next epoch's difficulty.
+   *
+   * @param chain The chain.
+   * @param block The new last block.
+   */
+  @Override
+  public synchronized void blockAppended(BlockChain chain, Block block) {
+    int height = block.getNum();
+    if ((height + 1) % this.interval == 0 && this.epochs.size() == (height + 1) / this.interval) {
+      int bits = this.epochs.get(this.epochs.size() - 1).leadingZeroBits();
+      long start = chain.getBlock(Math.max(0, height - this.interval)).getTime();
+      this.epochs.add(new LeadingZerosValidator(retarget(bits, height, start, block.getTime())));
+    } // if
+  } // blockAppended(BlockChain, Block)
+
+  /**
+   * Forget any difficulty set because of a removed block.
+   *
+   * @param chain The chain.
+   * @param block The block that was removed.
+   */
+  @Override
+  public synchronized void blockRemoved(BlockChain chain, Block block) {
+    int height = block.getNum();
+    while (this.epochs.size() > height / this.interval + 1) {
+      this.epochs.remove(this.epochs.size() - 1);
+    } // while
+  } // blockRemoved(BlockChain, Block)
+
+  /**
+   * Note that a chain has been rebuilt from stored blocks, and work out the difficulty of each
+   * epoch they cover (after any restored from a checkpoint) from the times of the blocks that
+   * end the epochs, just as if they had been appended one at a time. Only those blocks are
+   * read.
+   *
+   * @param chain The chain.
+   */
+  @Override
+  public synchronized void chainLoaded(BlockChain chain) {
+    int size = chain.getSize();
+    for (int height = this.epochs.size() * this.interval - 1; height < size;
+        height += this.interval) {
+      this.blockAppended(chain, chain.getBlock(height));
+    } // for
+  } // chainLoaded(BlockChain)
+
+  /**
+   * Get the difficulty of each epoch that the first blocks of a chain have set: the first epoch
+   * and those that begin within or just after those blocks.
+   *
+   * @param count The number of blocks.
+   *
+   * @return the number of leading zero bits each of those epochs requires, in order.
+   */
+  public synchronized int[] epochBits(int count) {
+    int[] bits = new int[Math.min(this.epochs.size(), count / this.interval + 1)];
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] = this.epochs.get(i).leadingZeroBits();
+    } // for
+    return bits;
+  } // epochBits(int)
+
+  /**
+   * Take the difficulty of the first epochs from a record of them (see epochBits), rather than
+   * working it out from the times in the blocks, so that chainLoaded only works out the later
+   * ones. A record made with another interval or first difficulty is ignored.
+   *
+   * @param intervalInput The number of blocks in an epoch when the record was made.
+   * @param bits The number of leading zero bits each epoch requires, in order.
+   *
+   * @return true if we took the record and false if we ignored it.
+   */
+  public synchronized boolean restore(int intervalInput, int[] bits) {
+    if (intervalInput != this.interval || bits.length == 0
+        || bits[0] != this.epochs.get(0).leadingZeroBits()) {
+      return false;
+    } // if
+    for (int b : bits) {
+      if (b < 0 || b > MAX_BITS) {
+        return false;
+      } // if
+    } // for
+    this.epochs.clear();
+    for (int b : bits) {
+      this.epochs.add(new LeadingZerosValidator(b));
+    } // for
+    return true;
+  } // restore(int, int[])
+
+  /**
+   * Convert to a string.
+   *
+   * @return a description of the validator.
+   */
+  @Override
+  public String toString() {
+    return current() + ", retargeted every " + this.interval + " blocks";
+  } // toString()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the validator for the current epoch.
+   *
+   * @return that validator.
+   */
+  synchronized LeadingZerosValidator current() {
+    return this.epochs.get(this.epochs.size() - 1);
+  } // current()
+
+  /**
+   * Decide the difficulty of the epoch after the one that ends at the given height. We measure
+   * the average time per block over the last interval blocks (fewer in the first epoch, which
+   * has no earlier block to measure from) and add one bit for each halving of the time we want.
+   *
+   * @param bits The number of bits the ending epoch required.
+   * @param height The height of the last block of the epoch.
+   * @param startTime The time of the block interval blocks before it (or of the initial block).
+   * @param endTime The time of the last block of the epoch.
+   *
+   * @return the number of bits the next epoch requires.
+   */
+  int retarget(int bits, int height, long startTime, long endTime) {
+    int start = Math.max(0, height - this.interval);
+    if (start == height) {
+      return bits;
+    } // if
+    long perBlock = Math.max(1, (endTime - startTime) / (height - start));
+    long step = Math.round(Math.log((double) this.blockNanos / perBlock) / Math.log(2));
+    step = Math.max(-MAX_STEP, Math.min(MAX_STEP, step));
+    return (int) Math.max(0, Math.min(MAX_BITS, bits + step));
+  } // retarget(int, int, long, long)
+} // class RetargetingValidator
@@ -0,0 +1,810 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+/**
+ * A block store kept on disk as a log of records in fixed-size segment files, each mapped into
+ * memory whole. Adding a block appends a record to the log, holding the block in BlockCodec's
+ * format; getting one decodes it straight from the mapping, so reads run at the speed of the
+ * page cache and the chain may be far larger than the heap. The store keeps only the position
+ * of each record in memory (eight bytes a block, in chunks, as ArrayBlockStore keeps blocks).
+ * Reopening a directory rebuilds the store from its segments. Given a checkpoint that records
+ * where the records of a prefix of the blocks are, it reads only the records after them.
+ *
+ * Removing a block that no view can see cuts the log just after the record of the new last
+ * block. Removing one that a view may still read leaves the record in place and logs the removal
+ * after it instead, so that blocks added later go past it and views never change. Once the
+ * owner of leased views releases them (see lease and release), the log is cut back the same way,
+ * dropping the records of removed blocks along with the removals logged after them. Blocks read
+ * through a view from view share their hashes with the mapping; other blocks get copies.
+ *
+ * Records are written to the mapping and reach the disk when the operating system gets to them,
+ * or when the store is flushed or closed, a page at a time and in no particular order. So each
+ * record holds a checksum of its contents, and a full segment ends with a record that sends
+ * readers on to the next one. Reopening the store ends the log at the first record that is
+ * missing, does not match its checksum, or does not fit: a crash loses the records it cut short
+ * and every record after them, whichever segment they reached, but never yields a damaged block
+ * or skips one.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class SegmentedBlockStore implements BlockStore {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The size of a segment file, unless we say otherwise (64 MiB).
+   */
+  public static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+
+  /**
+   * The first four bytes of every segment ("BLKS").
+   */
+  static final int MAGIC = 0x424c4b53;
+
+  /**
+   * The version of the format. Blocks themselves are in BlockCodec's format, whose version is
+   * also in the header.
+   */
+  static final int VERSION = 2;
+
+  /**
+   * The number of bytes at the start of a segment before the first record. The header holds
+   * the magic number, the two versions, and the name of the hash function.
+   */
+  static final int HEADER_SIZE = 32;
+
+  /**
+   * The number of bytes at the start of a record before its contents: the length of the
+   * contents, then their CRC-32C checksum.
+   */
+  static final int RECORD_HEADER = 2 * Integer.BYTES;
+
+  /**
+   * The kind of record that holds a block.
+   */
+  static final byte BLOCK = 1;
+
+  /**
+   * The kind of record that notes the removal of the last block.
+   */
+  static final byte REMOVE = 2;
+
+  /**
+   * The kind of record that ends a full segment, so that the log goes on in the next one.
+   */
+  static final byte NEXT = 3;
+
+  /**
+   * How segment files are named, given their index.
+   */
+  static final String SEGMENT_NAME = "segment-%08d.log";
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The directory that holds the segments.
+   */
+  Path dir;
+
+  /**
+   * The hash function used for every block.
+   */
+  HashFunction function;
+
+  /**
+   * How blocks are written in records.
+   */
+  BlockCodec codec;
+
+  /**
+   * The size of each segment file, in bytes.
+   */
+  int segmentSize;
+
+  /**
+   * The segments, in order. Replaced, not changed, when a segment is added.
+   */
+  Segment[] segments;
+
+  /**
+   * The position of each block's record: the index of its segment in the high 32 bits and its
+   * offset within the segment in the low 32 bits. Chunked as in ArrayBlockStore.
+   */
+  long[][] positions;
+
+  /**
+   * The number of blocks in the store.
+   */
+  int size;
+
+  /**
+   * The largest size of any view we have handed out from view. Records below it may be visible
+   * to a view forever, so they are never overwritten.
+   */
+  int published;
+
+  /**
+   * The largest size of any view we have handed out from lease that has not been released.
+   * Records below it may be visible to a view until it is.
+   */
+  int leased;
+
+  /**
+   * The chunk of positions we have copied since the last view, so that views cannot see it, or
+   * -1.
+   */
+  int copied;
+
+  /**
+   * The segment we are writing to.
+   */
+  int segment;
+
+  /**
+   * Where the next record goes in that segment.
+   */
+  int offset;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Open the store in a directory, with segments of the default size.
+   *
+   * @param dirInput The directory. It is created if need be.
+   * @param functionInput The hash function for a new store.
+   *
+   * @throws IOException if the segments cannot be created or read.
+   */
+  public SegmentedBlockStore(Path dirInput, HashFunction functionInput) throws IOException {
+    this(dirInput, functionInput, DEFAULT_SEGMENT_SIZE);
+  } // SegmentedBlockStore(Path, HashFunction)
+
+  /**
+   * Open the store in a directory, rebuilding it from the segments already there. A store that
+   * already exists keeps the hash function and segment size it was created with.
+   *
+   * @param dirInput The directory. It is created if need be.
+   * @param functionInput The hash function for a new store.
+   * @param segmentSizeInput The size of each segment file for a new store, in bytes.
+   *
+   * @throws IOException if the segments cannot be created or read, or are not a valid log.
+   * @throws IllegalArgumentException if the segment size is too small to hold any record.
+   */
+  public SegmentedBlockStore(Path dirInput, HashFunction functionInput, int segmentSizeInput)
+      throws IOException {
+    this(dirInput, functionInput, segmentSizeInput, null);
+  } // SegmentedBlockStore(Path, HashFunction, int)
+
+  /**
+   * Open the store in a directory, rebuilding it from the segments already there and taking
+   * the positions of a prefix of the blocks from a checkpoint rather than the log. A checkpoint
+   * that does not fit the log (say, because the log changed after it was saved) is ignored.
+   *
+   * @param dirInput The directory. It is created if need be.
+   * @param functionInput The hash function for a new store.
+   * @param segmentSizeInput The size of each segment file for a new store, in bytes.
+   * @param checkpoint The checkpoint, or null for none.
+   *
+   * @throws IOException if the segments cannot be created or read, or are not a valid log.
+   * @throws IllegalArgumentException if the segment size is too small to hold any record.
+   */
+  SegmentedBlockStore(Path dirInput, HashFunction functionInput, int segmentSizeInput,
+      Checkpoint checkpoint) throws IOException {
+    if (segmentSizeInput <= 2 * HEADER_SIZE) {
+      throw new IllegalArgumentException("Segments of " + segmentSizeInput
+          + " bytes are too small.");
+    } // if
+    Files.createDirectories(dirInput);
+    this.dir = dirInput;
+    this.positions = new long[ArrayBlockStore.INITIAL_CHUNKS][];
+    this.size = 0;
+    this.published = 0;
+    this.leased = 0;
+    this.copied = -1;
+    this.segment = 0;
+    this.offset = HEADER_SIZE;
+
+    int count = 0;
+    while (Files.exists(this.segmentPath(count))) {
+      count++;
+    } // while
+    if (count == 0) {
+      this.function = functionInput;
+      this.segmentSize = segmentSizeInput;
+      this.segments = new Segment[] {this.openSegment(0)};
+    } else {
+      this.function = null;
+      this.segmentSize = (int) Files.size(this.segmentPath(0));
+      this.segments = new Segment[count];
+      for (int i = 0; i < count; i++) {
+        this.segments[i] = this.openSegment(i);
+      } // for
+    } // if/else
+    this.codec = new BlockCodec(this.function);
+    if (count > 0) {
+      this.load(checkpoint);
+    } // if
+  } // SegmentedBlockStore(Path, HashFunction, int, Checkpoint)
+
+  /**
+   * Create a store that shares the given segments and positions. Used for views.
+   *
+   * @param segmentsInput The segments.
+   * @param positionsInput The positions of the records.
+   * @param sizeInput The number of blocks.
+   * @param functionInput The hash function used for every block.
+   * @param share Whether blocks read from the store may share the mapping.
+   */
+  SegmentedBlockStore(Segment[] segmentsInput, long[][] positionsInput, int sizeInput,
+      HashFunction functionInput, boolean share) {
+    this.segments = segmentsInput;
+    this.positions = positionsInput;
+    this.size = sizeInput;
+    this.function = functionInput;
+    this.codec = new BlockCodec(functionInput);
+    this.published = share ? Integer.MAX_VALUE : 0;
+    this.copied = -1;
+  } // SegmentedBlockStore(Segment[], long[][], int, HashFunction, boolean)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the hash function used for every block in the store.
+   *
+   * @return the hash function.
+   */
+  public HashFunction getHashFunction() {
+    return this.function;
+  } // getHashFunction()
+
+  /**
+   * Get the number of blocks in the store.
+   *
+   * @return the number of blocks.
+   */
+  @Override
+  public int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Get the block at a given height, reading it from its segment.
+   *
+   * @param height The height of the block, between 0 (inclusive) and size() (exclusive).
+   *
+   * @return the block.
+   *
+   * @throws IndexOutOfBoundsException if height is out of range.
+   */
+  @Override
+  public Block get(int height) {
+    Objects.checkIndex(height, this.size);
+    long position = this.positions[height >>> ArrayBlockStore.CHUNK_BITS]
+        [height & ArrayBlockStore.CHUNK_MASK];
+    // Records below published are never overwritten, so their blocks may share the mapping.
+    return this.read(position, height < this.published);
+  } // get(int)
+
+  /**
+   * Add a block after the current last block, appending its record to the log.
+   *
+   * @param block The block to add.
+   *
+   * @throws IllegalArgumentException if the block's record is too large for a segment.
+   * @throws UncheckedIOException if a new segment cannot be created.
+   */
+  @Override
+  public void add(Block block) {
+    int length = 1 + this.codec.encodedLength(block);
+    long position = this.reserve(length);
+    ByteBuffer buffer = this.segments[(int) (position >>> 32)].buffer;
+    int at = (int) position + RECORD_HEADER;
+    buffer.put(at, BLOCK);
+    this.codec.encode(block, buffer.slice(at + 1, length - 1));
+    this.commit(position, length);
+    this.push(position);
+  } // add(Block)
+
+  /**
+   * Remove the last block, cutting the log back if no view can see its record and logging the
+   * removal otherwise.
+   *
+   * @return the block removed.
+   *
+   * @throws NoSuchElementException if the store is empty.
+   */
+  @Override
+  public Block removeLast() {
+    if (this.size == 0) {
+      throw new NoSuchElementException("The store is empty.");
+    } // if
+    Block removed = this.get(this.size - 1);
+    --this.size;
+    if (Math.max(this.published, this.leased) <= this.size) {
+      this.cut();
+    } else {
+      long marker = this.reserve(1 + Integer.BYTES);
+      ByteBuffer buffer = this.segments[(int) (marker >>> 32)].buffer;
+      buffer.put((int) marker + RECORD_HEADER, REMOVE);
+      buffer.putInt((int) marker + RECORD_HEADER + 1, this.size);
+      this.commit(marker, 1 + Integer.BYTES);
+    } // if/else
+    return removed;
+  } // removeLast()
+
+  /**
+   * Get a read-only view of the blocks as they are now. Its records are never overwritten, so
+   * blocks read through it share their hashes with the mapping.
+   *
+   * @return the view.
+   */
+  @Override
+  public BlockStore view() {
+    this.published = Math.max(this.published, this.size);
+    this.copied = -1;
+    return this.newView(true);
+  } // view()
+
+  /**
+   * Get a read-only view of the blocks as they are now, whose records may be overwritten once
+   * it is released.
+   *
+   * @return the view.
+   */
+  @Override
+  public BlockStore lease() {
+    this.leased = Math.max(this.leased, this.size);
+    this.copied = -1;
+    return this.newView(false);
+  } // lease()
+
+  /**
+   * Note that leased views of more than size blocks will not be read again, and cut the log
+   * back if that leaves no view that can see the records of removed blocks.
+   *
+   * @param size The number of blocks that leased views may still read.
+   */
+  @Override
+  public void release(int size) {
+    this.leased = Math.min(this.leased, size);
+    if (Math.max(this.published, this.leased) <= this.size) {
+      this.cut();
+    } // if
+  } // release(int)
+
+  /**
+   * Get the positions of the records of the first blocks, as a checkpoint records them.
+   *
+   * @param count The number of blocks.
+   *
+   * @return their positions, in order.
+   *
+   * @throws IndexOutOfBoundsException if count is more than the number of blocks.
+   */
+  long[] prefixPositions(int count) {
+    Objects.checkFromToIndex(0, count, this.size);
+    long[] result = new long[count];
+    for (int from = 0; from < count; from += ArrayBlockStore.CHUNK_SIZE) {
+      System.arraycopy(this.positions[from >>> ArrayBlockStore.CHUNK_BITS], 0, result, from,
+          Math.min(ArrayBlockStore.CHUNK_SIZE, count - from));
+    } // for
+    return result;
+  } // prefixPositions(int)
+
+  /**
+   * Write every change to the segments out to the disk.
+   *
+   * @throws IOException if the segments cannot be written.
+   */
+  public void flush() throws IOException {
+    for (Segment seg : this.segments) {
+      seg.buffer.force();
+    } // for
+  } // flush()
+
+  /**
+   * Flush the store and close its segment files. Blocks already read, and views already handed
+   * out, stay readable; the store itself must not be changed again.
+   *
+   * @throws IOException if the segments cannot be written or closed.
+   */
+  @Override
+  public void close() throws IOException {
+    this.flush();
+    for (Segment seg : this.segments) {
+      seg.channel.close();
+    } // for
+  } // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the path of a segment file.
+   *
+   * @param index The index of the segment.
+   *
+   * @return the path.
+   */
+  Path segmentPath(int index) {
+    return this.dir.resolve(String.format(SEGMENT_NAME, index));
+  } // segmentPath(int)
+
+  /**
+   * Open and map a segment file, writing its header if it is new and checking the header if
+   * not. The first existing segment we open sets the hash function.
+   *
+   * @param index The index of the segment.
+   *
+   * @return the segment.
+   *
+   * @throws IOException if the file cannot be opened or its header is wrong.
+   */
+  Segment openSegment(int index) throws IOException {
+    Path path = this.segmentPath(index);
+    boolean fresh = !Files.exists(path);
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    if (!fresh && channel.size() != this.segmentSize) {
+      channel.close();
+      throw new IOException(path + " is not " + this.segmentSize + " bytes long.");
+    } // if
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+    if (fresh) {
+      byte[] name = this.function.name().getBytes(StandardCharsets.US_ASCII);
+      buffer.putInt(0, MAGIC);
+      buffer.putInt(Integer.BYTES, VERSION);
+      buffer.putInt(2 * Integer.BYTES, BlockCodec.VERSION);
+      buffer.put(3 * Integer.BYTES, (byte) name.length);
+      buffer.put(3 * Integer.BYTES + 1, name);
+    } else {
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION
+          || buffer.getInt(2 * Integer.BYTES) != BlockCodec.VERSION) {
+        channel.close();
+        throw new IOException(path + " is not a segment we can read.");
+      } // if
+      byte[] name = new byte[buffer.get(3 * Integer.BYTES)];
+      buffer.get(3 * Integer.BYTES + 1, name);
+      HashFunction stored;
+      try {
+        stored = HashFunction.valueOf(new String(name, StandardCharsets.US_ASCII));
+      } catch (IllegalArgumentException e) {
+        channel.close();
+        throw new IOException(path + " uses an unknown hash function.", e);
+      } // try/catch
+      if (this.function == null) {
+        this.function = stored;
+      } else if (this.function != stored) {
+        channel.close();
+        throw new IOException(path + " uses " + stored + " rather than " + this.function);
+      } // if/else
+    } // if/else
+    return new Segment(channel, buffer);
+  } // openSegment(int)
+
+  /**
+   * Make a view of the blocks as they are now.
+   *
+   * @param share Whether blocks read through the view may share the mapping.
+   *
+   * @return the view.
+   */
+  BlockStore newView(boolean share) {
+    return new SegmentedBlockStore(this.segments, this.positions, this.size, this.function,
+        share) {
+      @Override
+      public void add(Block block) {
+        throw new UnsupportedOperationException("Views are read-only.");
+      } // add(Block)
+
+      @Override
+      public Block removeLast() {
+        throw new UnsupportedOperationException("Views are read-only.");
+      } // removeLast()
+
+      @Override
+      public BlockStore view() {
+        return this;
+      } // view()
+
+      @Override
+      public BlockStore lease() {
+        return this;
+      } // lease()
+
+      @Override
+      public void release(int size) {
+      } // release(int)
+
+      @Override
+      public void flush() {
+      } // flush()
+
+      @Override
+      public void close() {
+      } // close()
+    };
+  } // newView(boolean)
+
+  /**
+   * Rebuild the positions of the blocks by reading the records in the log, in order: those
+   * after the checkpoint's prefix, if the checkpoint fits the log, and every record otherwise.
+   * The log goes on in the next segment only after a record that says so, and ends at the first
+   * zero length or record that fails its checksum. It is then cut back to its last block, so
+   * that whatever lies after the end (in this segment or later ones) is never read again.
+   *
+   * @param checkpoint The checkpoint, or null for none.
+   *
+   * @throws IOException if a record with a good checksum is not one we know.
+   */
+  void load(Checkpoint checkpoint) throws IOException {
+    int seg = 0;
+    int at = HEADER_SIZE;
+    if (checkpoint != null && this.resume(checkpoint)) {
+      seg = this.segment;
+      at = this.offset;
+    } // if
+    while (at + Integer.BYTES <= this.segmentSize) {
+      ByteBuffer buffer = this.segments[seg].buffer;
+      int length = buffer.getInt(at);
+      if (length < 1 || length > this.segmentSize - at - RECORD_HEADER
+          || buffer.getInt(at + Integer.BYTES) != checksum(buffer, at, length)) {
+        // The end of the log, or a record cut short by a crash, so the log ends before it.
+        break;
+      } // if
+      byte kind = buffer.get(at + RECORD_HEADER);
+      if (kind == BLOCK) {
+        this.push(((long) seg << 32) | at);
+      } else if (kind == REMOVE && buffer.getInt(at + RECORD_HEADER + 1) == this.size - 1) {
+        --this.size;
+      } else if (kind == NEXT && seg + 1 < this.segments.length) {
+        seg++;
+        at = HEADER_SIZE;
+        continue;
+      } else if (kind == NEXT) {
+        break;
+      } else {
+        throw new IOException("Bad record in segment " + seg + " at " + at);
+      } // if/else
+      at += RECORD_HEADER + length;
+    } // while
+    this.segment = this.segments.length - 1;
+    this.cut();
+  } // load(Checkpoint)
+
+  /**
+   * Take the positions of a prefix of the blocks from a checkpoint, if they fit the log: they
+   * must be in order and in range, and the last must hold a block with the checkpoint's height
+   * and tip hash. The log then goes on just after that record.
+   *
+   * @param checkpoint The checkpoint.
+   *
+   * @return true if we took the positions and false if the checkpoint does not fit the log.
+   */
+  boolean resume(Checkpoint checkpoint) {
+    long[] known = checkpoint.positions;
+    if (known.length == 0 || known.length != checkpoint.height) {
+      return false;
+    } // if
+    long previous = -1;
+    for (long position : known) {
+      int at = (int) position;
+      if (position <= previous || (position >>> 32) >= this.segments.length
+          || at < HEADER_SIZE || at > this.segmentSize - RECORD_HEADER - 1) {
+        return false;
+      } // if
+      previous = position;
+    } // for
+    int seg = (int) (previous >>> 32);
+    int at = (int) previous;
+    ByteBuffer buffer = this.segments[seg].buffer;
+    int length = buffer.getInt(at);
+    if (length < 1 || length > this.segmentSize - at - RECORD_HEADER
+        || buffer.getInt(at + Integer.BYTES) != checksum(buffer, at, length)
+        || buffer.get(at + RECORD_HEADER) != BLOCK) {
+      return false;
+    } // if
+    try {
+      Block tip = this.read(previous, false);
+      if (tip.getNum() != known.length - 1 || !tip.getHash().equals(checkpoint.tip)) {
+        return false;
+      } // if
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      return false;
+    } // try/catch
+    for (long position : known) {
+      this.push(position);
+    } // for
+    this.segment = seg;
+    this.offset = at + RECORD_HEADER + length;
+    return true;
+  } // resume(Checkpoint)
+
+  /**
+   * Find room for a record at the end of the log, moving on to the next segment (and creating
+   * it, if need be) when the current one is too full. Every segment keeps room for the record
+   * that ends it, which we write just before moving on.
+   *
+   * @param length The length of the contents of the record.
+   *
+   * @return the position of the record.
+   *
+   * @throws IllegalArgumentException if the record would not fit in an empty segment.
+   * @throws UncheckedIOException if a new segment cannot be created.
+   */
+  long reserve(int length) {
+    int total = RECORD_HEADER + length;
+    if (total + RECORD_HEADER + 1 > this.segmentSize - HEADER_SIZE) {
+      throw new IllegalArgumentException("A record of " + total
+          + " bytes does not fit in a segment.");
+    } // if
+    if (total + RECORD_HEADER + 1 > this.segmentSize - this.offset) {
+      if (this.segment + 1 == this.segments.length) {
+        try {
+          Segment[] more = Arrays.copyOf(this.segments, this.segments.length + 1);
+          more[this.segment + 1] = this.openSegment(this.segment + 1);
+          this.segments = more;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        } // try/catch
+      } // if
+      long next = ((long) this.segment << 32) | this.offset;
+      this.segments[this.segment].buffer.put(this.offset + RECORD_HEADER, NEXT);
+      this.commit(next, 1);
+      this.segment++;
+      this.offset = HEADER_SIZE;
+    } // if
+    long position = ((long) this.segment << 32) | this.offset;
+    this.offset += total;
+    return position;
+  } // reserve(int)
+
+  /**
+   * Finish a record whose contents have been written: write their checksum, mark the end of the
+   * log after it, then write its length.
+   *
+   * @param position The position of the record.
+   * @param length The length of the contents of the record.
+   */
+  void commit(long position, int length) {
+    ByteBuffer buffer = this.segments[(int) (position >>> 32)].buffer;
+    int at = (int) position;
+    buffer.putInt(at + Integer.BYTES, checksum(buffer, at, length));
+    int end = at + RECORD_HEADER + length;
+    if (end + Integer.BYTES <= this.segmentSize) {
+      buffer.putInt(end, 0);
+    } // if
+    buffer.putInt(at, length);
+  } // commit(long, int)
+
+  /**
+   * Compute the checksum of the contents of a record.
+   *
+   * @param buffer The segment's buffer.
+   * @param at The offset of the record.
+   * @param length The length of its contents.
+   *
+   * @return the checksum.
+   */
+  static int checksum(ByteBuffer buffer, int at, int length) {
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.slice(at + RECORD_HEADER, length));
+    return (int) crc.getValue();
+  } // checksum(ByteBuffer, int, int)
+
+  /**
+   * Cut the log just after the record of the last block, dropping everything after it: the
+   * records of removed blocks and the removals logged for them. The log up to there holds
+   * exactly the blocks we have now, since it ended there when the last block was added. Call
+   * only when no view can see past the last block. Later segments are emptied, and forced to
+   * the disk, before the new end is written, so that records written after it cannot lead a
+   * reader back into old records there.
+   */
+  void cut() {
+    int seg = 0;
+    int end = HEADER_SIZE;
+    if (this.size > 0) {
+      long position = this.positions[(this.size - 1) >>> ArrayBlockStore.CHUNK_BITS]
+          [(this.size - 1) & ArrayBlockStore.CHUNK_MASK];
+      seg = (int) (position >>> 32);
+      end = (int) position + RECORD_HEADER + this.segments[seg].buffer.getInt((int) position);
+    } // if
+    for (int later = this.segment; later > seg; later--) {
+      this.segments[later].buffer.putInt(HEADER_SIZE, 0);
+      this.segments[later].buffer.force();
+    } // for
+    if (end + Integer.BYTES <= this.segmentSize) {
+      this.segments[seg].buffer.putInt(end, 0);
+    } // if
+    this.segment = seg;
+    this.offset = end;
+  } // cut()
+
+  /**
+   * Remember the position of a new last block.
+   *
+   * @param position The position of its record.
+   */
+  void push(long position) {
+    int chunk = this.size >>> ArrayBlockStore.CHUNK_BITS;
+    if (chunk == this.positions.length) {
+      this.positions = Arrays.copyOf(this.positions, 2 * this.positions.length);
+    } // if
+    if (this.positions[chunk] == null) {
+      this.positions[chunk] = new long[ArrayBlockStore.CHUNK_SIZE];
+    } else if (this.size < Math.max(this.published, this.leased) && chunk != this.copied) {
+      this.positions = this.positions.clone();
+      this.positions[chunk] = this.positions[chunk].clone();
+      this.copied = chunk;
+    } // if/else
+    this.positions[chunk][this.size & ArrayBlockStore.CHUNK_MASK] = position;
+    ++this.size;
+  } // push(long)
+
+  /**
+   * Read the block in a record.
+   *
+   * @param position The position of the record.
+   * @param share Whether the block's hashes may share the mapping rather than copy it.
+   *
+   * @return the block.
+   */
+  Block read(long position, boolean share) {
+    ByteBuffer buffer = this.segments[(int) (position >>> 32)].buffer;
+    int at = (int) position;
+    return this.codec.decode(buffer.slice(at + RECORD_HEADER + 1, buffer.getInt(at) - 1), share);
+  } // read(long, boolean)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * One segment file and its mapping.
+   */
+  static final class Segment {
+    /**
+     * The open file.
+     */
+    final FileChannel channel;
+
+    /**
+     * The whole file, mapped into memory.
+     */
+    final MappedByteBuffer buffer;
+
+    /**
+     * Create a segment.
+     *
+     * @param channelInput The open file.
+     * @param bufferInput The mapping of the file.
+     */
+    Segment(FileChannel channelInput, MappedByteBuffer bufferInput) {
+      this.channel = channelInput;
+      this.buffer = bufferInput;
+    } // Segment(FileChannel, MappedByteBuffer)
+  } // class Segment
+} // class SegmentedBlockStore
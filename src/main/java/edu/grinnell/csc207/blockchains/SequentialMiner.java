@@ -0,0 +1,75 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Random;
+
+/**
+ * A miner that searches on the calling thread, checking consecutive nonces from a random
+ * starting point.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class SequentialMiner implements Miner {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How many nonces we check between progress reports.
+   */
+  static final int CHECK_INTERVAL = 1024;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where we get starting points.
+   */
+  Random rand;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new miner.
+   */
+  public SequentialMiner() {
+    this.rand = new Random();
+  } // SequentialMiner()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Mine a block with the given contents.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param check The validator used to check the block.
+   * @param function The hash function used to hash the block.
+   * @param progress Where to report attempts and check for requests to stop.
+   *
+   * @return a block whose hash is valid, or null if the search was stopped.
+   */
+  @Override
+  public Block mine(int num, Transaction transaction, Hash prevHash, HashValidator check,
+      HashFunction function, MiningProgress progress) {
+    BlockHasher hasher = new BlockHasher(num, transaction, prevHash, function);
+    long nonce = this.rand.nextLong();
+    while (!progress.isStopped()) {
+      for (int i = 0; i < CHECK_INTERVAL; i++) {
+        if (hasher.isValid(nonce, check)) {
+          progress.addAttempts(i + 1);
+          return new Block(num, transaction, prevHash, nonce, function);
+        } // if
+        nonce++;
+      } // for
+      progress.addAttempts(CHECK_INTERVAL);
+    } // while
+    return null;
+  } // mine(int, Transaction, Hash, HashValidator, HashFunction, MiningProgress)
+} // class SequentialMiner
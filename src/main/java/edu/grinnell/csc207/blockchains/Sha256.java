@@ -0,0 +1,146 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * The compression function of SHA-256, as described in FIPS 180-4, in plain Java. Unlike a
+ * MessageDigest, it exposes the hash value between message blocks, which lets miners compress
+ * the unchanging part of a block once and start from that "midstate" for every nonce. Padding
+ * the message is up to the caller (see BlockHasher).
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+class Sha256 {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of bytes in a digest.
+   */
+  static final int DIGEST_BYTES = 32;
+
+  /**
+   * The number of bytes in a message block.
+   */
+  static final int BLOCK_BYTES = 64;
+
+  /**
+   * The number of rounds in the compression function.
+   */
+  static final int ROUNDS = 64;
+
+  /**
+   * The initial hash value.
+   */
+  static final int[] IV = {
+    0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a,
+    0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+  };
+
+  /**
+   * The round constants.
+   */
+  static final int[] K = {
+    0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+    0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+    0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+    0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+    0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+    0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+    0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+    0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+  };
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The current hash value.
+   */
+  int[] state = new int[8];
+
+  /**
+   * The message schedule, kept around so that we need not allocate it for each block.
+   */
+  int[] w = new int[ROUNDS];
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new digest, at the initial hash value.
+   */
+  Sha256() {
+    reset();
+  } // Sha256()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Go back to the initial hash value.
+   */
+  void reset() {
+    System.arraycopy(IV, 0, this.state, 0, IV.length);
+  } // reset()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Run the compression function over one 64-byte message block.
+   *
+   * @param block The array containing the block.
+   * @param offset The index of the first byte of the block.
+   */
+  void compress(byte[] block, int offset) {
+    int[] sched = this.w;
+    for (int t = 0; t < BLOCK_BYTES / Integer.BYTES; t++) {
+      sched[t] = ((block[offset] & 0xff) << 24) | ((block[offset + 1] & 0xff) << 16)
+          | ((block[offset + 2] & 0xff) << 8) | (block[offset + 3] & 0xff);
+      offset += 4;
+    } // for
+    for (int t = BLOCK_BYTES / Integer.BYTES; t < ROUNDS; t++) {
+      int s0 = Integer.rotateRight(sched[t - 15], 7) ^ Integer.rotateRight(sched[t - 15], 18)
+          ^ (sched[t - 15] >>> 3);
+      int s1 = Integer.rotateRight(sched[t - 2], 17) ^ Integer.rotateRight(sched[t - 2], 19)
+          ^ (sched[t - 2] >>> 10);
+      sched[t] = sched[t - 16] + s0 + sched[t - 7] + s1;
+    } // for
+
+    int a = this.state[0];
+    int b = this.state[1];
+    int c = this.state[2];
+    int d = this.state[3];
+    int e = this.state[4];
+    int f = this.state[5];
+    int g = this.state[6];
+    int h = this.state[7];
+    for (int t = 0; t < ROUNDS; t++) {
+      int t1 = h + (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11)
+          ^ Integer.rotateRight(e, 25)) + ((e & f) ^ (~e & g)) + K[t] + sched[t];
+      int t2 = (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13)
+          ^ Integer.rotateRight(a, 22)) + ((a & b) ^ (a & c) ^ (b & c));
+      h = g;
+      g = f;
+      f = e;
+      e = d + t1;
+      d = c;
+      c = b;
+      b = a;
+      a = t1 + t2;
+    } // for
+    this.state[0] += a;
+    this.state[1] += b;
+    this.state[2] += c;
+    this.state[3] += d;
+    this.state[4] += e;
+    this.state[5] += f;
+    this.state[6] += g;
+    this.state[7] += h;
+  } // compress(byte[], int)
+} // class Sha256
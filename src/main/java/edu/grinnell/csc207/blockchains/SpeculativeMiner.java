@@ -0,0 +1,349 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A miner that works ahead. Transactions submitted to it are mined in the background, one at a
+ * time, as the next block of a chain, so that by the time someone asks for the block it is often
+ * ready. Whenever the end of the chain changes, through append or removeLast, the work in
+ * progress is abandoned, earlier results are discarded (they build on the old end), and the
+ * transactions still pending are mined again on the new end.
+ *
+ * Install it with chain.setMiner so that the chain's mine and mineAsync pick up the results.
+ * Blocks for transactions that were never submitted are mined by the underlying miner as usual.
+ * Background work may use a miner of its own, on a low-priority thread, so that it does not hold
+ * up such requests (say, by taking every thread of a parallel miner's pool).
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class SpeculativeMiner implements Miner, ChainListener, AutoCloseable {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How long, in milliseconds, a request waits between checks for a result.
+   */
+  static final long WAIT_MILLIS = 10;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The miner that mines blocks on request.
+   */
+  Miner miner;
+
+  /**
+   * The miner that mines submitted transactions in the background.
+   */
+  Miner background;
+
+  /**
+   * The chain we mine for.
+   */
+  BlockChain chain;
+
+  /**
+   * The thread that mines in the background.
+   */
+  ExecutorService worker;
+
+  /**
+   * The transactions waiting to go into the chain, in the order submitted.
+   */
+  LinkedHashSet<Transaction> pending;
+
+  /**
+   * The blocks we have mined on the current end of the chain.
+   */
+  HashMap<Transaction, Block> ready;
+
+  /**
+   * The number of the next block.
+   */
+  int num;
+
+  /**
+   * The hash of the last block.
+   */
+  Hash prevHash;
+
+  /**
+   * The validator for the next block.
+   */
+  HashValidator check;
+
+  /**
+   * Incremented whenever the end of the chain changes, so that we can tell stale results.
+   */
+  long generation;
+
+  /**
+   * The progress of the block being mined in the background, if any.
+   */
+  MiningProgress current;
+
+  /**
+   * Whether the background thread is busy.
+   */
+  boolean running;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new miner that works ahead on the given chain, using one miner both on request and
+   * in the background.
+   *
+   * @param chainInput The chain to mine for.
+   * @param minerInput The miner that does the work.
+   */
+  public SpeculativeMiner(BlockChain chainInput, Miner minerInput) {
+    this(chainInput, minerInput, minerInput);
+  } // SpeculativeMiner(BlockChain, Miner)
+
+  /**
+   * Create a new miner that works ahead on the given chain.
+   *
+   * @param chainInput The chain to mine for.
+   * @param minerInput The miner for blocks requested but not submitted.
+   * @param backgroundInput The miner for submitted transactions, which runs on a low-priority
+   *   thread.
+   */
+  public SpeculativeMiner(BlockChain chainInput, Miner minerInput, Miner backgroundInput) {
+    this.chain = chainInput;
+    this.miner = minerInput;
+    this.background = backgroundInput;
+    this.worker = Executors.newSingleThreadExecutor((r) -> {
+      Thread t = new Thread(r, "speculative-miner");
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      return t;
+    });
+    this.pending = new LinkedHashSet<Transaction>();
+    this.ready = new HashMap<Transaction, Block>();
+    synchronized (this) {
+      this.refresh();
+    } // synchronized
+    chainInput.addListener(this);
+  } // SpeculativeMiner(BlockChain, Miner, Miner)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Queue a transaction to be mined in the background as the next block.
+   *
+   * @param t The transaction.
+   */
+  public synchronized void submit(Transaction t) {
+    this.pending.add(t);
+    this.startWorker();
+  } // submit(Transaction)
+
+  /**
+   * Stop working on a transaction.
+   *
+   * @param t The transaction.
+   */
+  public synchronized void withdraw(Transaction t) {
+    this.pending.remove(t);
+    this.ready.remove(t);
+  } // withdraw(Transaction)
+
+  /**
+   * Determine if the block for a transaction is ready.
+   *
+   * @param t The transaction.
+   *
+   * @return true if we have mined t as the next block and false otherwise.
+   */
+  public synchronized boolean isReady(Transaction t) {
+    return this.ready.containsKey(t);
+  } // isReady(Transaction)
+
+  /**
+   * Get the number of transactions waiting to go into the chain.
+   *
+   * @return the number of pending transactions.
+   */
+  public synchronized int getPending() {
+    return this.pending.size();
+  } // getPending()
+
+  /**
+   * Mine a block with the given contents. If it is the next block of our chain and we have been
+   * working on its transaction, we use (or wait for) that work.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param check The validator used to check the block.
+   * @param function The hash function used to hash the block.
+   * @param progress Where to report attempts and check for requests to stop.
+   *
+   * @return a block whose hash is valid, or null if the search was stopped.
+   *
+   * @throws IllegalStateException if we are interrupted while waiting.
+   */
+  @Override
+  public Block mine(int num, Transaction transaction, Hash prevHash, HashValidator check,
+      HashFunction function, MiningProgress progress) {
+    synchronized (this) {
+      long gen = this.generation;
+      boolean ours = num == this.num && prevHash.equals(this.prevHash)
+          && function == this.chain.getHashFunction() && this.pending.contains(transaction);
+      try {
+        // Stop waiting if the transaction stops pending, because it was withdrawn or the
+        // background work on it failed; the underlying miner then has a go.
+        while (ours && gen == this.generation && !progress.isStopped()
+            && this.pending.contains(transaction) && !this.ready.containsKey(transaction)) {
+          this.wait(WAIT_MILLIS);
+        } // while
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for a block.", e);
+      } // try/catch
+      Block block = ours ? this.ready.get(transaction) : null;
+      if (block != null && gen == this.generation && check.isValid(block.getHash())) {
+        progress.addAttempts(1);
+        return block;
+      } // if
+      if (progress.isStopped()) {
+        return null;
+      } // if
+    } // synchronized
+    return this.miner.mine(num, transaction, prevHash, check, function, progress);
+  } // mine(int, Transaction, Hash, HashValidator, HashFunction, MiningProgress)
+
+  /**
+   * Note that a block has been added to the chain: its transaction is no longer pending, and
+   * everything else must be mined again on the new end.
+   *
+   * @param chainInput The chain.
+   * @param block The new last block.
+   */
+  @Override
+  public synchronized void blockAppended(BlockChain chainInput, Block block) {
+    this.pending.remove(block.getTransaction());
+    this.refresh();
+  } // blockAppended(BlockChain, Block)
+
+  /**
+   * Note that the last block has been removed from the chain, so everything must be mined
+   * again on the new end.
+   *
+   * @param chainInput The chain.
+   * @param block The block that was removed.
+   */
+  @Override
+  public synchronized void blockRemoved(BlockChain chainInput, Block block) {
+    this.refresh();
+  } // blockRemoved(BlockChain, Block)
+
+  /**
+   * Stop mining in the background and stop listening to the chain.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      this.pending.clear();
+      if (this.current != null) {
+        this.current.stop();
+      } // if
+    } // synchronized
+    this.chain.removeListener(this);
+    this.worker.shutdownNow();
+  } // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Catch up with the end of the chain, abandoning work on the old end. Call only while
+   * synchronized.
+   */
+  void refresh() {
+    ++this.generation;
+    this.num = this.chain.getSize();
+    this.prevHash = this.chain.getHash();
+    this.check = this.chain.getValidator().atHeight(this.num);
+    this.ready.clear();
+    if (this.current != null) {
+      this.current.stop();
+    } // if
+    this.notifyAll();
+    this.startWorker();
+  } // refresh()
+
+  /**
+   * Start the background thread if there is work for it and it is idle. Call only while
+   * synchronized.
+   */
+  void startWorker() {
+    if (!this.running && this.ready.size() < this.pending.size() && !this.worker.isShutdown()) {
+      this.running = true;
+      this.worker.execute(this::work);
+    } // if
+  } // startWorker()
+
+  /**
+   * Mine pending transactions, one after another, until every one is ready.
+   */
+  void work() {
+    while (true) {
+      Transaction t = null;
+      long gen;
+      int blockNum;
+      Hash prev;
+      HashValidator validator;
+      MiningProgress progress;
+      synchronized (this) {
+        for (Transaction candidate : this.pending) {
+          if (!this.ready.containsKey(candidate)) {
+            t = candidate;
+            break;
+          } // if
+        } // for
+        if (t == null) {
+          this.running = false;
+          this.current = null;
+          return;
+        } // if
+        gen = this.generation;
+        blockNum = this.num;
+        prev = this.prevHash;
+        validator = this.check;
+        progress = new MiningProgress();
+        this.current = progress;
+      } // synchronized
+      Block block;
+      try {
+        block = this.background.mine(blockNum, t, prev, validator,
+            this.chain.getHashFunction(), progress);
+      } catch (RuntimeException e) {
+        // Give up on this transaction; whoever asks for it will see the failure themselves.
+        synchronized (this) {
+          this.pending.remove(t);
+          this.notifyAll();
+        } // synchronized
+        continue;
+      } // try/catch
+      synchronized (this) {
+        if (block != null && gen == this.generation && this.pending.contains(t)) {
+          this.ready.put(t, block);
+          this.notifyAll();
+        } // if
+      } // synchronized
+    } // while
+  } // work()
+} // class SpeculativeMiner
@@ -0,0 +1,122 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Arrays;
+
+/**
+ * Validators that accept hashes that, read as unsigned big-endian numbers, are no greater than a
+ * target. Unlike LeadingZerosValidator, the target need not be a power of two, so difficulty can
+ * be tuned finely.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TargetValidator implements HashValidator {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The largest valid hash.
+   */
+  byte[] target;
+
+  /**
+   * The number of leading zero bits in the target, which every valid hash shares.
+   */
+  int zeroBits;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new validator that accepts hashes no greater than the given target.
+   *
+   * @param targetInput The largest valid hash. Only hashes of the same length are valid.
+   *
+   * @throws IllegalArgumentException if targetInput is empty.
+   */
+  public TargetValidator(byte[] targetInput) {
+    if (targetInput.length == 0) {
+      throw new IllegalArgumentException("The target cannot be empty.");
+    } // if
+    this.target = Arrays.copyOf(targetInput, targetInput.length);
+    this.zeroBits = 0;
+    for (byte b : this.target) {
+      if (b != 0) {
+        this.zeroBits += Integer.numberOfLeadingZeros(b & 0xff) - (Integer.SIZE - Byte.SIZE);
+        break;
+      } // if
+      this.zeroBits += Byte.SIZE;
+    } // for
+  } // TargetValidator(byte[])
+
+  /**
+   * Create a new validator that accepts hashes no greater than the given target.
+   *
+   * @param targetInput The largest valid hash.
+   */
+  public TargetValidator(Hash targetInput) {
+    this(targetInput.getBytes());
+  } // TargetValidator(Hash)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine if a hash is no greater than the target.
+   *
+   * @param hash The hash we're checking.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  @Override
+  public boolean isValid(Hash hash) {
+    if (hash.length() != this.target.length) {
+      return false;
+    } // if
+    for (int i = 0; i < this.target.length; i++) {
+      int diff = (hash.get(i) & 0xff) - (this.target[i] & 0xff);
+      if (diff != 0) {
+        return diff < 0;
+      } // if
+    } // for
+    return true;
+  } // isValid(Hash)
+
+  /**
+   * Determine if a hash, given as raw bytes, is no greater than the target.
+   *
+   * @param bytes The array that holds the hash.
+   * @param offset The index of the first byte of the hash.
+   * @param length The number of bytes in the hash.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  @Override
+  public boolean isValid(byte[] bytes, int offset, int length) {
+    return (length == this.target.length)
+        && Arrays.compareUnsigned(bytes, offset, offset + length, this.target, 0, length) <= 0;
+  } // isValid(byte[], int, int)
+
+  /**
+   * Determine how many leading zero bits every valid hash has.
+   *
+   * @return the number of leading zero bits in the target.
+   */
+  @Override
+  public int leadingZeroBits() {
+    return this.zeroBits;
+  } // leadingZeroBits()
+
+  /**
+   * Convert to a string.
+   *
+   * @return a description of the validator.
+   */
+  @Override
+  public String toString() {
+    return "at most " + new Hash(this.target);
+  } // toString()
+} // class TargetValidator
@@ -0,0 +1,270 @@
+package edu.grinnell.csc207.blockchains;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Checks several consecutive nonces at once, running one SHA-256 evaluation per vector lane.
+ * The candidates share everything but the nonce, so we reuse the message layout, midstate, and
+ * precomputed rounds of a scalar BlockHasher and only vectorize the work that follows.
+ *
+ * This is the only class that touches the (incubating) vector API, so nothing else needs the
+ * jdk.incubator.vector module; VectorMiner loads it only when that module is present.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+class VectorHasher {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The shape of the vectors we use.
+   */
+  VectorSpecies<Integer> species;
+
+  /**
+   * The number of nonces we check at once.
+   */
+  int lanes;
+
+  /**
+   * The scalar hasher, for the message layout and for confirming candidates.
+   */
+  BlockHasher scalar;
+
+  /**
+   * The message words for every lane, word-major (all lanes of word 0, then of word 1, ...).
+   */
+  int[] message;
+
+  /**
+   * The message schedule for every lane, word-major.
+   */
+  int[] sched;
+
+  /**
+   * The hash value while we work through the remaining blocks, word-major.
+   */
+  int[] chain;
+
+  /**
+   * The index of the last message word that contains nonce bytes.
+   */
+  int lastNonceWord;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a hasher for blocks with the given contents.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param lanesInput The number of nonces to check at once (4, 8, or 16), or 0 for whatever
+   *   suits this processor best.
+   */
+  VectorHasher(int num, Transaction transaction, Hash prevHash, int lanesInput) {
+    this.species = species(lanesInput);
+    this.lanes = this.species.length();
+    this.scalar = new BlockHasher(num, transaction, prevHash, true);
+    int[] words = this.scalar.words;
+    this.message = new int[words.length * this.lanes];
+    for (int i = 0; i < words.length; i++) {
+      for (int lane = 0; lane < this.lanes; lane++) {
+        this.message[i * this.lanes + lane] = words[i];
+      } // for
+    } // for
+    this.sched = new int[BlockHasher.ROUNDS * this.lanes];
+    this.chain = new int[this.scalar.midstate.length * this.lanes];
+    this.lastNonceWord = (this.scalar.nonceOffset + Long.BYTES - 1) / Integer.BYTES;
+  } // VectorHasher(int, Transaction, Hash, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Check the nonces first, first + 1, ..., first + lanes - 1.
+   *
+   * @param first The first nonce to check.
+   * @param check The validator, which must require some leading zero bits.
+   *
+   * @return the offset from first of a valid nonce, or -1 if none is valid.
+   */
+  int search(long first, HashValidator check) {
+    // Patch each lane's nonce into its message words.
+    BlockHasher s = this.scalar;
+    for (int lane = 0; lane < this.lanes; lane++) {
+      long nonce = first + lane;
+      BlockHasher.putInt(s.tail, s.nonceOffset, (int) (nonce >>> Integer.SIZE));
+      BlockHasher.putInt(s.tail, s.nonceOffset + Integer.BYTES, (int) nonce);
+      for (int i = s.firstRound; i <= this.lastNonceWord; i++) {
+        this.message[i * this.lanes + lane] = BlockHasher.getInt(s.tail, i * Integer.BYTES);
+      } // for
+    } // for
+
+    for (int i = 0; i < s.midstate.length; i++) {
+      IntVector.broadcast(this.species, s.midstate[i]).intoArray(this.chain, i * this.lanes);
+    } // for
+    int[] start = s.preRounds;
+    int from = s.firstRound;
+    int blocks = s.words.length / BlockHasher.BLOCK_WORDS;
+    IntVector a = null;
+    for (int block = 0; block < blocks; block++) {
+      schedule(block * BlockHasher.BLOCK_WORDS);
+      a = rounds(start, from, block == blocks - 1);
+      start = null;
+      from = 0;
+    } // for
+
+    // Check the first word of each lane's hash.
+    int zeroBits = Math.min(check.leadingZeroBits(), Integer.SIZE);
+    int mask = (int) (-1L << (Integer.SIZE - zeroBits));
+    IntVector first0 = IntVector.fromArray(this.species, this.chain, 0).add(a);
+    VectorMask<Integer> hits = first0.and(mask).compare(VectorOperators.EQ, 0);
+    if (!hits.anyTrue()) {
+      return -1;
+    } // if
+    for (int lane = 0; lane < this.lanes; lane++) {
+      if (hits.laneIsSet(lane) && s.isValid(first + lane, check)) {
+        return lane;
+      } // if
+    } // for
+    return -1;
+  } // search(long, HashValidator)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Pick the vector shape for a number of lanes.
+   *
+   * @param lanes 4, 8, or 16, or 0 for the preferred shape.
+   *
+   * @return the species.
+   *
+   * @throws IllegalArgumentException if lanes is not one of those.
+   */
+  static VectorSpecies<Integer> species(int lanes) {
+    switch (lanes) {
+      case 0:
+        return IntVector.SPECIES_PREFERRED;
+      case 4:
+        return IntVector.SPECIES_128;
+      case 8:
+        return IntVector.SPECIES_256;
+      case 16:
+        return IntVector.SPECIES_512;
+      default:
+        throw new IllegalArgumentException("Cannot check " + lanes + " nonces at once.");
+    } // switch
+  } // species(int)
+
+  /**
+   * Fill in the message schedule of every lane for one message block.
+   *
+   * @param offset The index of the first word of the block.
+   */
+  void schedule(int offset) {
+    int n = this.lanes;
+    int[] w = this.sched;
+    System.arraycopy(this.message, offset * n, w, 0, BlockHasher.BLOCK_WORDS * n);
+    for (int t = BlockHasher.BLOCK_WORDS; t < BlockHasher.ROUNDS; t++) {
+      IntVector w15 = IntVector.fromArray(this.species, w, (t - 15) * n);
+      IntVector w2 = IntVector.fromArray(this.species, w, (t - 2) * n);
+      IntVector s0 = w15.lanewise(VectorOperators.ROR, 7)
+          .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.ROR, 18))
+          .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.LSHR, 3));
+      IntVector s1 = w2.lanewise(VectorOperators.ROR, 17)
+          .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.ROR, 19))
+          .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.LSHR, 10));
+      IntVector.fromArray(this.species, w, (t - 16) * n)
+          .add(IntVector.fromArray(this.species, w, (t - 7) * n))
+          .add(s0).add(s1)
+          .intoArray(w, t * n);
+    } // for
+  } // schedule(int)
+
+  /**
+   * Run the compression function over one message block in every lane, adding the result into
+   * the hash value unless this is the last block.
+   *
+   * @param start The working variables to start from (the same in every lane), or null to start
+   *   from the hash value.
+   * @param from The first round to run.
+   * @param last Whether this is the last block.
+   *
+   * @return the final value of working variable a, which the caller needs to finish the first
+   *   word of the hash of the last block.
+   */
+  IntVector rounds(int[] start, int from, boolean last) {
+    int n = this.lanes;
+    VectorSpecies<Integer> sp = this.species;
+    IntVector a;
+    IntVector b;
+    IntVector c;
+    IntVector d;
+    IntVector e;
+    IntVector f;
+    IntVector g;
+    IntVector h;
+    if (start != null) {
+      a = IntVector.broadcast(sp, start[0]);
+      b = IntVector.broadcast(sp, start[1]);
+      c = IntVector.broadcast(sp, start[2]);
+      d = IntVector.broadcast(sp, start[3]);
+      e = IntVector.broadcast(sp, start[4]);
+      f = IntVector.broadcast(sp, start[5]);
+      g = IntVector.broadcast(sp, start[6]);
+      h = IntVector.broadcast(sp, start[7]);
+    } else {
+      a = IntVector.fromArray(sp, this.chain, 0);
+      b = IntVector.fromArray(sp, this.chain, n);
+      c = IntVector.fromArray(sp, this.chain, 2 * n);
+      d = IntVector.fromArray(sp, this.chain, 3 * n);
+      e = IntVector.fromArray(sp, this.chain, 4 * n);
+      f = IntVector.fromArray(sp, this.chain, 5 * n);
+      g = IntVector.fromArray(sp, this.chain, 6 * n);
+      h = IntVector.fromArray(sp, this.chain, 7 * n);
+    } // if/else
+    for (int t = from; t < BlockHasher.ROUNDS; t++) {
+      IntVector s1 = e.lanewise(VectorOperators.ROR, 6)
+          .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 11))
+          .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 25));
+      IntVector ch = g.lanewise(VectorOperators.XOR,
+          e.and(f.lanewise(VectorOperators.XOR, g)));
+      IntVector t1 = h.add(s1).add(ch).add(Sha256.K[t])
+          .add(IntVector.fromArray(sp, this.sched, t * n));
+      IntVector s0 = a.lanewise(VectorOperators.ROR, 2)
+          .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 13))
+          .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 22));
+      IntVector maj = a.and(b).or(c.and(a.or(b)));
+      h = g;
+      g = f;
+      f = e;
+      e = d.add(t1);
+      d = c;
+      c = b;
+      b = a;
+      a = t1.add(s0).add(maj);
+    } // for
+    if (!last) {
+      IntVector.fromArray(sp, this.chain, 0).add(a).intoArray(this.chain, 0);
+      IntVector.fromArray(sp, this.chain, n).add(b).intoArray(this.chain, n);
+      IntVector.fromArray(sp, this.chain, 2 * n).add(c).intoArray(this.chain, 2 * n);
+      IntVector.fromArray(sp, this.chain, 3 * n).add(d).intoArray(this.chain, 3 * n);
+      IntVector.fromArray(sp, this.chain, 4 * n).add(e).intoArray(this.chain, 4 * n);
+      IntVector.fromArray(sp, this.chain, 5 * n).add(f).intoArray(this.chain, 5 * n);
+      IntVector.fromArray(sp, this.chain, 6 * n).add(g).intoArray(this.chain, 6 * n);
+      IntVector.fromArray(sp, this.chain, 7 * n).add(h).intoArray(this.chain, 7 * n);
+    } // if
+    return a;
+  } // rounds(int[], int, boolean)
+} // class VectorHasher
@@ -0,0 +1,148 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Random;
+
+/**
+ * A miner that checks 4, 8, or 16 nonces per pass, one per vector lane, using the incubating
+ * vector API. The JVM must be started with --add-modules jdk.incubator.vector for that; without
+ * it (or for validators that don't ask for leading zeros, which leave nothing to vectorize, or
+ * for hash functions other than SHA-256), the miner quietly falls back to the scalar
+ * SequentialMiner. The default build leaves this class out; build it with {@code mvn -Pvector}.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class VectorMiner implements Miner {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How many passes we make between progress reports.
+   */
+  static final int CHECK_INTERVAL = 256;
+
+  /**
+   * Whether the vector API is usable in this JVM.
+   */
+  static final boolean AVAILABLE = detect();
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of nonces to check per pass, or 0 for the processor's preferred number.
+   */
+  int lanes;
+
+  /**
+   * The miner we use when we cannot vectorize.
+   */
+  Miner fallback;
+
+  /**
+   * Where we get starting points.
+   */
+  Random rand;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new miner that checks the given number of nonces per pass.
+   *
+   * @param lanesInput 4, 8, or 16.
+   *
+   * @throws IllegalArgumentException if lanesInput is not one of those.
+   */
+  public VectorMiner(int lanesInput) {
+    if (lanesInput != 4 && lanesInput != 8 && lanesInput != 16 && lanesInput != 0) {
+      throw new IllegalArgumentException("Cannot check " + lanesInput + " nonces at once.");
+    } // if
+    this.lanes = lanesInput;
+    this.fallback = new SequentialMiner();
+    this.rand = new Random();
+  } // VectorMiner(int)
+
+  /**
+   * Create a new miner that checks as many nonces per pass as suits this processor.
+   */
+  public VectorMiner() {
+    this(0);
+  } // VectorMiner()
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Determine if vector mining is possible in this JVM.
+   *
+   * @return true if the vector API is available and false otherwise.
+   */
+  public static boolean isAvailable() {
+    return AVAILABLE;
+  } // isAvailable()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Mine a block with the given contents.
+   *
+   * @param num The number of the block.
+   * @param transaction The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param check The validator used to check the block.
+   * @param function The hash function used to hash the block.
+   * @param progress Where to report attempts and check for requests to stop.
+   *
+   * @return a block whose hash is valid, or null if the search was stopped.
+   */
+  @Override
+  public Block mine(int num, Transaction transaction, Hash prevHash, HashValidator check,
+      HashFunction function, MiningProgress progress) {
+    if (!AVAILABLE || check.leadingZeroBits() == 0 || function != HashFunction.SHA_256) {
+      return this.fallback.mine(num, transaction, prevHash, check, function, progress);
+    } // if
+    VectorHasher hasher = new VectorHasher(num, transaction, prevHash, this.lanes);
+    int width = hasher.lanes;
+    long nonce = this.rand.nextLong();
+    while (!progress.isStopped()) {
+      for (int i = 0; i < CHECK_INTERVAL; i++) {
+        int lane = hasher.search(nonce, check);
+        if (lane >= 0) {
+          progress.addAttempts((long) i * width + lane + 1);
+          return new Block(num, transaction, prevHash, nonce + lane, function);
+        } // if
+        nonce += width;
+      } // for
+      progress.addAttempts((long) CHECK_INTERVAL * width);
+    } // while
+    return null;
+  } // mine(int, Transaction, Hash, HashValidator, HashFunction, MiningProgress)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Determine if the vector module is present and our vector hasher loads.
+   *
+   * @return true if we can mine with vectors and false otherwise.
+   */
+  static boolean detect() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+      return false;
+    } // if
+    try {
+      new VectorHasher(0, new Transaction("", "", 0), new Hash(new byte[] {}), 0);
+      return true;
+    } catch (LinkageError e) {
+      return false;
+    } // try/catch
+  } // detect()
+} // class VectorMiner
@@ -1,14 +1,28 @@
 package edu.grinnell.csc207.main;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.util.Iterator;
+import java.util.List;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import edu.grinnell.csc207.blockchains.Block;
 import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.CachingMiner;
 import edu.grinnell.csc207.blockchains.Hash;
+import edu.grinnell.csc207.blockchains.HashFunction;
 import edu.grinnell.csc207.blockchains.HashValidator;
+import edu.grinnell.csc207.blockchains.MiningJob;
+import edu.grinnell.csc207.blockchains.ParallelMiner;
+import edu.grinnell.csc207.blockchains.RetargetingValidator;
+import edu.grinnell.csc207.blockchains.SequentialMiner;
+import edu.grinnell.csc207.blockchains.SpeculativeMiner;
 import edu.grinnell.csc207.blockchains.Transaction;
 import edu.grinnell.csc207.util.IOUtils;
 
@@ -25,10 +39,36 @@ public class BlockChainUI {
   // +-----------+
 
   /**
-   * The number of bytes we validate. Should be set to 3 before submitting.
+   * The number of bytes we validate at first. The difficulty then adjusts itself, so this only
+   * matters for the first few blocks.
    */
   static final int VALIDATOR_BYTES = 0;
 
+  /**
+   * The number of seconds we want mining a block to take.
+   */
+  static final int BLOCK_SECONDS = 5;
+
+  /**
+   * The number of blocks between adjustments to the difficulty.
+   */
+  static final int RETARGET_INTERVAL = 2;
+
+  /**
+   * The file in which we remember the nonces we have mined between runs.
+   */
+  static final String NONCE_CACHE = "nonces.dat";
+
+  /**
+   * The directory in which we keep the chain between runs.
+   */
+  static final String CHAIN_DIR = "chain";
+
+  /**
+   * The number of transactions we fetch at a time when printing a user's history.
+   */
+  static final int HISTORY_PAGE = 20;
+
   // +---------+-----------------------------------------------------
   // | Helpers |
   // +---------+
@@ -41,12 +81,18 @@ public class BlockChainUI {
   public static void instructions(PrintWriter pen) {
     pen.println("""
         Valid commands:
-          mine: discovers the nonce for a given transaction
+          queue: starts working ahead on a transaction you plan to mine
+          mine: starts discovering the nonce for a given transaction in the background
+          status: reports on the progress of mining
+          collect: waits for mining to finish and prints the nonce
+          cancel: stops mining
           append: appends a new block onto the end of the chain
           remove: removes the last block from the end of the chain
           check: checks that the block chain is valid
+          audit: checks the balances against the blocks in the background
           users: prints a list of users
           balance: finds a user's balance
+          history: prints the transactions that involve a user
           transactions: prints out the chain of transactions
           blocks: prints out the chain of blocks (for debugging only)
           help: prints this list of commands
@@ -68,18 +114,29 @@ public class BlockChainUI {
     BufferedReader eyes = new BufferedReader(new InputStreamReader(System.in));
 
     // Set up our blockchain.
-    HashValidator validator = (h) -> {
-      if (h.length() < VALIDATOR_BYTES) {
-        return false;
-      } // if
-      for (int v = 0; v < VALIDATOR_BYTES; v++) {
-        if (h.get(v) != 0) {
-          return false;
-        } // if
-      } // for
-      return true;
-    };
-    BlockChain chain = new BlockChain(validator);
+    HashValidator validator = new RetargetingValidator(VALIDATOR_BYTES * Byte.SIZE,
+        BLOCK_SECONDS, TimeUnit.SECONDS, RETARGET_INTERVAL);
+    Map<HashFunction, Double> rates = HashFunction.benchmark();
+    HashFunction function = HashFunction.fastest(rates);
+    for (Map.Entry<HashFunction, Double> rate : rates.entrySet()) {
+      pen.printf("%-12s %,12.0f hashes/s%n", rate.getKey(), rate.getValue());
+    } // for
+    pen.println("Using " + function + ", the fastest on this machine.\n");
+    CachingMiner miner = new CachingMiner(new ParallelMiner());
+    try {
+      miner.load(Path.of(NONCE_CACHE));
+    } catch (IOException e) {
+      pen.println("Could not load remembered nonces: " + e.getMessage());
+    } // try/catch
+    BlockChain chain = BlockChain.open(Path.of(CHAIN_DIR), validator, miner, function);
+    if (chain.getSize() > 1) {
+      pen.println("Loaded " + chain.getSize() + " blocks (using " + chain.getHashFunction()
+          + ") from " + CHAIN_DIR + ".\n");
+    } // if
+    chain.setParallelCheck(true);
+    // Mine ahead on one thread of its own, leaving the parallel miner's pool to requests.
+    SpeculativeMiner speculator = new SpeculativeMiner(chain, miner, new SequentialMiner());
+    chain.setMiner(speculator);
 
     instructions(pen);
 
@@ -89,9 +146,11 @@ public class BlockChainUI {
     String target = "";
     String user = "";
     int amount = 0;
-    int mineCount = 1;
+    int mineCount = chain.getSize();
+    MiningJob job = null;
+    // A placeholder until something is mined; built from a nonce, so it costs no mining.
     Block minedBlock = new Block(chain.getSize(), new Transaction(source, target, amount),
-        new Hash(new byte[] {}), validator);
+        new Hash(new byte[] {}), 0, chain.getHashFunction());
 
     while (!done) {
       pen.print("\nCommand: ");
@@ -107,7 +166,7 @@ public class BlockChainUI {
           target = IOUtils.readLine(pen, eyes, "Target: ");
           amount = IOUtils.readInt(pen, eyes, "Amount: ");
           Block toAppend = new Block(chain.getSize(), new Transaction(source, target, amount),
-              chain.getHash(), minedBlock.getNonce());
+              chain.getHash(), minedBlock.getNonce(), chain.getHashFunction());
           pen.println("Nonce: " + toAppend.getNonce());
 
           if (!(mineCount == chain.getSize() + 1)
@@ -128,6 +187,21 @@ public class BlockChainUI {
           } // if/else
           break;
 
+        case "history":
+          user = IOUtils.readLine(pen, eyes, "User: ");
+          int from = 0;
+          List<Block> page;
+          do {
+            page = chain.history(user, from, HISTORY_PAGE);
+            for (Block block : page) {
+              pen.println(block.getNum() + ": " + block.getTransaction());
+            } // for
+            if (!page.isEmpty()) {
+              from = page.get(page.size() - 1).getNum() + 1;
+            } // if
+          } while (page.size() == HISTORY_PAGE);
+          break;
+
         case "blocks":
           Iterator<Block> iter = chain.blocks();
           while (iter.hasNext()) {
@@ -144,20 +218,93 @@ public class BlockChainUI {
           } // try/catch
           break;
 
+        case "audit":
+          chain.auditLedger().thenAccept((agrees) -> pen.println(agrees
+              ? "\nAudit: the balances agree with the blocks."
+              : "\nAudit: the balances DO NOT agree with the blocks."));
+          pen.println("Auditing in the background.");
+          break;
+
         case "help":
           instructions(pen);
           break;
 
         case "mine":
+          if (job != null && !job.isDone()) {
+            pen.println("Already mining; collect or cancel that block first.");
+            break;
+          } // if
+          source = IOUtils.readLine(pen, eyes, "Source (return for deposit): ");
+          target = IOUtils.readLine(pen, eyes, "Target: ");
+          amount = IOUtils.readInt(pen, eyes, "Amount: ");
+          job = chain.mineAsync(new Transaction(source, target, amount));
+          pen.println("Mining in the background. Use 'collect' to get the nonce.");
+          break;
+
+        case "queue":
           source = IOUtils.readLine(pen, eyes, "Source (return for deposit): ");
           target = IOUtils.readLine(pen, eyes, "Target: ");
           amount = IOUtils.readInt(pen, eyes, "Amount: ");
-          minedBlock = chain.mine(new Transaction(source, target, amount));
-          pen.println("\nUse nonce: " + minedBlock.getNonce());
-          mineCount++;
+          speculator.submit(new Transaction(source, target, amount));
+          pen.println("Queued; " + speculator.getPending() + " transaction(s) pending.");
+          break;
+
+        case "status":
+          if (job == null) {
+            pen.println("Not mining.");
+          } else {
+            pen.printf("%s after %d attempts in %d ms (%.0f hashes/s)\n",
+                job.isDone() ? "Done" : "Still mining", job.getAttempts(),
+                job.getElapsed(TimeUnit.MILLISECONDS), job.getHashesPerSecond());
+          } // if/else
+          pen.printf("Remembered nonces: %d hits, %d misses\n", miner.getHits(),
+              miner.getMisses());
+          break;
+
+        case "collect":
+          if (job == null) {
+            pen.println("Not mining.");
+            break;
+          } // if
+          try {
+            minedBlock = job.get();
+            pen.println("\nUse nonce: " + minedBlock.getNonce());
+            mineCount++;
+          } catch (CancellationException e) {
+            pen.println("Mining was cancelled.");
+          } catch (ExecutionException e) {
+            pen.println("Mining failed: " + e.getCause().getMessage());
+          } // try/catch
+          job = null;
+          break;
+
+        case "cancel":
+          if (job == null || !job.cancel(true)) {
+            pen.println("Not mining.");
+          } else {
+            pen.println("Cancelled.");
+          } // if/else
+          job = null;
           break;
 
         case "quit":
+          try {
+            miner.save(Path.of(NONCE_CACHE));
+          } catch (IOException e) {
+            pen.println("Could not save remembered nonces: " + e.getMessage());
+          } // try/catch
+          speculator.close();
+          try {
+            // Verify the new blocks, so the checkpoint saved on closing covers them.
+            chain.check();
+          } catch (Exception e) {
+            pen.println("Not checkpointing the unverified blocks: " + e.getMessage());
+          } // try/catch
+          try {
+            chain.close();
+          } catch (IOException e) {
+            pen.println("Could not save the chain: " + e.getMessage());
+          } // try/catch
           done = true;
           break;
 
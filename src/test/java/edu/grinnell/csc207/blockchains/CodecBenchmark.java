@@ -0,0 +1,77 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+
+/**
+ * Measure how many blocks a second the binary format can encode and decode, in a direct buffer
+ * like the mapped segments of SegmentedBlockStore. Not a unit test; run it with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=edu.grinnell.csc207.blockchains.CodecBenchmark -Dexec.args="100000"
+ * </pre>
+ *
+ * where the argument is the number of blocks in each round.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class CodecBenchmark {
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  /**
+   * Run the benchmark.
+   *
+   * @param args The number of blocks in each round (optional).
+   */
+  public static void main(String[] args) {
+    PrintWriter pen = new PrintWriter(System.out, true);
+    int count = (args.length > 0) ? Integer.parseInt(args[0]) : 100_000;
+    BlockCodec codec = new BlockCodec(HashFunction.SHA_256);
+    Block[] blocks = new Block[count];
+    Hash prevHash = new Hash(new byte[] {});
+    for (int i = 0; i < count; i++) {
+      Transaction t = (i % 2 == 0) ? new Transaction("", "user" + (i % 1000), i % 500)
+          : new Transaction("user" + (i % 1000), "user" + ((i + 1) % 1000), i % 50);
+      blocks[i] = new Block(i, t, prevHash, (long) i * 0x9E3779B97F4A7C15L);
+      prevHash = blocks[i].getHash();
+    } // for
+
+    long bytes = 0;
+    long chars = 0;
+    for (Block block : blocks) {
+      bytes += codec.encodedLength(block);
+      chars += block.toString().length();
+    } // for
+    pen.printf("%.1f bytes a block (toString: %.1f characters)%n", (double) bytes / count,
+        (double) chars / count);
+
+    ByteBuffer buffer = ByteBuffer.allocateDirect((int) bytes);
+    for (int round = 0; round < 5; round++) {
+      buffer.clear();
+      long start = System.nanoTime();
+      for (Block block : blocks) {
+        codec.encode(block, buffer);
+      } // for
+      long encoded = System.nanoTime();
+      buffer.flip();
+      long check = 0;
+      for (int i = 0; i < count; i++) {
+        check += codec.decode(buffer).getNum();
+      } // for
+      long decoded = System.nanoTime();
+      buffer.flip();
+      for (int i = 0; i < count; i++) {
+        check += codec.decode(buffer, true).getNum();
+      } // for
+      long shared = System.nanoTime();
+      pen.printf("round %d: encode %,.0f blocks/s, decode %,.0f blocks/s, "
+          + "decode sharing hashes %,.0f blocks/s (%d)%n", round,
+          count * 1e9 / (encoded - start), count * 1e9 / (decoded - encoded),
+          count * 1e9 / (shared - decoded), check);
+    } // for
+  } // main(String[])
+} // class CodecBenchmark
@@ -0,0 +1,147 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Random;
+
+/**
+ * Compare the block hasher's two engines (the specialized SHA-256 kernel and the reused platform
+ * digest) against the original mining loop, which hashed each random candidate with a fresh set
+ * of byte arrays and wrapped it in a new Hash. Not a unit test; run it with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=edu.grinnell.csc207.blockchains.MiningBenchmark -Dexec.args="3"
+ * </pre>
+ *
+ * where the argument is the number of blocks to mine at each difficulty.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class MiningBenchmark {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Mine the way the Block constructor originally did.
+   *
+   * @param num The number of the block.
+   * @param t The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param check The validator.
+   * @param rand Where we get nonces.
+   *
+   * @return the number of attempts.
+   */
+  static long digestLoop(int num, Transaction t, Hash prevHash, HashValidator check, Random rand)
+      throws Exception {
+    MessageDigest md = MessageDigest.getInstance("sha-256");
+    long attempts = 0;
+    boolean found = false;
+    while (!found) {
+      long nonce = rand.nextLong();
+      md.reset();
+      md.update(ByteBuffer.allocate(Integer.BYTES).putInt(num).array());
+      md.update(t.getSource().getBytes());
+      md.update(t.getTarget().getBytes());
+      md.update(ByteBuffer.allocate(Integer.BYTES).putInt(t.getAmount()).array());
+      md.update(prevHash.getBytes());
+      md.update(ByteBuffer.allocate(Long.BYTES).putLong(nonce).array());
+      found = check.isValid(new Hash(md.digest()));
+      ++attempts;
+    } // while
+    return attempts;
+  } // digestLoop(int, Transaction, Hash, HashValidator, Random)
+
+  /**
+   * Mine with a block hasher.
+   *
+   * @param num The number of the block.
+   * @param t The transaction for the block.
+   * @param prevHash The hash of the previous block.
+   * @param check The validator.
+   * @param rand Where we get nonces.
+   * @param kernel Whether to use the specialized compression function.
+   *
+   * @return the number of attempts.
+   */
+  static long hasherLoop(int num, Transaction t, Hash prevHash, HashValidator check,
+      Random rand, boolean kernel) {
+    BlockHasher hasher = new BlockHasher(num, t, prevHash, kernel);
+    long nonce = rand.nextLong();
+    long attempts = 1;
+    while (!hasher.isValid(nonce++, check)) {
+      ++attempts;
+    } // while
+    return attempts;
+  } // hasherLoop(int, Transaction, Hash, HashValidator, Random, boolean)
+
+  /**
+   * Report a rate.
+   *
+   * @param pen Where to report.
+   * @param label What we measured.
+   * @param blocks The number of blocks mined.
+   * @param attempts The number of attempts.
+   * @param nanos The time taken.
+   *
+   * @return the attempts per second.
+   */
+  static double report(PrintWriter pen, String label, int blocks, long attempts, long nanos) {
+    double rate = attempts * 1e9 / nanos;
+    pen.printf("  %-10s %12.0f hashes/s %10.1f ms/block%n", label, rate,
+        nanos / 1e6 / blocks);
+    return rate;
+  } // report(PrintWriter, String, int, long, long)
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  /**
+   * Run the benchmark.
+   *
+   * @param args The number of blocks to mine at each difficulty (default 3).
+   */
+  public static void main(String[] args) throws Exception {
+    PrintWriter pen = new PrintWriter(System.out, true);
+    pen.println("Default engine: " + (BlockHasher.useKernel() ? "kernel" : "digest"));
+    int blocks = (args.length > 0) ? Integer.parseInt(args[0]) : 3;
+    Transaction t = new Transaction("Benchmarker", "Somebody Else", 207);
+    Hash prevHash = new Hash(new byte[Sha256.DIGEST_BYTES]);
+    Random rand = new Random(207);
+
+    // Warm up both loops.
+    for (int i = 0; i < 200; i++) {
+      digestLoop(i, t, prevHash, new LeadingZerosValidator(8), rand);
+      hasherLoop(i, t, prevHash, new LeadingZerosValidator(8), rand, true);
+      hasherLoop(i, t, prevHash, new LeadingZerosValidator(8), rand, false);
+    } // for
+
+    for (int zeroBytes = 1; zeroBytes <= 3; zeroBytes++) {
+      HashValidator check = new LeadingZerosValidator(zeroBytes * Byte.SIZE);
+      pen.printf("%d zero byte(s), %d blocks%n", zeroBytes, blocks);
+
+      long attempts = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < blocks; i++) {
+        attempts += digestLoop(i, t, prevHash, check, rand);
+      } // for
+      double before = report(pen, "original", blocks, attempts, System.nanoTime() - start);
+
+      for (boolean kernel : new boolean[] {true, false}) {
+        attempts = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < blocks; i++) {
+          attempts += hasherLoop(i, t, prevHash, check, rand, kernel);
+        } // for
+        double after = report(pen, kernel ? "kernel" : "digest", blocks, attempts,
+            System.nanoTime() - start);
+        pen.printf("  speedup    %12.2fx%n", after / before);
+      } // for
+    } // for
+  } // main(String[])
+} // class MiningBenchmark
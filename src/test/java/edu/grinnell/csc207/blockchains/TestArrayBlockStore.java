@@ -0,0 +1,98 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests of the array-backed block store.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestArrayBlockStore {
+  /**
+   * Make a block without mining it.
+   */
+  static Block block(int num) {
+    return new Block(num, new Transaction("", "A", num), new Hash(new byte[] {}), num);
+  } // block(int)
+
+  /**
+   * Blocks come back by height, across several chunks.
+   */
+  @Test
+  public void testAddAndGet() {
+    ArrayBlockStore store = new ArrayBlockStore();
+    int count = 5 * ArrayBlockStore.CHUNK_SIZE + 3;
+    Block[] blocks = new Block[count];
+    for (int i = 0; i < count; i++) {
+      blocks[i] = block(i);
+      store.add(blocks[i]);
+    } // for
+    assertEquals(count, store.size(), "size after adding");
+    for (int i = 0; i < count; i++) {
+      assertSame(blocks[i], store.get(i), "block " + i);
+    } // for
+    assertSame(blocks[count - 1], store.getLast(), "last block");
+    assertThrows(IndexOutOfBoundsException.class, () -> store.get(count),
+        "no block past the end");
+    assertThrows(IndexOutOfBoundsException.class, () -> store.get(-1),
+        "no block before the start");
+  } // testAddAndGet()
+
+  /**
+   * Removing across a chunk boundary and adding again works.
+   */
+  @Test
+  public void testRemoveLast() {
+    ArrayBlockStore store = new ArrayBlockStore();
+    int count = ArrayBlockStore.CHUNK_SIZE + 1;
+    for (int i = 0; i < count; i++) {
+      store.add(block(i));
+    } // for
+    assertEquals(count - 1, store.removeLast().getNum(), "removed the last block");
+    assertEquals(count - 2, store.removeLast().getNum(), "removed across the boundary");
+    assertEquals(count - 2, store.size(), "size after removing");
+    Block again = block(count - 2);
+    store.add(again);
+    assertSame(again, store.getLast(), "added after removing");
+    assertThrows(IndexOutOfBoundsException.class, () -> store.get(count - 1),
+        "removed slots are gone");
+    while (store.size() > 0) {
+      store.removeLast();
+    } // while
+    assertThrows(NoSuchElementException.class, () -> store.removeLast(),
+        "cannot remove from an empty store");
+  } // testRemoveLast()
+
+  /**
+   * Views keep the blocks they had, even when the store removes and replaces them.
+   */
+  @Test
+  public void testView() {
+    ArrayBlockStore store = new ArrayBlockStore();
+    for (int i = 0; i < 10; i++) {
+      store.add(block(i));
+    } // for
+    BlockStore view = store.view();
+    Block old = store.get(9);
+    store.removeLast();
+    store.removeLast();
+    store.add(block(100));
+    store.add(block(101));
+    store.add(block(102));
+    assertEquals(10, view.size(), "view keeps its size");
+    assertSame(old, view.get(9), "view keeps its blocks");
+    assertEquals(8, view.get(8).getNum(), "view does not see the replacement");
+    assertEquals(101, store.get(9).getNum(), "store sees the replacement");
+    assertEquals(11, store.size(), "store grew");
+    assertThrows(UnsupportedOperationException.class, () -> view.add(block(5)),
+        "views are read-only");
+  } // testView()
+} // class TestArrayBlockStore
@@ -3,9 +3,16 @@ package edu.grinnell.csc207.blockchains;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -211,6 +218,42 @@ public class TestBlock {
     assertArrayEquals(expectedHash(b), b.getHash().getBytes(), "correct hash in validated block");
   } // validatedHashTest()
 
+  /**
+   * Ensure that blocks hashed on several threads at once get correct hashes.
+   */
+  @Test
+  public void concurrentHashTest() throws Exception {
+    Hash ph = new Hash(new byte[] {9, 8, 7, 6, 5});
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for (int i = 0; i < 8; i++) {
+        int num = i + 1;
+        results.add(pool.submit(() -> {
+          MessageDigest mine = MessageDigest.getInstance("sha-256");
+          for (long nonce = 0; nonce < 2000; nonce++) {
+            Transaction t = new Transaction("T" + num, "U" + nonce, num);
+            mine.update(ByteBuffer.allocate(Integer.BYTES).putInt(num).array());
+            mine.update(t.getSource().getBytes());
+            mine.update(t.getTarget().getBytes());
+            mine.update(ByteBuffer.allocate(Integer.BYTES).putInt(num).array());
+            mine.update(ph.getBytes());
+            mine.update(ByteBuffer.allocate(Long.BYTES).putLong(nonce).array());
+            if (!Arrays.equals(mine.digest(), Block.computeHash(num, t, ph, nonce))) {
+              return false;
+            } // if
+          } // for
+          return true;
+        }));
+      } // for
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get(), "hashes computed concurrently are correct");
+      } // for
+    } finally {
+      pool.shutdown();
+    } // try/finally
+  } // concurrentHashTest()
+
   /**
    * Ensure that we can create the standard initial block.
    */
@@ -1,17 +1,29 @@
 package edu.grinnell.csc207.blockchains;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.time.Duration;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 
 /**
@@ -62,6 +74,17 @@ public class TestBlockChain {
     } // try/catch
   } // assertCheckFails(BlockChain, String)
 
+  /**
+   * Wait for a latch, giving up quietly if interrupted.
+   */
+  static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } // try/catch
+  } // await(CountDownLatch)
+
   // +-------+-------------------------------------------------------
   // | Tests |
   // +-------+
@@ -103,6 +126,24 @@ public class TestBlockChain {
     assertEquals(chain.getHash(), block.getPrevHash(), "Check prevHash of newly mined block");
   } // testMine()
 
+  /**
+   * Make sure that blocks mined on several threads can be appended.
+   */
+  @Test
+  public void testParallelMine() throws Exception {
+    HashValidator v = (hash) -> (hash.length() >= 2) && (hash.get(0) == 4) && (hash.get(1) == 2);
+    try (ParallelMiner miner = new ParallelMiner(4)) {
+      BlockChain chain = new BlockChain(v, miner);
+      assertTrue(v.isValid(chain.getHash()), "initial block mined in parallel is valid");
+      Block block1 = chain.mine(new Transaction("", "A", 50));
+      assertTrue(v.isValid(block1.getHash()), "block mined in parallel is valid");
+      chain.append(block1);
+      chain.append(chain.mine(new Transaction("A", "B", 20)));
+      assertEquals(3, chain.getSize(), "after appending two blocks mined in parallel");
+      chain.check();
+    } // try
+  } // testParallelMine()
+
   /**
    * Make sure that we can append a few blocks.
    */
@@ -210,6 +251,64 @@ public class TestBlockChain {
     assertFalse(blocks.hasNext(), "hasNext at end");
   } // testRemoveAndAppendBlocks()
 
+  /**
+   * Make sure that we can get blocks by height.
+   */
+  @Test
+  public void testGetBlock() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    Block block1 = chain.mine(new Transaction("", "A", 10));
+    chain.append(block1);
+    Block block2 = chain.mine(new Transaction("A", "B", 3));
+    chain.append(block2);
+    assertEquals(0, chain.getBlock(0).getNum(), "initial block");
+    assertEquals(block1, chain.getBlock(1), "block 1");
+    assertEquals(block2, chain.getBlock(2), "block 2");
+    assertThrows(IndexOutOfBoundsException.class, () -> chain.getBlock(3), "no block 3");
+    chain.removeLast();
+    assertThrows(IndexOutOfBoundsException.class, () -> chain.getBlock(2), "block 2 removed");
+  } // testGetBlock()
+
+  /**
+   * Make sure that we can find blocks by hash.
+   */
+  @Test
+  public void testFindByHash() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    Block block1 = chain.mine(new Transaction("", "A", 10));
+    chain.append(block1);
+    Block block2 = chain.mine(new Transaction("A", "B", 3));
+    chain.append(block2);
+    assertEquals(chain.getBlock(0), chain.findByHash(chain.getBlock(0).getHash()),
+        "initial block");
+    assertEquals(block1, chain.findByHash(block1.getHash()), "block 1");
+    assertEquals(block2, chain.findByHash(Hash.fromHex(block2.getHash().toString())),
+        "block 2, by an equal hash");
+    chain.removeLast();
+    assertEquals(null, chain.findByHash(block2.getHash()), "block 2 removed");
+  } // testFindByHash()
+
+  /**
+   * Make sure that we can page through a user's history.
+   */
+  @Test
+  public void testHistory() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    Block deposit = chain.mine(new Transaction("", "A", 10));
+    chain.append(deposit);
+    chain.append(chain.mine(new Transaction("", "B", 10)));
+    Block transfer = chain.mine(new Transaction("A", "B", 3));
+    chain.append(transfer);
+    Block last = chain.mine(new Transaction("B", "A", 1));
+    chain.append(last);
+    assertEquals(Arrays.asList(deposit, transfer), chain.history("A", 0, 2), "first page");
+    assertEquals(Arrays.asList(last), chain.history("A", 4, 2), "second page");
+    assertEquals(Arrays.asList(), chain.history("C", 0, 2), "unknown user");
+    chain.removeLast();
+    assertEquals(Arrays.asList(deposit, transfer), chain.history("A", 0, 10),
+        "removed block leaves the history");
+  } // testHistory()
+
   /**
    * Check balances.
    */
@@ -255,6 +354,7 @@ public class TestBlockChain {
     assertEquals(80, chain.balance("A"), "A's eighth balance");
     assertEquals(50, chain.balance("B"), "B's eighth balance");
     assertEquals(20, chain.balance("C"), "C's eighth balance");
+    assertTrue(chain.auditLedger().join(), "ledger agrees with replay");
   } // testBalances()
 
   /**
@@ -421,13 +521,440 @@ public class TestBlockChain {
     chain.append(chain.mine(new Transaction("G", "F", 10)));
     assertEquals(110, chain.balance("F"), "F's balance in correct chain");
     assertTrue(chain.isCorrect(), "initial chain is correct");
+    assertTrue(chain.auditLedger().get(), "ledger of initial chain agrees with replay");
     chain.check();
 
     Iterator<Block> blocks = chain.blocks();
     blocks.next();
     blocks.next().transaction = new Transaction("", "F", 1000);
-    assertEquals(1010, chain.balance("F"), "F's balance in modified chain");
+    assertEquals(110, chain.balance("F"), "F's balance comes from the ledger, not the block");
+    assertFalse(chain.auditLedger().get(), "audit notices the modified block");
+    assertTrue(chain.isCorrect(), "verified blocks are trusted");
+    assertThrows(Exception.class, () -> chain.checkAll(), "full check notices the change");
     assertFalse(chain.isCorrect(), "modified chain is incorrect");
     assertCheckFails(chain, "modified chain is incorrect");
   } // testModifiedChain()
+
+  /**
+   * Blocks whose times go backwards are refused, and a full check notices one changed in place.
+   */
+  @Test
+  public void testTimesInOrder() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    long start = chain.getBlock(0).getTime();
+
+    Block block = chain.mine(new Transaction("", "A", 100));
+    block.time = start - 1;
+    assertAppendFails(chain, block, "Appending block made before the last one");
+    block.time = start;
+    chain.append(block);
+    chain.check();
+
+    chain.getBlock(1).time = start - 1;
+    assertThrows(Exception.class, () -> chain.checkAll(), "full check notices the time");
+  } // testTimesInOrder()
+
+  /**
+   * Make sure that parallel checks agree with sequential ones and report the lowest bad block.
+   */
+  @Test
+  public void testParallelCheck() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.append(chain.mine(new Transaction("", "A", 1000)));
+    for (int i = 2; i < 1000; i++) {
+      chain.append(chain.mine(new Transaction("A", (i % 2 == 0) ? "B" : "A", 1)));
+    } // for
+    chain.setParallelCheck(true);
+    chain.check();
+    assertTrue(chain.isCorrect(), "parallel check of a good chain");
+
+    ++chain.getBlock(700).nonce;
+    ++chain.getBlock(300).nonce;
+    Exception parallel = assertThrows(Exception.class, () -> chain.checkAll(),
+        "parallel check of a chain with bad hashes");
+    assertTrue(parallel.getMessage().contains("Block 300 "), "lowest bad hash reported");
+    chain.setParallelCheck(false);
+    Exception sequential = assertThrows(Exception.class, () -> chain.checkAll(),
+        "sequential check of a chain with bad hashes");
+    assertEquals(sequential.getMessage(), parallel.getMessage(), "same report either way");
+
+    chain.setParallelCheck(true);
+    chain.getBlock(500).transaction = new Transaction("B", "A", 5000);
+    --chain.getBlock(300).nonce;
+    parallel = assertThrows(Exception.class, () -> chain.checkAll(),
+        "parallel check of a chain with an overdraft");
+    assertTrue(parallel.getMessage().startsWith("Insufficient balance for B in block 500"),
+        "overdraft below the bad hash reported");
+  } // testParallelCheck()
+
+  /**
+   * Make sure that readers always see a consistent chain while another thread changes it.
+   */
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    AtomicBoolean done = new AtomicBoolean(false);
+    AtomicReference<String> problem = new AtomicReference<String>();
+    Thread[] readers = new Thread[3];
+    for (int r = 0; r < readers.length; r++) {
+      readers[r] = new Thread(() -> {
+        while (!done.get() && problem.get() == null) {
+          // Every deposit is 10, so the balances must add up to 10 per block after the first.
+          int size = 0;
+          Hash prev = null;
+          Iterator<Block> blocks = chain.blocks();
+          while (blocks.hasNext()) {
+            Block block = blocks.next();
+            if (prev != null && !block.getPrevHash().equals(prev)) {
+              problem.set("broken link at block " + block.getNum());
+            } // if
+            prev = block.getHash();
+            size++;
+          } // while
+          if (size > chain.getSize() + 1 || chain.balance("A") < 0) {
+            problem.set("inconsistent size or balance");
+          } // if
+        } // while
+      });
+      readers[r].start();
+    } // for
+    for (int i = 0; i < 2000; i++) {
+      chain.append(chain.mine(new Transaction("", "A", 10)));
+      if (i % 3 == 2) {
+        chain.removeLast();
+      } // if
+    } // for
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    } // for
+    assertNull(problem.get(), "readers saw a consistent chain");
+    assertEquals(10 * (chain.getSize() - 1), chain.balance("A"), "final balance");
+    assertTrue(chain.auditLedger().get(), "ledger agrees with the blocks");
+    chain.checkAll();
+  } // testConcurrentReaders()
+
+  /**
+   * Make sure that findByHash and history answer while another thread holds the chain's lock.
+   */
+  @Test
+  public void testLookupsDoNotWait() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    Block deposit = chain.mine(new Transaction("", "A", 10));
+    chain.append(deposit);
+    assertEquals(deposit, chain.findByHash(deposit.getHash()), "builds the hash index");
+    assertEquals(Arrays.asList(deposit), chain.history("A", 0, 10), "builds the history index");
+
+    // Listeners hear about appends while append holds the lock.
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    chain.addListener(new ChainListener() {
+      @Override
+      public void blockAppended(BlockChain c, Block block) {
+        entered.countDown();
+        await(release);
+      } // blockAppended(BlockChain, Block)
+
+      @Override
+      public void blockRemoved(BlockChain c, Block block) {
+      } // blockRemoved(BlockChain, Block)
+    });
+    Block transfer = chain.mine(new Transaction("A", "B", 3));
+    Thread writer = new Thread(() -> chain.append(transfer));
+    writer.start();
+    entered.await();
+    assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+      assertEquals(deposit, chain.findByHash(deposit.getHash()), "found without the lock");
+      assertEquals(transfer, chain.findByHash(transfer.getHash()), "new block found");
+      assertEquals(Arrays.asList(deposit, transfer), chain.history("A", 0, 10),
+          "history without the lock");
+    }, "lookups do not wait for the writer");
+    release.countDown();
+    writer.join();
+  } // testLookupsDoNotWait()
+
+  /**
+   * Make sure that lookups made while another thread appends and removes blocks only ever
+   * report blocks of the chain.
+   */
+  @Test
+  public void testConcurrentLookups() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.append(chain.mine(new Transaction("", "A", 10)));
+    AtomicBoolean done = new AtomicBoolean(false);
+    AtomicReference<String> problem = new AtomicReference<String>();
+    Thread[] readers = new Thread[3];
+    for (int r = 0; r < readers.length; r++) {
+      readers[r] = new Thread(() -> {
+        while (!done.get() && problem.get() == null) {
+          ChainSnapshot snapshot = chain.snapshot();
+          Block wanted = snapshot.getBlock(snapshot.getSize() - 1);
+          Block found = chain.findByHash(wanted.getHash());
+          if (found != null && !found.getHash().equals(wanted.getHash())) {
+            problem.set("findByHash found the wrong block");
+          } // if
+          List<Block> page = chain.history("B", 0, 50);
+          int previous = 0;
+          for (Block block : page) {
+            if (!block.getTransaction().getTarget().equals("B") || block.getNum() <= previous) {
+              problem.set("history gave a block out of order or not involving B");
+            } // if
+            previous = block.getNum();
+          } // for
+        } // while
+      });
+      readers[r].start();
+    } // for
+    for (int i = 0; i < 2000; i++) {
+      chain.append(chain.mine(new Transaction("", (i % 2 == 0) ? "B" : "C", 1)));
+      if (i % 3 == 2) {
+        chain.removeLast();
+      } // if
+    } // for
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    } // for
+    assertNull(problem.get(), "readers saw only blocks of the chain");
+    for (int height = 0; height < chain.getSize(); height++) {
+      Block block = chain.getBlock(height);
+      assertEquals(block, chain.findByHash(block.getHash()), "block " + height + " found");
+    } // for
+  } // testConcurrentLookups()
+
+  /**
+   * Make sure that the chain can change while check verifies blocks, and that check then
+   * verifies the chain as it stands.
+   */
+  @Test
+  public void testCheckWithoutLock() throws Exception {
+    AtomicBoolean gate = new AtomicBoolean(false);
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    BlockChain chain = new BlockChain((hash) -> {
+      if (gate.get()) {
+        entered.countDown();
+        await(release);
+      } // if
+      return true;
+    });
+    for (int i = 0; i < 5; i++) {
+      chain.append(chain.mine(new Transaction("", "A", 10)));
+    } // for
+
+    gate.set(true);
+    AtomicReference<Exception> failure = new AtomicReference<Exception>();
+    Thread checker = new Thread(() -> {
+      try {
+        chain.check();
+      } catch (Exception e) {
+        failure.set(e);
+      } // try/catch
+    });
+    checker.start();
+    entered.await();
+    gate.set(false);
+    assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+      chain.removeLast();
+      chain.removeLast();
+      chain.append(chain.mine(new Transaction("A", "B", 5)));
+    }, "chain changes while check verifies");
+    release.countDown();
+    checker.join();
+    assertNull(failure.get(), "check passed");
+    assertEquals(chain.getSize(), chain.watermark, "check verified the chain as it stands");
+    assertEquals(5, chain.verifiedBalances.get("B"), "verified balance of the new block");
+  } // testCheckWithoutLock()
+
+  /**
+   * Make sure that checks after removing verified blocks see the chain as it now is.
+   */
+  @Test
+  public void testIncrementalCheck() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.append(chain.mine(new Transaction("", "A", 100)));
+    chain.append(chain.mine(new Transaction("", "D", 100)));
+    chain.check();
+    assertEquals(3, chain.watermark, "every block verified");
+
+    chain.removeLast();
+    assertEquals(2, chain.watermark, "watermark follows removal");
+    chain.append(chain.mine(new Transaction("D", "A", 0)));
+    assertCheckFails(chain, "D is unknown once its deposit is removed");
+    chain.removeLast();
+
+    chain.removeLast();
+    chain.append(chain.mine(new Transaction("", "A", 5)));
+    chain.append(chain.mine(new Transaction("A", "B", 6)));
+    assertCheckFails(chain, "A's balance was rolled back");
+    chain.removeLast();
+    chain.append(chain.mine(new Transaction("A", "B", 5)));
+    chain.check();
+    chain.checkAll();
+    assertEquals(3, chain.watermark, "every block verified again");
+  } // testIncrementalCheck()
+
+  /**
+   * A chain kept on disk comes back, blocks, balances, and indexes, without mining.
+   */
+  @Test
+  public void testReopen(@TempDir Path dir) throws Exception {
+    Hash[] hashes = new Hash[5];
+    try (BlockChain chain = BlockChain.open(dir, (hash) -> true, new SequentialMiner(),
+        HashFunction.SHA_512_256)) {
+      chain.append(chain.mine(new Transaction("", "A", 100)));
+      chain.append(chain.mine(new Transaction("A", "B", 30)));
+      chain.append(chain.mine(new Transaction("B", "C", 10)));
+      chain.removeLast();
+      chain.append(chain.mine(new Transaction("B", "A", 5)));
+      chain.append(chain.mine(new Transaction("", "C", 7)));
+      for (int i = 0; i < hashes.length; i++) {
+        hashes[i] = chain.getBlock(i).getHash();
+      } // for
+    } // try
+
+    Miner refuse = (num, t, prevHash, check, function, progress) -> {
+      fail("mined while reopening");
+      return null;
+    };
+    try (BlockChain chain = BlockChain.open(dir, (hash) -> true, refuse,
+        HashFunction.SHA_256)) {
+      assertEquals(HashFunction.SHA_512_256, chain.getHashFunction(), "keeps its function");
+      assertEquals(5, chain.getSize(), "every block is back");
+      for (int i = 0; i < hashes.length; i++) {
+        assertEquals(hashes[i], chain.getBlock(i).getHash(), "hash of block " + i);
+      } // for
+      assertEquals(75, chain.balance("A"), "A's balance");
+      assertEquals(25, chain.balance("B"), "B's balance");
+      assertEquals(7, chain.balance("C"), "C's balance");
+      assertEquals(3, chain.findByHash(hashes[3]).getNum(), "found by hash");
+      assertEquals(3, chain.history("A", 0, 10).size(), "A's history");
+      chain.checkAll();
+      assertTrue(chain.auditLedger().get(), "balances agree with the blocks");
+      chain.setMiner(new SequentialMiner());
+      chain.append(chain.mine(new Transaction("C", "A", 7)));
+    } // try
+
+    try (BlockChain chain = BlockChain.open(dir, (hash) -> true, new SequentialMiner(),
+        HashFunction.SHA_256)) {
+      assertEquals(6, chain.getSize(), "the new block is back too");
+      assertEquals(82, chain.balance("A"), "A's balance after the new block");
+      chain.check();
+    } // try
+  } // testReopen(Path)
+
+  /**
+   * A chain reopened from its checkpoint trusts the blocks the checkpoint covers, verifies only
+   * the later ones, and can still verify everything on demand.
+   */
+  @Test
+  public void testCheckpoint(@TempDir Path dir) throws Exception {
+    try (BlockChain chain = BlockChain.open(dir, (hash) -> true, new SequentialMiner(),
+        HashFunction.SHA_256)) {
+      chain.append(chain.mine(new Transaction("", "A", 100)));
+      chain.append(chain.mine(new Transaction("A", "B", 30)));
+      chain.check();
+      chain.append(chain.mine(new Transaction("B", "C", 10)));
+    } // try
+
+    HashValidator rejectAll = (hash) -> false;
+    AtomicInteger validated = new AtomicInteger();
+    HashValidator counting = (hash) -> validated.incrementAndGet() > 0;
+    try (BlockChain chain = BlockChain.open(dir, counting, new SequentialMiner(),
+        HashFunction.SHA_256)) {
+      assertEquals(1, validated.get(), "only the block after the checkpoint is verified");
+      assertNull(chain.index, "the hash index waits until it is needed");
+      assertEquals(4, chain.getSize(), "every block is back");
+      assertEquals(70, chain.balance("A"), "A's balance");
+      assertEquals(20, chain.balance("B"), "B's balance");
+      assertEquals(10, chain.balance("C"), "C's balance");
+      assertEquals(2, chain.history("B", 0, 10).size(), "B's history");
+      assertEquals(3, chain.findByHash(chain.getHash()).getNum(), "found by hash");
+      chain.check();
+    } // try
+
+    try (BlockChain chain = BlockChain.open(dir, rejectAll, new SequentialMiner(),
+        HashFunction.SHA_256)) {
+      assertEquals(4, chain.watermark, "every block is trusted");
+      assertThrows(Exception.class, () -> chain.checkAll(),
+          "checkAll verifies the trusted blocks too");
+    } // try
+
+    Files.delete(dir.resolve(BlockChain.CHECKPOINT));
+    assertThrows(IOException.class, () -> BlockChain.open(dir, rejectAll,
+        new SequentialMiner(), HashFunction.SHA_256), "without a checkpoint, all are checked");
+  } // testCheckpoint(Path)
+
+  /**
+   * Removing verified blocks from a chain reopened from its checkpoint forgets the users they
+   * alone mentioned, without indexing the chain.
+   */
+  @Test
+  public void testRemoveVerified(@TempDir Path dir) throws Exception {
+    try (BlockChain chain = BlockChain.open(dir, (hash) -> true, new SequentialMiner(),
+        HashFunction.SHA_256)) {
+      chain.append(chain.mine(new Transaction("", "A", 100)));
+      chain.append(chain.mine(new Transaction("A", "B", 30)));
+      chain.check();
+    } // try
+
+    try (BlockChain chain = BlockChain.open(dir, (hash) -> true, new SequentialMiner(),
+        HashFunction.SHA_256)) {
+      assertEquals(3, chain.watermark, "every block is trusted");
+      chain.removeLast();
+      assertEquals(100, chain.verifiedBalances.get("A"), "A's verified balance");
+      assertFalse(chain.verifiedBalances.containsKey("B"), "B is forgotten");
+      chain.removeLast();
+      assertFalse(chain.verifiedBalances.containsKey("A"), "A is forgotten");
+      assertNull(chain.history, "no history index was built");
+      chain.append(chain.mine(new Transaction("", "B", 5)));
+      chain.check();
+      assertThrows(Exception.class, () -> {
+        chain.append(chain.mine(new Transaction("A", "B", 1)));
+        chain.check();
+      }, "A is unknown again");
+    } // try
+  } // testRemoveVerified(Path)
+
+  /**
+   * Removing blocks that nobody can see any more gives their space in the log back, while a
+   * snapshot that was handed out keeps its blocks.
+   */
+  @Test
+  public void testRemoveReclaims(@TempDir Path dir) throws Exception {
+    Hash kept;
+    try (BlockChain chain = BlockChain.open(dir, (hash) -> true, new SequentialMiner(),
+        HashFunction.SHA_256)) {
+      SegmentedBlockStore store = (SegmentedBlockStore) chain.blocks;
+      chain.append(chain.mine(new Transaction("", "A", 100)));
+      int offset = store.offset;
+      for (int i = 0; i < 20; i++) {
+        chain.append(chain.mine(new Transaction("A", "B", i)));
+        chain.getBlock(2);
+        chain.removeLast();
+      } // for
+      assertEquals(offset, store.offset, "the log is back where it was");
+      assertEquals(0, store.segment, "in the same segment");
+
+      chain.append(chain.mine(new Transaction("A", "B", 30)));
+      ChainSnapshot before = chain.snapshot();
+      kept = before.getBlock(2).getHash();
+      chain.removeLast();
+      chain.append(chain.mine(new Transaction("A", "C", 40)));
+      chain.removeLast();
+      assertEquals(kept, before.getBlock(2).getHash(), "the snapshot keeps its block");
+      assertEquals(30, before.getBlock(2).getTransaction().getAmount(),
+          "the snapshot keeps its transaction");
+      chain.append(chain.mine(new Transaction("A", "C", 50)));
+      kept = chain.getHash();
+    } // try
+
+    try (BlockChain chain = BlockChain.open(dir, (hash) -> true, new SequentialMiner(),
+        HashFunction.SHA_256)) {
+      assertEquals(3, chain.getSize(), "the blocks left are back");
+      assertEquals(kept, chain.getHash(), "the last block is back");
+      assertEquals(50, chain.balance("C"), "C's balance");
+      chain.checkAll();
+    } // try
+  } // testRemoveReclaims(Path)
 } // class TestBlockChain
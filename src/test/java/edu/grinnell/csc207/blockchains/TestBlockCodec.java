@@ -0,0 +1,242 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the binary block format.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestBlockCodec {
+  /**
+   * Some blocks, including ones with odd names, amounts, and hashes.
+   *
+   * @return the blocks.
+   */
+  static Block[] blocks() {
+    Hash empty = new Hash(new byte[] {});
+    Block first = new Block(0, new Transaction("", "", 0), empty, 17L);
+    Block second = new Block(1, new Transaction("", "A", 100), first.getHash(), -1L);
+    return new Block[] {first, second,
+        new Block(2, new Transaction("A", "B", -5), second.getHash(), Long.MIN_VALUE),
+        new Block(Integer.MAX_VALUE, new Transaction("Zoë", "日本", Integer.MIN_VALUE),
+            second.getHash(), 42L),
+        new Block(300, new Transaction("B", "A".repeat(200), Integer.MAX_VALUE),
+            new Hash(new byte[] {1, 2, 3}), 0L)};
+  } // blocks()
+
+  /**
+   * Determine if two blocks hold the same things.
+   *
+   * @param expected The block we expect.
+   * @param actual The block we got.
+   * @param message What to say if they differ.
+   */
+  static void assertSameBlock(Block expected, Block actual, String message) {
+    assertEquals(expected.toString(), actual.toString(), message);
+    assertEquals(expected.getHash(), actual.getHash(), message + " (hash)");
+    assertEquals(expected.getTime(), actual.getTime(), message + " (time)");
+    assertEquals(expected.getPrevHash(), actual.getPrevHash(), message + " (previous hash)");
+  } // assertSameBlock(Block, Block, String)
+
+  /**
+   * Blocks survive a trip through a buffer, taking the length we say they do.
+   */
+  @Test
+  public void testRoundTrip() {
+    BlockCodec codec = new BlockCodec(HashFunction.SHA_256);
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    Block[] blocks = blocks();
+    for (Block block : blocks) {
+      int start = buffer.position();
+      codec.encode(block, buffer);
+      assertEquals(codec.encodedLength(block), buffer.position() - start,
+          "length of block " + block.getNum());
+    } // for
+    buffer.flip();
+    for (Block block : blocks) {
+      assertSameBlock(block, codec.decode(buffer), "block " + block.getNum());
+    } // for
+    assertEquals(0, buffer.remaining(), "every byte read");
+
+    buffer.clear();
+    codec.encode(blocks[1], buffer);
+    buffer.flip();
+    Block shared = codec.decode(buffer, true);
+    assertSameBlock(blocks[1], shared, "shared block");
+  } // testRoundTrip()
+
+  /**
+   * A simple deposit is compact.
+   */
+  @Test
+  public void testCompact() {
+    BlockCodec codec = new BlockCodec(HashFunction.SHA_256);
+    Block block = blocks()[1];
+    // flags, number, nonce, time, two names, amount, two hashes
+    assertEquals(1 + 1 + 8 + 8 + 1 + 2 + 2 + 64, codec.encodedLength(block), "deposit");
+    assertTrue(codec.encodedLength(block) < block.toString().length() / 2,
+        "much smaller than the string");
+  } // testCompact()
+
+  /**
+   * Varints and zigzag encoding handle the extremes.
+   */
+  @Test
+  public void testVarints() {
+    ByteBuffer buffer = ByteBuffer.allocate(BlockCodec.MAX_VARINT);
+    for (int value : new int[] {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1,
+        Integer.MIN_VALUE}) {
+      buffer.clear();
+      BlockCodec.putVarint(buffer, value);
+      assertEquals(BlockCodec.varintLength(value), buffer.position(), "length of " + value);
+      buffer.flip();
+      assertEquals(value, BlockCodec.getVarint(buffer), "varint " + value);
+      assertEquals(value, BlockCodec.unzigzag(BlockCodec.zigzag(value)), "zigzag " + value);
+    } // for
+    assertEquals(1, BlockCodec.zigzag(-1), "small negatives stay small");
+    buffer.clear();
+    buffer.put(new byte[] {-1, -1, -1, -1, -1}).flip();
+    assertThrows(IllegalArgumentException.class, () -> BlockCodec.getVarint(buffer),
+        "varint too long");
+  } // testVarints()
+
+  /**
+   * Encoding into a buffer that is too small writes nothing.
+   */
+  @Test
+  public void testOverflow() {
+    BlockCodec codec = new BlockCodec(HashFunction.SHA_256);
+    Block block = blocks()[1];
+    ByteBuffer buffer = ByteBuffer.allocate(codec.encodedLength(block) - 1);
+    assertThrows(BufferOverflowException.class, () -> codec.encode(block, buffer), "no room");
+    assertEquals(0, buffer.position(), "nothing written");
+  } // testOverflow()
+
+  /**
+   * Streams of blocks survive a trip through channels, even past the size of the buffers.
+   */
+  @Test
+  public void testStream() throws IOException {
+    Block[] blocks = blocks();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int copies = 2 * BlockCodec.STREAM_BUFFER / 100;
+    try (BlockCodec.Encoder out = new BlockCodec.Encoder(new BlockCodec(HashFunction.SHA_256),
+        Channels.newChannel(bytes))) {
+      for (int i = 0; i < copies; i++) {
+        out.write(blocks[i % blocks.length]);
+      } // for
+    } // try
+    try (BlockCodec.Decoder in = new BlockCodec.Decoder(
+        Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())))) {
+      assertEquals(HashFunction.SHA_256, in.getCodec().getHashFunction(), "function");
+      for (int i = 0; i < copies; i++) {
+        assertSameBlock(blocks[i % blocks.length], in.read(), "block " + i);
+      } // for
+      assertNull(in.read(), "end of stream");
+    } // try
+
+    byte[] cut = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 1);
+    try (BlockCodec.Decoder in = new BlockCodec.Decoder(
+        Channels.newChannel(new ByteArrayInputStream(cut)))) {
+      assertThrows(EOFException.class, () -> {
+        while (in.read() != null) {
+          continue;
+        } // while
+      }, "stream cut short");
+    } // try
+
+    byte[] future = bytes.toByteArray();
+    future[0] = BlockCodec.VERSION + 1;
+    assertThrows(IOException.class, () -> new BlockCodec.Decoder(
+        Channels.newChannel(new ByteArrayInputStream(future))), "unknown version");
+  } // testStream()
+
+  /**
+   * Lengths that no block can have are rejected before anything is read or allocated.
+   */
+  @Test
+  public void testBadLength() throws IOException {
+    byte[] header = header();
+    for (int length : new int[] {0, -1, BlockCodec.MAX_BLOCK + 1, Integer.MAX_VALUE}) {
+      ByteBuffer stream = ByteBuffer.allocate(header.length + BlockCodec.MAX_VARINT);
+      stream.put(header);
+      BlockCodec.putVarint(stream, length);
+      try (BlockCodec.Decoder in = new BlockCodec.Decoder(Channels.newChannel(
+          new ByteArrayInputStream(Arrays.copyOf(stream.array(), stream.position()))))) {
+        assertThrows(IllegalArgumentException.class, in::read, "length " + length);
+      } // try
+    } // for
+  } // testBadLength()
+
+  /**
+   * Blocks that give a negative length for a string or hash are rejected, as are stream headers
+   * that give a name no hash function has.
+   */
+  @Test
+  public void testNegativeLengths() throws IOException {
+    byte[] negative = {-1, -1, -1, -1, 0x0f};
+    for (int flags : new int[] {BlockCodec.PREV_FIXED | BlockCodec.HASH_FIXED, 0}) {
+      ByteBuffer block = ByteBuffer.allocate(100);
+      block.put((byte) flags);
+      BlockCodec.putVarint(block, 1);
+      block.putLong(0).putLong(0);
+      if (flags == 0) {
+        block.put(new byte[] {1, 'A', 1, 'B', 2});
+      } // if
+      block.put(negative);
+      ByteBuffer stream = ByteBuffer.allocate(200);
+      stream.put(header());
+      BlockCodec.putVarint(stream, block.position());
+      stream.put(block.flip());
+      try (BlockCodec.Decoder in = new BlockCodec.Decoder(Channels.newChannel(
+          new ByteArrayInputStream(Arrays.copyOf(stream.array(), stream.position()))))) {
+        assertThrows(IllegalArgumentException.class, in::read, "negative length, flags " + flags);
+      } // try
+    } // for
+
+    byte[] name = header();
+    name[1] = (byte) (BlockCodec.MAX_NAME + 1);
+    assertThrows(IOException.class, () -> new BlockCodec.Decoder(
+        Channels.newChannel(new ByteArrayInputStream(name))), "name too long");
+    ByteBuffer huge = ByteBuffer.allocate(1 + BlockCodec.MAX_VARINT);
+    huge.put((byte) BlockCodec.VERSION).put(negative);
+    assertThrows(IOException.class, () -> new BlockCodec.Decoder(
+        Channels.newChannel(new ByteArrayInputStream(huge.array()))), "negative name");
+
+    ByteBuffer varint = ByteBuffer.wrap(new byte[] {-1, -1, -1, -1, 0x1f});
+    assertThrows(IllegalArgumentException.class, () -> BlockCodec.getVarint(varint),
+        "varint too large");
+  } // testNegativeLengths()
+
+  /**
+   * Get the header of a stream of SHA-256 blocks.
+   *
+   * @return the header.
+   *
+   * @throws IOException if it cannot be written.
+   */
+  static byte[] header() throws IOException {
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    try (BlockCodec.Encoder out = new BlockCodec.Encoder(new BlockCodec(HashFunction.SHA_256),
+        Channels.newChannel(header))) {
+      out.flush();
+    } // try
+    return header.toByteArray();
+  } // header()
+} // class TestBlockCodec
@@ -0,0 +1,107 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests of the miner that remembers nonces.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestCachingMiner {
+  /**
+   * Where the caches go.
+   */
+  @TempDir
+  Path dir;
+
+  /**
+   * Mining, removing, and mining the same block again reuses the nonce.
+   */
+  @Test
+  public void testRemine() throws Exception {
+    CachingMiner miner = new CachingMiner(new SequentialMiner());
+    BlockChain chain = new BlockChain(new LeadingZerosValidator(8), miner);
+    Block first = chain.mine(new Transaction("", "A", 10));
+    chain.append(first);
+    chain.removeLast();
+    Block second = chain.mine(new Transaction("", "A", 10));
+    assertEquals(first.getNonce(), second.getNonce(), "same nonce");
+    assertEquals(1, miner.getHits(), "one hit");
+    assertEquals(2, miner.getMisses(), "genesis and first block missed");
+    chain.append(second);
+    chain.check();
+  } // testRemine()
+
+  /**
+   * Different contents and harder validators are mined afresh.
+   */
+  @Test
+  public void testMisses() {
+    CachingMiner miner = new CachingMiner(new SequentialMiner());
+    Hash prev = new Hash(new byte[] {1});
+    Transaction t = new Transaction("", "A", 10);
+    miner.mine(1, t, prev, new LeadingZerosValidator(1));
+    miner.mine(2, t, prev, new LeadingZerosValidator(1));
+    miner.mine(1, new Transaction("", "A", 11), prev, new LeadingZerosValidator(1));
+    miner.mine(1, t, prev, new LeadingZerosValidator(1), HashFunction.SHA3_256,
+        new MiningProgress());
+    assertEquals(0, miner.getHits(), "no hits yet");
+    long nonce = miner.mine(1, t, prev, new LeadingZerosValidator(16)).getNonce();
+    assertEquals(nonce, miner.mine(1, t, prev, new LeadingZerosValidator(16)).getNonce(),
+        "the nonce for the harder validator is remembered");
+    assertTrue(new LeadingZerosValidator(16).isValid(new Block(1, t, prev, nonce).getHash()),
+        "and it is valid");
+  } // testMisses()
+
+  /**
+   * The cache forgets the least recently used nonce.
+   */
+  @Test
+  public void testEviction() {
+    CachingMiner miner = new CachingMiner(new SequentialMiner(), 2);
+    Hash prev = new Hash(new byte[] {1});
+    HashValidator check = new LeadingZerosValidator(1);
+    miner.mine(1, new Transaction("", "A", 1), prev, check);
+    miner.mine(2, new Transaction("", "A", 1), prev, check);
+    miner.mine(1, new Transaction("", "A", 1), prev, check);
+    miner.mine(3, new Transaction("", "A", 1), prev, check);
+    assertEquals(2, miner.size(), "bounded");
+    miner.mine(1, new Transaction("", "A", 1), prev, check);
+    assertEquals(2, miner.getHits(), "recently used block kept");
+    miner.mine(2, new Transaction("", "A", 1), prev, check);
+    assertEquals(2, miner.getHits(), "least recently used block evicted");
+  } // testEviction()
+
+  /**
+   * Nonces survive a save and load.
+   */
+  @Test
+  public void testPersist() throws Exception {
+    Path file = this.dir.resolve("nonces.dat");
+    CachingMiner miner = new CachingMiner(new SequentialMiner());
+    BlockChain chain = new BlockChain(new LeadingZerosValidator(8), miner);
+    chain.append(chain.mine(new Transaction("", "Ünïcödé", 10)));
+    chain.append(chain.mine(new Transaction("Ünïcödé", "B", 5)));
+    miner.save(file);
+
+    CachingMiner restarted = new CachingMiner(new SequentialMiner());
+    restarted.load(file);
+    assertEquals(3, restarted.size(), "every nonce loaded");
+    BlockChain replay = new BlockChain(new LeadingZerosValidator(8), restarted);
+    replay.append(replay.mine(new Transaction("", "Ünïcödé", 10)));
+    replay.append(replay.mine(new Transaction("Ünïcödé", "B", 5)));
+    assertEquals(3, restarted.getHits(), "replay did no work");
+    assertEquals(0, restarted.getMisses(), "no misses");
+    assertEquals(chain.getHash(), replay.getHash(), "same chain");
+    assertNotEquals(0, restarted.getHitRate(), "hit rate");
+  } // testPersist()
+} // class TestCachingMiner
@@ -0,0 +1,76 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests of frozen views of chains.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestChainSnapshot {
+  /**
+   * Snapshots don't see later appends or removals.
+   */
+  @Test
+  public void testFrozen() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.append(chain.mine(new Transaction("", "A", 100)));
+    chain.append(chain.mine(new Transaction("A", "B", 40)));
+    ChainSnapshot snapshot = chain.snapshot();
+    Block last = chain.getBlock(2);
+
+    chain.removeLast();
+    chain.append(chain.mine(new Transaction("A", "C", 10)));
+    chain.append(chain.mine(new Transaction("", "D", 5)));
+
+    assertEquals(3, snapshot.getSize(), "size of snapshot");
+    assertSame(last, snapshot.getBlock(2), "last block of snapshot");
+    assertEquals(last.getHash(), snapshot.getHash(), "hash of snapshot");
+    assertEquals(60, snapshot.balance("A"), "A's balance in snapshot");
+    assertEquals(40, snapshot.balance("B"), "B's balance in snapshot");
+    assertFalse(snapshot.isUserInSystem("C"), "C is not in snapshot");
+    assertEquals(2, snapshot.getUserCount(), "users in snapshot");
+
+    assertEquals(4, chain.getSize(), "size of chain");
+    assertEquals(90, chain.balance("A"), "A's balance in chain");
+    assertEquals(0, chain.balance("B"), "B's balance in chain");
+    assertTrue(chain.isUserInSystem("D"), "D is in chain");
+  } // testFrozen()
+
+  /**
+   * Iterating a snapshot gives the blocks and transactions it had, even as the chain grows.
+   */
+  @Test
+  public void testIterate() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    for (int i = 1; i <= 5; i++) {
+      chain.append(chain.mine(new Transaction("", "A", i)));
+    } // for
+    ChainSnapshot snapshot = chain.snapshot();
+    Iterator<Block> blocks = snapshot.blocks();
+    chain.append(chain.mine(new Transaction("", "A", 6)));
+    int count = 0;
+    while (blocks.hasNext()) {
+      assertEquals(count++, blocks.next().getNum(), "block number");
+    } // while
+    assertEquals(6, count, "blocks in snapshot");
+    ArrayList<Integer> amounts = new ArrayList<Integer>();
+    for (Transaction t : snapshot) {
+      amounts.add(t.getAmount());
+    } // for
+    assertEquals(List.of(0, 1, 2, 3, 4, 5), amounts, "transactions in snapshot");
+    assertEquals(15, snapshot.balance("A"), "A's balance in snapshot");
+    assertEquals(21, chain.balance("A"), "A's balance in chain");
+  } // testIterate()
+} // class TestChainSnapshot
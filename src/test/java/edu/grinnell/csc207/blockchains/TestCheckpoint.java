@@ -0,0 +1,121 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of checkpoints.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestCheckpoint {
+  /**
+   * Checkpoints survive a trip through a file.
+   */
+  @Test
+  public void testRoundTrip(@TempDir Path dir) throws IOException {
+    HashMap<String, Integer> balances = new HashMap<String, Integer>();
+    for (int i = 0; i < 1000; i++) {
+      balances.put("user" + i, i - 500);
+    } // for
+    balances.put("Zoë", 7);
+    HashMap<String, Integer> mentions = new HashMap<String, Integer>();
+    for (int i = 0; i < 1000; i += 2) {
+      mentions.put("user" + i, i + 1);
+    } // for
+    long[] positions = {32, 100, (1L << 32) | 32};
+    Hash tip = Hash.of(new byte[32]);
+    Path file = dir.resolve("checkpoint");
+    int[] epochs = {8, 4, 0};
+    Checkpoint.of(12, tip, balances, mentions, positions, 4, epochs).write(file);
+    Checkpoint checkpoint = Checkpoint.read(file);
+    assertEquals(12, checkpoint.height, "height");
+    assertEquals(tip, checkpoint.tip, "tip");
+    assertEquals(balances.size(), checkpoint.ledger.size(), "number of users");
+    for (String user : balances.keySet()) {
+      assertEquals(balances.get(user), checkpoint.ledger.get(user), user + "'s balance");
+    } // for
+    assertEquals(mentions, checkpoint.mentions, "counts");
+    assertArrayEquals(positions, checkpoint.positions, "positions");
+    assertEquals(4, checkpoint.interval, "interval");
+    assertArrayEquals(epochs, checkpoint.epochs, "epochs");
+  } // testRoundTrip(Path)
+
+  /**
+   * A checkpoint matches only a store whose prefix ends with its tip.
+   */
+  @Test
+  public void testMatches() {
+    ArrayBlockStore store = new ArrayBlockStore();
+    for (int i = 0; i < 5; i++) {
+      store.add(TestArrayBlockStore.block(i));
+    } // for
+    HashMap<String, Integer> none = new HashMap<String, Integer>();
+    assertTrue(Checkpoint.of(3, store.get(2).getHash(), none).matches(store), "prefix");
+    assertTrue(Checkpoint.of(5, store.get(4).getHash(), none).matches(store), "whole store");
+    assertFalse(Checkpoint.of(3, store.get(3).getHash(), none).matches(store), "wrong tip");
+    assertFalse(Checkpoint.of(6, store.get(4).getHash(), none).matches(store), "too high");
+  } // testMatches()
+
+  /**
+   * Files that are not checkpoints are refused.
+   */
+  @Test
+  public void testCorrupt(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("checkpoint");
+    Files.write(file, new byte[] {1, 2, 3});
+    assertThrows(IOException.class, () -> Checkpoint.read(file), "too short");
+    HashMap<String, Integer> balances = new HashMap<String, Integer>();
+    balances.put("A", 1);
+    Checkpoint.of(1, Hash.of(new byte[32]), balances).write(file);
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+    assertThrows(IOException.class, () -> Checkpoint.read(file), "cut short");
+  } // testCorrupt(Path)
+
+  /**
+   * Checkpoints whose counts are larger than the file are refused before anything is made for
+   * them.
+   */
+  @Test
+  public void testHugeCounts(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("checkpoint");
+    HashMap<String, Integer> balances = new HashMap<String, Integer>();
+    balances.put("A", 1);
+    Checkpoint.of(1, Hash.of(new byte[32]), balances).write(file);
+    byte[] bytes = Files.readAllBytes(file);
+
+    // The file ends with the counts of positions, the interval, and the count of epochs.
+    ByteBuffer positions = ByteBuffer.wrap(bytes.clone());
+    positions.putInt(bytes.length - 3 * Integer.BYTES, Integer.MAX_VALUE - 8);
+    Files.write(file, positions.array());
+    assertThrows(IOException.class, () -> Checkpoint.read(file), "too many positions");
+    positions.putInt(bytes.length - 3 * Integer.BYTES, -1);
+    Files.write(file, positions.array());
+    assertThrows(IOException.class, () -> Checkpoint.read(file), "negative positions");
+
+    ByteBuffer epochs = ByteBuffer.wrap(bytes.clone());
+    epochs.putInt(bytes.length - Integer.BYTES, Integer.MAX_VALUE - 8);
+    Files.write(file, epochs.array());
+    assertThrows(IOException.class, () -> Checkpoint.read(file), "too many epochs");
+
+    byte[] tip = bytes.clone();
+    tip[3 * Integer.BYTES] = 0x7f;
+    Files.write(file, tip);
+    assertThrows(IOException.class, () -> Checkpoint.read(file), "too long a tip");
+  } // testHugeCounts(Path)
+} // class TestCheckpoint
@@ -0,0 +1,89 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests of resumable mining.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestCheckpointedMiner {
+  /**
+   * A validator that nothing satisfies.
+   */
+  static final HashValidator IMPOSSIBLE = (hash) -> false;
+
+  /**
+   * Where the checkpoints go.
+   */
+  @TempDir
+  Path dir;
+
+  /**
+   * Mining finds a valid block and removes the checkpoint.
+   */
+  @Test
+  public void testMine() throws Exception {
+    Path file = this.dir.resolve("mining.properties");
+    BlockChain chain = new BlockChain(new LeadingZerosValidator(12),
+        new CheckpointedMiner(file, 1024));
+    chain.append(chain.mine(new Transaction("", "A", 10)));
+    chain.check();
+    assertFalse(Files.exists(file), "no checkpoint once the block is found");
+  } // testMine()
+
+  /**
+   * A stopped search leaves a checkpoint that only the same block resumes from.
+   */
+  @Test
+  public void testStopped() {
+    Path file = this.dir.resolve("mining.properties");
+    CheckpointedMiner miner = new CheckpointedMiner(file, 1024);
+    Transaction t = new Transaction("", "A", 10);
+    Hash prev = new Hash(new byte[] {1, 2, 3});
+    HashFunction sha = HashFunction.SHA_256;
+    assertNull(miner.mine(1, t, prev, IMPOSSIBLE, new MiningProgress(50_000_000L)),
+        "nothing found before the deadline");
+    long ranges = miner.resumeRange(1, t, prev, sha);
+    assertTrue(ranges > 0, "some ranges were recorded");
+    assertEquals(0, miner.resumeRange(1, t, prev, HashFunction.SHA3_256),
+        "another hash function starts over");
+    assertEquals(0, miner.resumeRange(2, t, prev, sha), "another block starts over");
+    assertEquals(0, miner.resumeRange(1, new Transaction("", "A", 11), prev, sha),
+        "another transaction starts over");
+    assertEquals(0, new CheckpointedMiner(file, 2048).resumeRange(1, t, prev, sha),
+        "another range size starts over");
+  } // testStopped()
+
+  /**
+   * A new miner skips the ranges recorded in the checkpoint.
+   */
+  @Test
+  public void testResume() throws Exception {
+    Path file = this.dir.resolve("mining.properties");
+    CheckpointedMiner miner = new CheckpointedMiner(file, 1024);
+    Transaction t = new Transaction("", "A", 10);
+    Hash prev = new Hash(new byte[] {1, 2, 3});
+    HashValidator check = new LeadingZerosValidator(8);
+    HashFunction sha = HashFunction.SHA_256;
+    long first = miner.mine(1, t, prev, check).getNonce();
+
+    // Pretend we had already searched past that nonce.
+    Properties block = miner.describe(1, t, prev, sha);
+    miner.save(block, first / 1024 + 1);
+    long resumed = new CheckpointedMiner(file, 1024).mine(1, t, prev, check).getNonce();
+    assertTrue(resumed >= (first / 1024 + 1) * 1024, "search resumed after the checkpoint");
+  } // testResume()
+} // class TestCheckpointedMiner
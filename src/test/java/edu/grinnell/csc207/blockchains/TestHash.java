@@ -5,6 +5,14 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import org.junit.jupiter.api.Test;
 
@@ -106,5 +114,124 @@ public class TestHash {
     assertFalse(h.equals(new Hash(bytes)), 
        "a hash does not equal a hash made from its modified bytes");
   } // testReturnBytes
-  
+
+  /**
+   * Compact 32-byte hashes behave like array-backed hashes of the same bytes.
+   */
+  @Test
+  public void testCompact() {
+    byte[] bytes = new byte[32];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (i * 37 - 100);
+    } // for
+    Hash compact = Hash.of(bytes);
+    Hash plain = new Hash(bytes);
+    assertTrue(compact instanceof Hash32, "32-byte hashes are compact");
+    assertEquals(32, compact.length(), "length of compact hash");
+    for (int i = 0; i < bytes.length; i++) {
+      assertEquals(bytes[i], compact.get(i), "element " + i + " of compact hash");
+    } // for
+    assertArrayEquals(bytes, compact.getBytes(), "bytes of compact hash");
+    assertTrue(compact.equals(plain), "compact hash equals array-backed hash");
+    assertTrue(plain.equals(compact), "array-backed hash equals compact hash");
+    assertEquals(plain.hashCode(), compact.hashCode(), "hash codes agree");
+    assertEquals(plain.toString(), compact.toString(), "strings agree");
+    bytes[31]++;
+    assertFalse(compact.equals(Hash.of(bytes)), "compact hashes differ in the last byte");
+    assertThrows(IndexOutOfBoundsException.class, () -> compact.get(32),
+        "compact hash rejects out-of-range index");
+  } // testCompact
+
+  /**
+   * Hex strings convert back to the same hash.
+   */
+  @Test
+  public void testFromHex() {
+    Hash h = new Hash(new byte[] {0, 15, -1, 16, 127, -128});
+    assertEquals(h, Hash.fromHex(h.toString()), "round trip through hex");
+    assertEquals(h, Hash.fromHex("000fff107f80"), "lowercase hex is accepted");
+    byte[] bytes = new byte[32];
+    bytes[3] = 0x11;
+    Hash compact = Hash.of(bytes);
+    assertEquals(compact, Hash.fromHex(compact.toString()), "round trip of compact hash");
+    assertThrows(IllegalArgumentException.class, () -> Hash.fromHex("abc"),
+        "odd-length hex is rejected");
+    assertThrows(IllegalArgumentException.class, () -> Hash.fromHex("0g"),
+        "non-hex digits are rejected");
+  } // testFromHex
+
+  /**
+   * Leading zeros are counted across words.
+   */
+  @Test
+  public void testLeadingZeros() {
+    byte[] bytes = new byte[32];
+    assertEquals(256, Hash.of(bytes).leadingZeros(), "all zeros");
+    bytes[9] = 1;
+    assertEquals(79, Hash.of(bytes).leadingZeros(), "one bit in the second word");
+    assertEquals(79, new Hash(bytes).leadingZeros(), "array-backed hash agrees");
+    assertEquals(12, new Hash(new byte[] {0, 8}).leadingZeros(), "short hash");
+  } // testLeadingZeros
+
+  /**
+   * Hashes write the same bytes to digests, buffers, and streams, whatever their form.
+   *
+   * @throws IOException if the stream fails (it shouldn't).
+   * @throws NoSuchAlgorithmException if SHA-256 is missing (it shouldn't be).
+   */
+  @Test
+  public void testWriteTo() throws IOException, NoSuchAlgorithmException {
+    byte[] bytes = new byte[32];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (i * 11 + 1);
+    } // for
+    byte[] expected = MessageDigest.getInstance("SHA-256").digest(bytes);
+    ByteBuffer holder = ByteBuffer.allocate(40);
+    holder.position(5);
+    holder.put(bytes);
+    Hash[] hashes = {new Hash(bytes), Hash.of(bytes), Hash.view(holder, 5, 32)};
+    for (Hash h : hashes) {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      h.writeTo(md);
+      assertArrayEquals(expected, md.digest(), "digest of " + h.getClass().getSimpleName());
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      h.writeTo(out);
+      assertArrayEquals(bytes, out.toByteArray(), "stream of " + h.getClass().getSimpleName());
+      ByteBuffer little = ByteBuffer.allocate(33).order(ByteOrder.LITTLE_ENDIAN);
+      little.put((byte) 99);
+      h.writeTo(little);
+      assertEquals(33, little.position(), "buffer position after writing");
+      byte[] written = new byte[32];
+      little.get(1, written);
+      assertArrayEquals(bytes, written, "buffer of " + h.getClass().getSimpleName());
+    } // for
+  } // testWriteTo
+
+  /**
+   * Views read through to the buffer and equal other hashes of the same bytes.
+   */
+  @Test
+  public void testView() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+    buffer.put(new byte[] {9, 9, 1, 1, 2, 3, 5, 8, 13, 21, 34});
+    Hash view = Hash.view(buffer, 2, 9);
+    Hash plain = new Hash(new byte[] {1, 1, 2, 3, 5, 8, 13, 21, 34});
+    assertEquals(9, view.length(), "length of view");
+    assertEquals(21, view.get(7), "element 7 of view");
+    assertEquals(11, buffer.position(), "viewing leaves the position alone");
+    assertTrue(view.equals(plain), "view equals array-backed hash");
+    assertTrue(plain.equals(view), "array-backed hash equals view");
+    assertEquals(plain.hashCode(), view.hashCode(), "hash codes agree");
+    assertEquals(plain.toString(), view.toString(), "strings agree");
+    assertTrue(view.matches(plain.getBytes()), "view matches its bytes");
+    byte[] copy = view.getBytes();
+    copy[0] = 7;
+    assertEquals(1, view.get(0), "getBytes returns a copy");
+    buffer.put(2, (byte) 4);
+    assertEquals(4, view.get(0), "view sees changes to the buffer");
+    assertThrows(IndexOutOfBoundsException.class, () -> view.get(9),
+        "view rejects out-of-range index");
+    assertThrows(IndexOutOfBoundsException.class, () -> Hash.view(buffer, 10, 7),
+        "views must fit in the buffer");
+  } // testView
 } // class TestHash
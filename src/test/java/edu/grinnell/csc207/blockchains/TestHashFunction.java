@@ -0,0 +1,86 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests of the hash functions chains can use.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestHashFunction {
+  /**
+   * Each function hashes blocks the way the platform's digest does.
+   */
+  @Test
+  public void testMatchesPlatform() throws Exception {
+    Transaction t = new Transaction("Source", "Target", 25);
+    Hash prev = new Hash(new byte[] {4, 5, 6});
+    for (HashFunction function : HashFunction.values()) {
+      MessageDigest md = MessageDigest.getInstance(function.getAlgorithm());
+      md.update(ByteBuffer.allocate(Integer.BYTES).putInt(3).array());
+      md.update("Source".getBytes());
+      md.update("Target".getBytes());
+      md.update(ByteBuffer.allocate(Integer.BYTES).putInt(25).array());
+      md.update(prev.getBytes());
+      md.update(ByteBuffer.allocate(Long.BYTES).putLong(-7).array());
+      byte[] expected = md.digest();
+      assertArrayEquals(expected, Block.computeHash(function, 3, t, prev, -7),
+          function + " block hash");
+      assertEquals(expected.length, function.length(), function + " length");
+      Block block = new Block(3, t, prev, -7, function);
+      assertArrayEquals(expected, block.getHash().getBytes(), function + " block");
+    } // for
+  } // testMatchesPlatform()
+
+  /**
+   * Chains mine, append, and check with each function.
+   */
+  @Test
+  public void testChains() throws Exception {
+    for (HashFunction function : HashFunction.values()) {
+      BlockChain chain = new BlockChain(new LeadingZerosValidator(8), new SequentialMiner(),
+          function);
+      chain.append(chain.mine(new Transaction("", "A", 20)));
+      chain.append(chain.mine(new Transaction("A", "B", 5)));
+      chain.check();
+      assertEquals(function, chain.mine(new Transaction("B", "A", 1)).getHashFunction(),
+          function + " blocks");
+    } // for
+  } // testChains()
+
+  /**
+   * Blocks hashed with another function cannot be appended.
+   */
+  @Test
+  public void testMismatch() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true, new SequentialMiner(),
+        HashFunction.SHA_512_256);
+    Block block = new Block(1, new Transaction("", "A", 1), chain.getHash(), 0);
+    assertThrows(IllegalArgumentException.class, () -> chain.append(block),
+        "SHA-256 block on a SHA-512/256 chain");
+  } // testMismatch()
+
+  /**
+   * The benchmark measures every function and picks the fastest.
+   */
+  @Test
+  public void testBenchmark() {
+    Map<HashFunction, Double> rates = HashFunction.benchmark();
+    assertEquals(HashFunction.values().length, rates.size(), "every function measured");
+    HashFunction fastest = HashFunction.fastest(rates);
+    for (double rate : rates.values()) {
+      assertTrue(rates.get(fastest) >= rate, "fastest is at least as fast as " + rate);
+    } // for
+  } // testBenchmark()
+} // class TestHashFunction
@@ -0,0 +1,85 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests of the index from hashes to heights.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestHashIndex {
+  /**
+   * Every block is found by its hash, through several rounds of growth.
+   */
+  @Test
+  public void testFind() {
+    ArrayBlockStore store = new ArrayBlockStore();
+    store.add(TestArrayBlockStore.block(0));
+    HashIndex index = new HashIndex(store);
+    for (int i = 1; i < 5000; i++) {
+      store.add(TestArrayBlockStore.block(i));
+      index.add(i);
+    } // for
+    assertEquals(5000, index.count, "number indexed");
+    for (int i = 0; i < 5000; i++) {
+      assertEquals(i, index.find(store.get(i).getHash()), "height of block " + i);
+    } // for
+    assertEquals(-1, index.find(TestArrayBlockStore.block(5000).getHash()), "missing block");
+    assertEquals(-1, index.find(new Hash(new byte[] {1, 2, 3})), "unrelated hash");
+  } // testFind()
+
+  /**
+   * Removed blocks are no longer found, and the rest still are.
+   */
+  @Test
+  public void testRemove() {
+    ArrayBlockStore store = new ArrayBlockStore();
+    for (int i = 0; i < 300; i++) {
+      store.add(TestArrayBlockStore.block(i));
+    } // for
+    HashIndex index = new HashIndex(store);
+    for (int i = 299; i >= 100; i--) {
+      Block removed = store.removeLast();
+      index.remove(i, removed.getHash());
+      assertEquals(-1, index.find(removed.getHash()), "block " + i + " removed");
+    } // for
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, index.find(store.get(i).getHash()), "height of block " + i);
+    } // for
+    store.add(TestArrayBlockStore.block(100));
+    index.add(100);
+    assertEquals(100, index.find(store.get(100).getHash()), "block added again");
+  } // testRemove()
+
+  /**
+   * Colliding hash codes are told apart by their hashes.
+   */
+  @Test
+  public void testCollisions() {
+    ArrayBlockStore store = new ArrayBlockStore();
+    HashIndex index = new HashIndex(store);
+    // The halves of each hash cancel in Long.hashCode, so all 50 share a hash code.
+    for (int i = 0; i < 50; i++) {
+      byte[] bytes = new byte[8];
+      bytes[3] = (byte) i;
+      bytes[7] = (byte) i;
+      Hash colliding = Hash.of(bytes);
+      store.add(new Block(i, new Transaction("", "A", i), colliding, i) {
+        @Override
+        public Hash getHash() {
+          return colliding;
+        } // getHash()
+      });
+      index.add(i);
+    } // for
+    assertEquals(store.get(0).getHash().hashCode(), store.get(49).getHash().hashCode(),
+        "hash codes collide");
+    for (int i = 0; i < 50; i++) {
+      assertEquals(i, index.find(store.get(i).getHash()), "height of block " + i);
+    } // for
+  } // testCollisions()
+} // class TestHashIndex
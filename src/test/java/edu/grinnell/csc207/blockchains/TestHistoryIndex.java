@@ -0,0 +1,55 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests of the index of each user's transactions.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestHistoryIndex {
+  /**
+   * Heights come back in order, a page at a time.
+   */
+  @Test
+  public void testPages() {
+    HistoryIndex index = new HistoryIndex();
+    for (int height = 1; height <= 100; height++) {
+      index.add(height, new Transaction((height % 2 == 0) ? "A" : "", "B", height));
+    } // for
+    assertEquals(50, index.count("A"), "A is in the even blocks");
+    assertEquals(100, index.count("B"), "B is in every block");
+    assertEquals(0, index.count(""), "deposits have no source user");
+    assertArrayEquals(new int[] {2, 4, 6}, index.heights("A", 0, 3), "first page");
+    assertArrayEquals(new int[] {8, 10, 12}, index.heights("A", 7, 3), "from an odd height");
+    assertArrayEquals(new int[] {98, 100}, index.heights("A", 98, 3), "last page");
+    assertArrayEquals(new int[] {}, index.heights("A", 101, 3), "past the end");
+    assertArrayEquals(new int[] {}, index.heights("C", 0, 3), "unknown user");
+    assertArrayEquals(new int[] {}, index.heights("A", 0, 0), "empty page");
+    assertEquals(100, index.heights("B", 0, Integer.MAX_VALUE).length, "unlimited page");
+  } // testPages()
+
+  /**
+   * Removing blocks removes their heights, and users with no blocks left.
+   */
+  @Test
+  public void testRemove() {
+    HistoryIndex index = new HistoryIndex();
+    index.add(1, new Transaction("", "A", 10));
+    index.add(2, new Transaction("A", "B", 5));
+    index.add(3, new Transaction("B", "B", 1));
+    assertArrayEquals(new int[] {2, 3}, index.heights("B", 0, 10), "self-transfer listed once");
+    index.remove(3, new Transaction("B", "B", 1));
+    assertArrayEquals(new int[] {2}, index.heights("B", 0, 10), "self-transfer removed");
+    index.remove(2, new Transaction("A", "B", 5));
+    assertEquals(0, index.count("B"), "B has no blocks");
+    assertFalse(index.postings.containsKey("B"), "B is forgotten");
+    assertArrayEquals(new int[] {1}, index.heights("A", 0, 10), "A keeps the deposit");
+  } // testRemove()
+} // class TestHistoryIndex
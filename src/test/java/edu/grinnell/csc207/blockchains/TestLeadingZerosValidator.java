@@ -0,0 +1,53 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our LeadingZerosValidator class.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestLeadingZerosValidator {
+  /**
+   * Whole bytes of zeros.
+   */
+  @Test
+  public void testWholeBytes() {
+    HashValidator v = new LeadingZerosValidator(16);
+    assertEquals(16, v.leadingZeroBits(), "reports its bits");
+    assertTrue(v.isValid(new Hash(new byte[] {0, 0, 1})), "two zero bytes");
+    assertTrue(v.isValid(new Hash(new byte[] {0, 0})), "exactly two zero bytes");
+    assertFalse(v.isValid(new Hash(new byte[] {0, 1, 0})), "one zero byte");
+    assertFalse(v.isValid(new Hash(new byte[] {0})), "too short");
+  } // testWholeBytes()
+
+  /**
+   * Partial bytes of zeros.
+   */
+  @Test
+  public void testPartialBytes() {
+    HashValidator v = new LeadingZerosValidator(11);
+    assertTrue(v.isValid(new Hash(new byte[] {0, 0x1f})), "eleven zero bits");
+    assertFalse(v.isValid(new Hash(new byte[] {0, 0x20})), "ten zero bits");
+    assertFalse(v.isValid(new Hash(new byte[] {(byte) 0x80, 0})), "no zero bits");
+    assertTrue(new LeadingZerosValidator(0).isValid(new Hash(new byte[] {})), "nothing required");
+  } // testPartialBytes()
+
+  /**
+   * Raw bytes at an offset.
+   */
+  @Test
+  public void testRawBytes() {
+    HashValidator v = new LeadingZerosValidator(12);
+    byte[] bytes = new byte[] {(byte) 0xff, 0, 0x0f, (byte) 0xff};
+    assertTrue(v.isValid(bytes, 1, 3), "twelve zero bits after the offset");
+    assertFalse(v.isValid(bytes, 0, 4), "no zero bits at the start");
+    assertFalse(v.isValid(bytes, 1, 1), "too short");
+  } // testRawBytes()
+} // class TestLeadingZerosValidator
@@ -0,0 +1,93 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests of the immutable ledger.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestLedger {
+  /**
+   * The ledger agrees with a hash map after many random changes, and old ledgers don't change.
+   */
+  @Test
+  public void testAgreesWithMap() {
+    Random random = new Random(207);
+    HashMap<String, Integer> expected = new HashMap<String, Integer>();
+    Ledger ledger = Ledger.EMPTY;
+    Ledger halfway = null;
+    HashMap<String, Integer> expectedHalfway = null;
+    for (int i = 0; i < 20000; i++) {
+      String user = "user" + random.nextInt(5000);
+      int balance = random.nextInt(1000);
+      expected.put(user, balance);
+      ledger = ledger.with(user, balance);
+      if (i == 10000) {
+        halfway = ledger;
+        expectedHalfway = new HashMap<String, Integer>(expected);
+      } // if
+    } // for
+    assertEquals(expected.size(), ledger.size(), "number of users");
+    for (String user : expected.keySet()) {
+      assertEquals(expected.get(user), ledger.get(user), "balance of " + user);
+    } // for
+    for (String user : expectedHalfway.keySet()) {
+      assertEquals(expectedHalfway.get(user), halfway.get(user), "old balance of " + user);
+    } // for
+    assertEquals(expectedHalfway.size(), halfway.size(), "old number of users");
+    assertNull(ledger.get("nobody"), "missing user");
+    assertEquals(0, ledger.balance("nobody"), "missing user has nothing");
+
+    HashSet<String> users = new HashSet<String>();
+    Iterator<String> iterator = ledger.users();
+    while (iterator.hasNext()) {
+      assertTrue(users.add(iterator.next()), "each user once");
+    } // while
+    assertEquals(expected.keySet(), users, "every user");
+  } // testAgreesWithMap()
+
+  /**
+   * Users whose hash codes are identical are kept apart.
+   */
+  @Test
+  public void testCollisions() {
+    assertEquals("Aa".hashCode(), "BB".hashCode(), "these strings collide");
+    Ledger ledger = Ledger.EMPTY.with("Aa", 1).with("BB", 2).with("AaAa", 3).with("BBBB", 4);
+    ledger = ledger.with("AaBB", 5).with("Aa", 6);
+    assertEquals(5, ledger.size(), "number of users");
+    assertEquals(6, ledger.get("Aa"), "Aa");
+    assertEquals(2, ledger.get("BB"), "BB");
+    assertEquals(5, ledger.get("AaBB"), "AaBB");
+    assertNull(ledger.get("BBAa"), "BBAa collides but is missing");
+    assertFalse(ledger.contains("BBAa"), "BBAa is not a user");
+  } // testCollisions()
+
+  /**
+   * Transactions move money, and undoing them moves it back.
+   */
+  @Test
+  public void testTransactions() {
+    Ledger ledger = Ledger.EMPTY.apply(new Transaction("", "A", 100));
+    Ledger after = ledger.apply(new Transaction("A", "B", 30));
+    assertEquals(70, after.balance("A"), "A paid");
+    assertEquals(30, after.balance("B"), "B was paid");
+    Ledger undone = after.undo(new Transaction("A", "B", 30));
+    assertEquals(100, undone.balance("A"), "A refunded");
+    assertTrue(undone.contains("B"), "B stays in the ledger");
+    assertEquals(0, undone.balance("B"), "B has nothing");
+    assertFalse(ledger.contains(""), "deposits have no source user");
+  } // testTransactions()
+} // class TestLedger
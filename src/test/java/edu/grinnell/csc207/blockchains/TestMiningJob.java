@@ -0,0 +1,70 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests of mining in the background.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestMiningJob {
+  /**
+   * A validator that nothing satisfies.
+   */
+  static final HashValidator IMPOSSIBLE = (hash) -> false;
+
+  /**
+   * A block mined in the background can be appended.
+   */
+  @Test
+  public void testCollect() throws Exception {
+    BlockChain chain = new BlockChain(new LeadingZerosValidator(4));
+    MiningJob job = chain.mineAsync(new Transaction("", "A", 10));
+    Block block = job.get();
+    assertTrue(job.isDone(), "job is done once we have the block");
+    assertTrue(job.getAttempts() > 0, "job counted its attempts");
+    chain.append(block);
+    assertEquals(10, chain.balance("A"), "balance after appending block mined in background");
+  } // testCollect()
+
+  /**
+   * Jobs can be watched and then cancelled.
+   */
+  @Test
+  public void testCancel() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.setMiner(new SequentialMiner());
+    MiningJob job = new MiningJob(chain.miner, 1, new Transaction("", "A", 1), chain.getHash(),
+        IMPOSSIBLE, 0);
+    assertThrows(TimeoutException.class, () -> job.get(50, TimeUnit.MILLISECONDS),
+        "impossible job is not done quickly");
+    assertTrue(job.getElapsed(TimeUnit.MILLISECONDS) >= 50, "elapsed time grows");
+    assertTrue(job.cancel(true), "cancelling a running job");
+    assertThrows(CancellationException.class, () -> job.get(), "cancelled job has no block");
+    assertTrue(job.isCancelled(), "job reports that it was cancelled");
+  } // testCancel()
+
+  /**
+   * Jobs with a deadline give up on their own.
+   */
+  @Test
+  public void testTimeout() throws Exception {
+    try (ParallelMiner miner = new ParallelMiner(2)) {
+      MiningJob job = new MiningJob(miner, 1, new Transaction("", "A", 1),
+          new Hash(new byte[] {1}), IMPOSSIBLE, TimeUnit.MILLISECONDS.toNanos(100));
+      assertThrows(CancellationException.class, () -> job.get(), "timed-out job has no block");
+      assertTrue(job.isTimedOut(), "job reports that it timed out");
+      assertTrue(job.getHashesPerSecond() > 0, "job reports its hash rate");
+    } // try
+  } // testTimeout()
+} // class TestMiningJob
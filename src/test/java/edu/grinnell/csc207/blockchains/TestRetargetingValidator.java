@@ -0,0 +1,190 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests of validators that adjust their difficulty.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestRetargetingValidator {
+  /**
+   * Fast blocks raise the difficulty, and old blocks are checked at their own difficulty.
+   */
+  @Test
+  public void testRaise() throws Exception {
+    RetargetingValidator v = new RetargetingValidator(0, 1, TimeUnit.HOURS, 2);
+    BlockChain chain = new BlockChain(v);
+    chain.append(chain.mine(new Transaction("", "A", 1)));
+    assertEquals(0, v.atHeight(1).leadingZeroBits(), "first epoch unchanged");
+    assertEquals(4, v.atHeight(2).leadingZeroBits(), "second epoch is harder");
+    assertEquals(4, v.leadingZeroBits(), "the current difficulty");
+    chain.append(chain.mine(new Transaction("", "A", 1)));
+    chain.append(chain.mine(new Transaction("", "A", 1)));
+    assertEquals(8, v.atHeight(4).leadingZeroBits(), "third epoch is harder still");
+    chain.check();
+  } // testRaise()
+
+  /**
+   * Slow blocks lower the difficulty.
+   */
+  @Test
+  public void testLower() throws Exception {
+    RetargetingValidator v = new RetargetingValidator(6, 1, TimeUnit.NANOSECONDS, 2);
+    BlockChain chain = new BlockChain(v);
+    chain.append(chain.mine(new Transaction("", "A", 1)));
+    assertEquals(2, v.atHeight(2).leadingZeroBits(), "second epoch is easier");
+    chain.append(chain.mine(new Transaction("", "A", 1)));
+    chain.append(chain.mine(new Transaction("", "A", 1)));
+    assertEquals(0, v.atHeight(4).leadingZeroBits(), "never below zero bits");
+    chain.check();
+  } // testLower()
+
+  /**
+   * The difficulty follows the times recorded in the blocks, not when they were appended.
+   */
+  @Test
+  public void testBlockTimes() throws Exception {
+    RetargetingValidator v = new RetargetingValidator(4, 1, TimeUnit.MINUTES, 2);
+    BlockChain chain = new BlockChain(v);
+    Transaction t = new Transaction("", "A", 1);
+    Block mined = chain.mine(t);
+    Block late = new Block(1, t, mined.getPrevHash(), mined.getNonce(), mined.getHash(),
+        HashFunction.SHA_256, chain.getBlock(0).getTime() + TimeUnit.HOURS.toNanos(1));
+    chain.append(late);
+    assertEquals(0, v.atHeight(2).leadingZeroBits(), "an hour per block is slow");
+    chain.check();
+  } // testBlockTimes()
+
+  /**
+   * Removing the block that ended an epoch forgets the difficulty it set.
+   */
+  @Test
+  public void testRemove() throws Exception {
+    RetargetingValidator v = new RetargetingValidator(0, 1, TimeUnit.HOURS, 2);
+    BlockChain chain = new BlockChain(v);
+    chain.append(chain.mine(new Transaction("", "A", 1)));
+    assertEquals(4, v.leadingZeroBits(), "raised after the first epoch");
+    chain.removeLast();
+    assertEquals(0, v.leadingZeroBits(), "back to the first epoch");
+    chain.append(chain.mine(new Transaction("", "A", 1)));
+    assertEquals(4, v.leadingZeroBits(), "raised again");
+  } // testRemove()
+
+  /**
+   * Blocks must meet the difficulty at the height they are appended.
+   */
+  @Test
+  public void testAppendChecksHeight() throws Exception {
+    RetargetingValidator v = new RetargetingValidator(0, 1, TimeUnit.HOURS, 2);
+    BlockChain chain = new BlockChain(v);
+    chain.append(chain.mine(new Transaction("", "A", 1)));
+    Transaction t = new Transaction("", "A", 1);
+    long nonce = 0;
+    while (v.atHeight(2).isValid(new Block(2, t, chain.getHash(), nonce).getHash())) {
+      nonce++;
+    } // while
+    Block easy = new Block(2, t, chain.getHash(), nonce);
+    assertThrows(IllegalArgumentException.class, () -> chain.append(easy),
+        "block that only meets the old difficulty");
+  } // testAppendChecksHeight()
+
+  /**
+   * A validator for a chain rebuilt from disk, even without a checkpoint, works out the
+   * difficulty of the stored epochs from their blocks and retargets as usual after them.
+   */
+  @Test
+  public void testChainLoaded(@TempDir Path dir) throws Exception {
+    RetargetingValidator first = new RetargetingValidator(8, 1, TimeUnit.NANOSECONDS, 2);
+    try (BlockChain chain = BlockChain.open(dir, first, new SequentialMiner(),
+        HashFunction.SHA_256)) {
+      for (int i = 0; i < 7; i++) {
+        chain.append(chain.mine(new Transaction("", "A", 1)));
+      } // for
+    } // try
+    Files.delete(dir.resolve(BlockChain.CHECKPOINT));
+
+    RetargetingValidator v = new RetargetingValidator(8, 1, TimeUnit.NANOSECONDS, 2);
+    try (BlockChain chain = BlockChain.open(dir, v, new SequentialMiner(),
+        HashFunction.SHA_256)) {
+      for (int height = 0; height <= 8; height++) {
+        assertEquals(first.atHeight(height).leadingZeroBits(),
+            v.atHeight(height).leadingZeroBits(), "difficulty at height " + height);
+      } // for
+      chain.checkAll();
+      chain.append(chain.mine(new Transaction("", "A", 1)));
+      chain.append(chain.mine(new Transaction("", "A", 1)));
+      chain.check();
+    } // try
+  } // testChainLoaded(Path)
+
+  /**
+   * A chain whose blocks are too easy for the difficulty their times call for is rejected.
+   */
+  @Test
+  public void testChainLoadedTooEasy(@TempDir Path dir) throws Exception {
+    try (BlockChain chain = BlockChain.open(dir, new LeadingZerosValidator(0),
+        new SequentialMiner(), HashFunction.SHA_256)) {
+      for (int i = 0; i < 4; i++) {
+        chain.append(chain.mine(new Transaction("", "A", 1)));
+      } // for
+    } // try
+    Files.delete(dir.resolve(BlockChain.CHECKPOINT));
+    RetargetingValidator v = new RetargetingValidator(0, 1, TimeUnit.HOURS, 2);
+    assertThrows(IOException.class, () -> BlockChain.open(dir, v, new SequentialMiner(),
+        HashFunction.SHA_256), "fast blocks that met no difficulty");
+  } // testChainLoadedTooEasy(Path)
+
+  /**
+   * A chain reopened from its checkpoint takes the difficulty of the epochs the checkpoint
+   * covers from it, not from the times in the blocks.
+   */
+  @Test
+  public void testCheckpointEpochs(@TempDir Path dir) throws Exception {
+    RetargetingValidator first = new RetargetingValidator(8, 1, TimeUnit.NANOSECONDS, 2);
+    try (BlockChain chain = BlockChain.open(dir, first, new SequentialMiner(),
+        HashFunction.SHA_256)) {
+      for (int i = 0; i < 7; i++) {
+        chain.append(chain.mine(new Transaction("", "A", 1)));
+      } // for
+      chain.check();
+    } // try
+
+    // Worked out from the times, the stored epochs would now be far too easy.
+    RetargetingValidator v = new RetargetingValidator(8, 1, TimeUnit.HOURS, 2);
+    try (BlockChain chain = BlockChain.open(dir, v, new SequentialMiner(),
+        HashFunction.SHA_256)) {
+      assertArrayEquals(first.epochBits(8), v.epochBits(8), "epochs from the checkpoint");
+      chain.checkAll();
+    } // try
+  } // testCheckpointEpochs(Path)
+
+  /**
+   * Records of epochs made with another interval or first difficulty are ignored.
+   */
+  @Test
+  public void testRestore() {
+    RetargetingValidator v = new RetargetingValidator(8, 1, TimeUnit.SECONDS, 2);
+    assertFalse(v.restore(3, new int[] {8, 4}), "another interval");
+    assertFalse(v.restore(2, new int[] {6, 4}), "another first difficulty");
+    assertFalse(v.restore(2, new int[] {8, -1}), "no such difficulty");
+    assertArrayEquals(new int[] {8}, v.epochBits(10), "nothing restored");
+    assertTrue(v.restore(2, new int[] {8, 4, 2}), "a matching record");
+    assertArrayEquals(new int[] {8, 4}, v.epochBits(3), "epochs set by three blocks");
+    assertEquals(2, v.atHeight(5).leadingZeroBits(), "the third epoch");
+  } // testRestore()
+} // class TestRetargetingValidator
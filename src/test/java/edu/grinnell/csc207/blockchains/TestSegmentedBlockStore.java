@@ -0,0 +1,253 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the on-disk block store.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestSegmentedBlockStore {
+  /**
+   * Segments small enough that a few blocks fill one.
+   */
+  static final int SMALL = 256;
+
+  /**
+   * Determine if two blocks hold the same things.
+   *
+   * @param expected The block we expect.
+   * @param actual The block we got.
+   * @param message What to say if they differ.
+   */
+  static void assertSameBlock(Block expected, Block actual, String message) {
+    assertEquals(expected.toString(), actual.toString(), message);
+    assertEquals(expected.getHash(), actual.getHash(), message + " (hash)");
+    assertEquals(expected.getTime(), actual.getTime(), message + " (time)");
+  } // assertSameBlock(Block, Block, String)
+
+  /**
+   * Blocks come back by height, across several segments, and again after reopening.
+   */
+  @Test
+  public void testAddAndReopen(@TempDir Path dir) throws Exception {
+    Block[] blocks = new Block[40];
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, SMALL)) {
+      for (int i = 0; i < blocks.length; i++) {
+        blocks[i] = TestArrayBlockStore.block(i);
+        store.add(blocks[i]);
+      } // for
+      assertEquals(blocks.length, store.size(), "size after adding");
+      for (int i = 0; i < blocks.length; i++) {
+        assertSameBlock(blocks[i], store.get(i), "block " + i);
+      } // for
+      assertThrows(IndexOutOfBoundsException.class, () -> store.get(blocks.length),
+          "no block past the end");
+    } // try
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA3_256)) {
+      assertEquals(HashFunction.SHA_256, store.getHashFunction(), "keeps its hash function");
+      assertEquals(blocks.length, store.size(), "size after reopening");
+      for (int i = 0; i < blocks.length; i++) {
+        assertSameBlock(blocks[i], store.get(i), "block " + i + " after reopening");
+      } // for
+    } // try
+  } // testAddAndReopen(Path)
+
+  /**
+   * Removals survive reopening, whether or not a view could see the removed blocks.
+   */
+  @Test
+  public void testRemoveLast(@TempDir Path dir) throws Exception {
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, SMALL)) {
+      for (int i = 0; i < 10; i++) {
+        store.add(TestArrayBlockStore.block(i));
+      } // for
+      assertEquals(9, store.removeLast().getNum(), "removed the last block");
+      store.view();
+      assertEquals(8, store.removeLast().getNum(), "removed a block a view can see");
+      store.add(TestArrayBlockStore.block(108));
+      store.add(TestArrayBlockStore.block(109));
+      assertEquals(109, store.removeLast().getNum(), "removed a block no view can see");
+    } // try
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, SMALL)) {
+      assertEquals(9, store.size(), "size after reopening");
+      assertEquals(108, store.getLast().getNum(), "replacement after reopening");
+      while (store.size() > 0) {
+        store.removeLast();
+      } // while
+      assertThrows(NoSuchElementException.class, () -> store.removeLast(),
+          "cannot remove from an empty store");
+    } // try
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, SMALL)) {
+      assertEquals(0, store.size(), "empty after reopening");
+      store.add(TestArrayBlockStore.block(0));
+      assertEquals(0, store.getLast().getNum(), "can add again");
+    } // try
+  } // testRemoveLast(Path)
+
+  /**
+   * Views keep the blocks they had, even when the store removes and replaces them.
+   */
+  @Test
+  public void testView(@TempDir Path dir) throws Exception {
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, SMALL)) {
+      Block[] added = new Block[10];
+      for (int i = 0; i < added.length; i++) {
+        added[i] = TestArrayBlockStore.block(i);
+        store.add(added[i]);
+      } // for
+      BlockStore view = store.view();
+      Block old = view.get(9);
+      store.removeLast();
+      store.removeLast();
+      store.add(TestArrayBlockStore.block(100));
+      store.add(TestArrayBlockStore.block(101));
+      store.add(TestArrayBlockStore.block(102));
+      assertEquals(10, view.size(), "view keeps its size");
+      assertSameBlock(old, view.get(9), "view keeps its blocks");
+      assertSameBlock(added[9], old, "blocks from views do not change");
+      assertEquals(8, view.get(8).getNum(), "view does not see the replacement");
+      assertEquals(101, store.get(9).getNum(), "store sees the replacement");
+      assertThrows(UnsupportedOperationException.class,
+          () -> view.add(TestArrayBlockStore.block(5)), "views are read-only");
+    } // try
+  } // testView(Path)
+
+  /**
+   * Given a checkpoint that fits the log, the store reads only the records after its prefix;
+   * given one that does not, it reads them all.
+   */
+  @Test
+  public void testResume(@TempDir Path dir) throws Exception {
+    long[] positions;
+    Hash tip;
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, SMALL)) {
+      for (int i = 0; i < 10; i++) {
+        store.add(TestArrayBlockStore.block(i));
+      } // for
+      positions = store.prefixPositions(6);
+      tip = store.get(5).getHash();
+      store.view();
+      store.removeLast();
+      store.add(TestArrayBlockStore.block(109));
+    } // try
+
+    // Spoil a record in the prefix, which only a full read of the log would notice.
+    Path file = dir.resolve(String.format(SegmentedBlockStore.SEGMENT_NAME,
+        (int) (positions[2] >>> 32)));
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[(int) positions[2] + Integer.BYTES] = 9;
+    Files.write(file, bytes);
+
+    Checkpoint fits = new Checkpoint(6, tip, Ledger.EMPTY, new HashMap<String, Integer>(),
+        positions);
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, SMALL,
+        fits)) {
+      assertEquals(10, store.size(), "size after resuming");
+      assertEquals(5, store.get(5).getNum(), "last block of the prefix");
+      assertEquals(109, store.getLast().getNum(), "blocks after the prefix");
+    } // try
+    Checkpoint wrong = new Checkpoint(6, TestArrayBlockStore.block(4).getHash(), Ledger.EMPTY,
+        new HashMap<String, Integer>(), positions);
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, SMALL,
+        wrong)) {
+      assertEquals(2, store.size(), "without the checkpoint, the spoiled record ends the log");
+    } // try
+  } // testResume(Path)
+
+  /**
+   * A record whose contents do not match its checksum, as after a crash in the middle of
+   * writing it, ends the log, and the store goes on from there.
+   */
+  @Test
+  public void testTornRecord(@TempDir Path dir) throws Exception {
+    long[] positions;
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, SMALL)) {
+      for (int i = 0; i < 10; i++) {
+        store.add(TestArrayBlockStore.block(i));
+      } // for
+      positions = store.prefixPositions(10);
+    } // try
+
+    Path file = dir.resolve(String.format(SegmentedBlockStore.SEGMENT_NAME,
+        (int) (positions[7] >>> 32)));
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[(int) positions[7] + SegmentedBlockStore.RECORD_HEADER + 3] ^= 1;
+    Files.write(file, bytes);
+
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, SMALL)) {
+      assertEquals(7, store.size(), "the log ends before the torn record");
+      assertEquals(6, store.getLast().getNum(), "the blocks before it are intact");
+      store.add(TestArrayBlockStore.block(107));
+    } // try
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, SMALL)) {
+      assertEquals(8, store.size(), "the new block follows the old ones");
+      assertEquals(107, store.getLast().getNum(), "the new block");
+    } // try
+  } // testTornRecord(Path)
+
+  /**
+   * A crash that loses the end of one segment but not the segments after it ends the log where
+   * the loss begins, rather than skipping to the records in later segments.
+   */
+  @Test
+  public void testTornSegment(@TempDir Path dir) throws Exception {
+    int size = 2 * SMALL;
+    long[] positions;
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, size)) {
+      for (int i = 0; i < 12; i++) {
+        store.add(TestArrayBlockStore.block(i));
+      } // for
+      positions = store.prefixPositions(12);
+    } // try
+    assertEquals(0, positions[3] >>> 32, "block 3 is in the first segment");
+    assertTrue((positions[11] >>> 32) > 0, "later blocks are in later segments");
+
+    Path file = dir.resolve(String.format(SegmentedBlockStore.SEGMENT_NAME, 0));
+    byte[] bytes = Files.readAllBytes(file);
+    Arrays.fill(bytes, (int) positions[3], bytes.length, (byte) 0);
+    Files.write(file, bytes);
+
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, size)) {
+      assertEquals(3, store.size(), "the log ends where the first segment was lost");
+      assertEquals(2, store.getLast().getNum(), "the blocks before it are intact");
+      store.add(TestArrayBlockStore.block(103));
+    } // try
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, size)) {
+      assertEquals(4, store.size(), "the later segments do not come back");
+      assertEquals(103, store.getLast().getNum(), "the new block follows the old ones");
+      for (int i = 4; i < 12; i++) {
+        store.add(TestArrayBlockStore.block(i));
+      } // for
+    } // try
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, size)) {
+      assertEquals(12, store.size(), "the log goes on into the later segments again");
+      assertEquals(11, store.getLast().getNum(), "the last block");
+    } // try
+  } // testTornSegment(Path)
+
+  /**
+   * Blocks too large for a segment are refused.
+   */
+  @Test
+  public void testTooLarge(@TempDir Path dir) throws Exception {
+    try (SegmentedBlockStore store = new SegmentedBlockStore(dir, HashFunction.SHA_256, SMALL)) {
+      Block big = new Block(0, new Transaction("", "A".repeat(SMALL), 1),
+          new Hash(new byte[] {}), 0);
+      assertThrows(IllegalArgumentException.class, () -> store.add(big), "too large");
+      assertEquals(0, store.size(), "nothing added");
+    } // try
+  } // testTooLarge(Path)
+} // class TestSegmentedBlockStore
@@ -0,0 +1,88 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests of our SHA-256 compression function and of the midstate block hasher built on it.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestSha256 {
+  /**
+   * Compressing a padded message should leave the same hash value that the JDK computes, for
+   * messages of every length around the block boundaries.
+   */
+  @Test
+  public void testCompress() throws Exception {
+    MessageDigest md = MessageDigest.getInstance("sha-256");
+    Random rand = new Random(207);
+    for (int len = 0; len < 200; len++) {
+      byte[] message = new byte[len];
+      rand.nextBytes(message);
+      int padded = (len + Long.BYTES) / Sha256.BLOCK_BYTES * Sha256.BLOCK_BYTES
+          + Sha256.BLOCK_BYTES;
+      ByteBuffer buffer = ByteBuffer.allocate(padded);
+      buffer.put(message).put((byte) 0x80);
+      buffer.putLong(padded - Long.BYTES, (long) len * Byte.SIZE);
+      Sha256 sha = new Sha256();
+      for (int offset = 0; offset < padded; offset += Sha256.BLOCK_BYTES) {
+        sha.compress(buffer.array(), offset);
+      } // for
+      ByteBuffer ours = ByteBuffer.allocate(Sha256.DIGEST_BYTES);
+      for (int word : sha.state) {
+        ours.putInt(word);
+      } // for
+      assertArrayEquals(md.digest(message), ours.array(), "digest of " + len + " bytes");
+    } // for
+  } // testCompress()
+
+  /**
+   * The block hasher should produce exactly the hashes that Block.computeHash does, wherever the
+   * nonce lands relative to the message blocks.
+   */
+  @Test
+  public void testBlockHasher() {
+    Hash prev = new Hash(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17,
+        18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32});
+    String name = "";
+    for (int len = 0; len < 80; len++) {
+      Transaction t = new Transaction(name, "T", len);
+      BlockHasher kernel = new BlockHasher(len, t, prev, true);
+      BlockHasher digest = new BlockHasher(len, t, prev, false);
+      for (long nonce = -20; nonce < 20; nonce++) {
+        byte[] expected = Block.computeHash(len, t, prev, nonce);
+        assertArrayEquals(expected, kernel.hash(nonce),
+            "kernel hash with a " + len + "-byte source and nonce " + nonce);
+        assertArrayEquals(expected, digest.hash(nonce),
+            "digest hash with a " + len + "-byte source and nonce " + nonce);
+      } // for
+      name += (char) ('a' + len % 26);
+    } // for
+  } // testBlockHasher()
+
+  /**
+   * Rejecting candidates early should not change which ones are valid.
+   */
+  @Test
+  public void testEarlyRejection() {
+    Transaction t = new Transaction("Early", "Late", 20);
+    Hash prev = new Hash(new byte[] {7, 7, 7});
+    BlockHasher kernel = new BlockHasher(3, t, prev, true);
+    BlockHasher digest = new BlockHasher(3, t, prev, false);
+    HashValidator check = new LeadingZerosValidator(6);
+    for (long nonce = 0; nonce < 5000; nonce++) {
+      boolean expected = check.isValid(new Hash(Block.computeHash(3, t, prev, nonce)));
+      assertEquals(expected, kernel.isValid(nonce, check), "kernel validity of nonce " + nonce);
+      assertEquals(expected, digest.isValid(nonce, check), "digest validity of nonce " + nonce);
+    } // for
+  } // testEarlyRejection()
+} // class TestSha256
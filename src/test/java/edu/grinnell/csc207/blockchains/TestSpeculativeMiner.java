@@ -0,0 +1,198 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests of the miner that works ahead.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestSpeculativeMiner {
+  /**
+   * Wait, for a while, until a transaction is ready.
+   *
+   * @param miner The miner.
+   * @param t The transaction.
+   */
+  static void awaitReady(SpeculativeMiner miner, Transaction t) throws InterruptedException {
+    for (int i = 0; i < 1000 && !miner.isReady(t); i++) {
+      Thread.sleep(10);
+    } // for
+    assertTrue(miner.isReady(t), "block for " + t + " became ready");
+  } // awaitReady(SpeculativeMiner, Transaction)
+
+  /**
+   * Submitted transactions are mined ahead of time and handed out on request.
+   */
+  @Test
+  public void testReady() throws Exception {
+    BlockChain chain = new BlockChain(new LeadingZerosValidator(12));
+    try (SpeculativeMiner miner = new SpeculativeMiner(chain, new SequentialMiner())) {
+      chain.setMiner(miner);
+      Transaction t = new Transaction("", "A", 10);
+      miner.submit(t);
+      awaitReady(miner, t);
+      MiningProgress progress = new MiningProgress();
+      Block block = miner.mine(1, t, chain.getHash(), chain.getValidator(), HashFunction.SHA_256,
+          progress);
+      assertEquals(1, progress.getAttempts(), "no more work needed");
+      chain.append(block);
+      assertEquals(0, miner.getPending(), "appended transaction is no longer pending");
+      chain.check();
+    } // try
+  } // testReady()
+
+  /**
+   * Work is redone when the end of the chain changes.
+   */
+  @Test
+  public void testTipChanges() throws Exception {
+    BlockChain chain = new BlockChain(new LeadingZerosValidator(8));
+    try (SpeculativeMiner miner = new SpeculativeMiner(chain, new SequentialMiner())) {
+      chain.setMiner(miner);
+      Transaction pendingT = new Transaction("A", "B", 5);
+      miner.submit(pendingT);
+      awaitReady(miner, pendingT);
+
+      // Append some other block; the pending block must now build on it.
+      chain.append(chain.mine(new Transaction("", "A", 10)));
+      assertEquals(1, miner.getPending(), "still pending");
+      awaitReady(miner, pendingT);
+      Block block = chain.mine(pendingT);
+      assertEquals(chain.getHash(), block.getPrevHash(), "mined on the new end");
+      assertEquals(2, block.getNum(), "numbered for the new end");
+
+      // Remove the other block; the pending block moves back.
+      chain.removeLast();
+      awaitReady(miner, pendingT);
+      block = chain.mine(pendingT);
+      assertEquals(1, block.getNum(), "numbered for the old end again");
+      assertEquals(chain.getHash(), block.getPrevHash(), "mined on the old end again");
+    } // try
+  } // testTipChanges()
+
+  /**
+   * Transactions that were never submitted are mined on request.
+   */
+  @Test
+  public void testNotSubmitted() throws Exception {
+    BlockChain chain = new BlockChain(new LeadingZerosValidator(8));
+    try (SpeculativeMiner miner = new SpeculativeMiner(chain, new SequentialMiner())) {
+      chain.setMiner(miner);
+      chain.append(chain.mine(new Transaction("", "A", 10)));
+      chain.check();
+    } // try
+  } // testNotSubmitted()
+
+  /**
+   * A request for a block whose background work failed is mined by the underlying miner rather
+   * than waiting forever.
+   */
+  @Test
+  public void testBackgroundFailure() throws Exception {
+    BlockChain chain = new BlockChain(new LeadingZerosValidator(8));
+    AtomicInteger calls = new AtomicInteger();
+    Miner flaky = (num, t, prev, check, function, progress) -> {
+      if (calls.incrementAndGet() == 1) {
+        // Fail only once the request below is waiting.
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } // try/catch
+        throw new IllegalStateException("The first attempt fails.");
+      } // if
+      return new SequentialMiner().mine(num, t, prev, check, function, progress);
+    };
+    try (SpeculativeMiner miner = new SpeculativeMiner(chain, flaky)) {
+      Transaction t = new Transaction("", "A", 10);
+      miner.submit(t);
+      Block block = assertTimeoutPreemptively(Duration.ofSeconds(10),
+          () -> miner.mine(1, t, chain.getHash(), chain.getValidator(), HashFunction.SHA_256,
+              new MiningProgress()), "request gives up waiting on failed work");
+      assertNotNull(block, "underlying miner found the block");
+      assertEquals(2, calls.get(), "mined once in the background and once on request");
+      chain.append(block);
+    } // try
+  } // testBackgroundFailure()
+
+  /**
+   * A request for a block whose transaction is withdrawn is mined by the underlying miner rather
+   * than waiting forever.
+   */
+  @Test
+  public void testWithdrawWhileWaiting() throws Exception {
+    BlockChain chain = new BlockChain(new LeadingZerosValidator(8));
+    // In the background, work until stopped without finding anything.
+    Miner stalling = (num, t, prev, check, function, progress) -> {
+      if (Thread.currentThread().getName().equals("speculative-miner")) {
+        while (!progress.isStopped()) {
+          Thread.onSpinWait();
+        } // while
+        return null;
+      } // if
+      return new SequentialMiner().mine(num, t, prev, check, function, progress);
+    };
+    try (SpeculativeMiner miner = new SpeculativeMiner(chain, stalling)) {
+      Transaction t = new Transaction("", "A", 10);
+      miner.submit(t);
+      Thread withdrawer = new Thread(() -> {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } // try/catch
+        miner.withdraw(t);
+      });
+      withdrawer.start();
+      Block block = assertTimeoutPreemptively(Duration.ofSeconds(10),
+          () -> miner.mine(1, t, chain.getHash(), chain.getValidator(), HashFunction.SHA_256,
+              new MiningProgress()), "request gives up waiting on withdrawn work");
+      withdrawer.join();
+      assertNotNull(block, "underlying miner found the block");
+      chain.append(block);
+    } // try
+  } // testWithdrawWhileWaiting()
+
+  /**
+   * Background work on one transaction, using a miner of its own, does not hold up a request
+   * for another.
+   */
+  @Test
+  public void testOwnBackgroundMiner() throws Exception {
+    BlockChain chain = new BlockChain(new LeadingZerosValidator(8));
+    AtomicInteger priority = new AtomicInteger();
+    // In the background, work until stopped without finding anything.
+    Miner stalling = (num, t, prev, check, function, progress) -> {
+      priority.set(Thread.currentThread().getPriority());
+      while (!progress.isStopped()) {
+        Thread.onSpinWait();
+      } // while
+      return null;
+    };
+    try (ParallelMiner parallel = new ParallelMiner(1);
+        SpeculativeMiner miner = new SpeculativeMiner(chain, parallel, stalling)) {
+      miner.submit(new Transaction("", "A", 10));
+      Transaction other = new Transaction("", "B", 20);
+      Block block = assertTimeoutPreemptively(Duration.ofSeconds(10),
+          () -> miner.mine(1, other, chain.getHash(), chain.getValidator(), HashFunction.SHA_256,
+              new MiningProgress()), "request does not wait for the background work");
+      assertNotNull(block, "underlying miner found the block");
+      chain.append(block);
+      for (int i = 0; i < 1000 && priority.get() == 0; i++) {
+        Thread.sleep(10);
+      } // for
+      assertEquals(Thread.MIN_PRIORITY, priority.get(), "background work has low priority");
+    } // try
+  } // testOwnBackgroundMiner()
+} // class TestSpeculativeMiner
@@ -0,0 +1,54 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Some simple tests of our TargetValidator class.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestTargetValidator {
+  /**
+   * Hashes above, at, and below the target.
+   */
+  @Test
+  public void testCompare() {
+    HashValidator v = new TargetValidator(new byte[] {0, 0x30, 0});
+    assertEquals(10, v.leadingZeroBits(), "reports the target's zero bits");
+    assertTrue(v.isValid(new Hash(new byte[] {0, 0x30, 0})), "equal to the target");
+    assertTrue(v.isValid(new Hash(new byte[] {0, 0x2f, (byte) 0xff})), "just below");
+    assertFalse(v.isValid(new Hash(new byte[] {0, 0x30, 1})), "just above");
+    assertFalse(v.isValid(new Hash(new byte[] {(byte) 0x80, 0, 0})), "compared unsigned");
+    assertFalse(v.isValid(new Hash(new byte[] {0, 0})), "wrong length");
+  } // testCompare()
+
+  /**
+   * Raw bytes at an offset.
+   */
+  @Test
+  public void testRawBytes() {
+    HashValidator v = new TargetValidator(new Hash(new byte[] {0, 0x30}));
+    byte[] bytes = new byte[] {(byte) 0xff, 0, 0x10, (byte) 0xff};
+    assertTrue(v.isValid(bytes, 1, 2), "below the target after the offset");
+    assertFalse(v.isValid(bytes, 0, 2), "above the target at the start");
+  } // testRawBytes()
+
+  /**
+   * Mining with a target that is not a power of two.
+   */
+  @Test
+  public void testMine() throws Exception {
+    HashValidator v = new TargetValidator(new byte[] {0, 0x50, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+    BlockChain chain = new BlockChain(v);
+    chain.append(chain.mine(new Transaction("", "Alpha", 5)));
+    assertTrue(v.isValid(chain.getHash()), "mined block meets the target");
+    chain.check();
+  } // testMine()
+} // class TestTargetValidator
@@ -0,0 +1,62 @@
+package edu.grinnell.csc207.blockchains;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests of mining with vectors. Surefire runs with the vector module, so these exercise the
+ * vector path rather than the fallback.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class TestVectorMiner {
+  /**
+   * Each pass should find exactly the first nonce that the scalar hasher accepts.
+   */
+  @Test
+  public void testMatchesScalar() {
+    assertTrue(VectorMiner.isAvailable(), "tests run with the vector module");
+    HashValidator check = new LeadingZerosValidator(5);
+    String name = "";
+    for (int len = 0; len < 70; len += 7) {
+      Transaction t = new Transaction(name, "Vector", len);
+      Hash prev = new Hash(new byte[] {(byte) len, 2, 3});
+      BlockHasher scalar = new BlockHasher(len, t, prev, true);
+      for (int lanes : new int[] {4, 8, 16}) {
+        VectorHasher vector = new VectorHasher(len, t, prev, lanes);
+        for (long first = -64; first < 64; first += lanes) {
+          int expected = -1;
+          for (int lane = lanes - 1; lane >= 0; lane--) {
+            if (scalar.isValid(first + lane, check)) {
+              expected = lane;
+            } // if
+          } // for
+          assertEquals(expected, vector.search(first, check),
+              lanes + " lanes, " + len + "-byte source, starting at " + first);
+        } // for
+      } // for
+      name += "1234567";
+    } // for
+  } // testMatchesScalar()
+
+  /**
+   * Blocks mined with vectors can be appended, with or without leading zeros to look for.
+   */
+  @Test
+  public void testAppend() throws Exception {
+    HashValidator v = new LeadingZerosValidator(10);
+    BlockChain chain = new BlockChain(v, new VectorMiner(8));
+    chain.append(chain.mine(new Transaction("", "A", 20)));
+    chain.append(chain.mine(new Transaction("A", "B", 5)));
+    assertEquals(3, chain.getSize(), "after appending two vector-mined blocks");
+    chain.check();
+
+    HashValidator odd = (hash) -> (hash.length() > 0) && (hash.get(0) % 2 != 0);
+    Block block = new VectorMiner().mine(1, new Transaction("", "C", 1), chain.getHash(), odd);
+    assertTrue(odd.isValid(block.getHash()), "fallback for validators without leading zeros");
+  } // testAppend()
+} // class TestVectorMiner
@@ -0,0 +1,93 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.PrintWriter;
+
+/**
+ * Compare the vector hasher, at each width, against the scalar block hasher's two engines on
+ * the same machine. Not a unit test. The vector module must be added explicitly, so run it with
+ *
+ * <pre>
+ * mvn -Pvector test-compile
+ * java --add-modules jdk.incubator.vector -cp target/classes:target/test-classes \
+ *     edu.grinnell.csc207.blockchains.VectorBenchmark 16 5000000
+ * </pre>
+ *
+ * where the arguments are the number of lanes (4, 8, or 16) and the number of nonces to check
+ * with each hasher. Measure one width per run: once the JIT has seen several vector shapes in
+ * the same code, it stops compiling any of them to vector instructions.
+ *
+ * @author Khanh Do
+ * @author Nicole Gorrell
+ */
+public class VectorBenchmark {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Time the scalar hasher.
+   *
+   * @param hasher The hasher.
+   * @param check The validator.
+   * @param nonces The number of nonces to check.
+   *
+   * @return the number of nonces checked per second.
+   */
+  static double scalar(BlockHasher hasher, HashValidator check, long nonces) {
+    long start = System.nanoTime();
+    for (long nonce = 0; nonce < nonces; nonce++) {
+      hasher.isValid(nonce, check);
+    } // for
+    return nonces * 1e9 / (System.nanoTime() - start);
+  } // scalar(BlockHasher, HashValidator, long)
+
+  /**
+   * Time the vector hasher.
+   *
+   * @param hasher The hasher.
+   * @param check The validator.
+   * @param nonces The number of nonces to check.
+   *
+   * @return the number of nonces checked per second.
+   */
+  static double vector(VectorHasher hasher, HashValidator check, long nonces) {
+    long start = System.nanoTime();
+    for (long nonce = 0; nonce < nonces; nonce += hasher.lanes) {
+      hasher.search(nonce, check);
+    } // for
+    return nonces * 1e9 / (System.nanoTime() - start);
+  } // vector(VectorHasher, HashValidator, long)
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  /**
+   * Run the benchmark.
+   *
+   * @param args The number of lanes (default 16) and the number of nonces to check with each
+   *   hasher (default 5,000,000).
+   */
+  public static void main(String[] args) {
+    PrintWriter pen = new PrintWriter(System.out, true);
+    if (!VectorMiner.isAvailable()) {
+      pen.println("The vector API is not available; add --add-modules jdk.incubator.vector.");
+      return;
+    } // if
+    int lanes = (args.length > 0) ? Integer.parseInt(args[0]) : 16;
+    long nonces = (args.length > 1) ? Long.parseLong(args[1]) : 5_000_000;
+    Transaction t = new Transaction("Benchmarker", "Somebody Else", 207);
+    Hash prev = new Hash(new byte[Sha256.DIGEST_BYTES]);
+    HashValidator check = new LeadingZerosValidator(24);
+
+    for (int round = 0; round < 2; round++) {
+      pen.println(round == 0 ? "Warming up" : "Measuring");
+      pen.printf("  %-10s %12.0f hashes/s%n", "kernel",
+          scalar(new BlockHasher(1, t, prev, true), check, nonces));
+      pen.printf("  %-10s %12.0f hashes/s%n", "digest",
+          scalar(new BlockHasher(1, t, prev, false), check, nonces));
+      pen.printf("  %-10s %12.0f hashes/s%n", "vector " + lanes,
+          vector(new VectorHasher(1, t, prev, lanes), check, nonces));
+    } // for
+  } // main(String[])
+} // class VectorBenchmark